@@ -0,0 +1,173 @@
+package edu.brown.cs.student.main.csv;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * BKTree (Burkhard-Keller tree) finds the values within an edit distance of a query without
+ * comparing it to every value. Each node's children are keyed by their Levenshtein distance to it;
+ * by the triangle inequality, a value within k of the query can only be under a child whose key is
+ * within k of the node's own distance to the query, so the others are skipped.
+ *
+ * <p>Nodes are stored in arrays, the children of a node as a linked list of siblings, so a tree of
+ * hundreds of thousands of values is a handful of arrays rather than an object per node.
+ */
+public class BKTree {
+
+  private static final int NONE = -1;
+
+  private final String[] values;
+  private final int[] firstChild;
+  private final int[] nextSibling;
+  private final int[] edge;
+
+  /**
+   * Match is a value within the searched distance
+   *
+   * @param value - the value
+   * @param distance - its edit distance from the query
+   */
+  public record Match(String value, int distance) {}
+
+  private BKTree(String[] values, int[] firstChild, int[] nextSibling, int[] edge) {
+    this.values = values;
+    this.firstChild = firstChild;
+    this.nextSibling = nextSibling;
+    this.edge = edge;
+  }
+
+  /**
+   * Builds the tree of a set of values.
+   *
+   * @param distinctValues - the values, without duplicates
+   * @return the tree
+   */
+  public static BKTree of(Collection<String> distinctValues) {
+    String[] values = distinctValues.toArray(new String[0]);
+    int[] firstChild = new int[values.length];
+    int[] nextSibling = new int[values.length];
+    int[] edge = new int[values.length];
+    Arrays.fill(firstChild, NONE);
+    Arrays.fill(nextSibling, NONE);
+    Distance distance = new Distance();
+    for (int node = 1; node < values.length; node++) {
+      int parent = 0;
+      while (true) {
+        int d = distance.between(values[node], values[parent]);
+        int child = firstChild[parent];
+        while (child != NONE && edge[child] != d) {
+          child = nextSibling[child];
+        }
+        if (child == NONE) {
+          edge[node] = d;
+          nextSibling[node] = firstChild[parent];
+          firstChild[parent] = node;
+          break;
+        }
+        parent = child;
+      }
+    }
+    return new BKTree(values, firstChild, nextSibling, edge);
+  }
+
+  /**
+   * search finds the values within maxDistance edits of query
+   *
+   * @param query - the text to look for
+   * @param maxDistance - the most insertions, deletions and substitutions a match may be away
+   * @return the matches, in no particular order
+   */
+  public List<Match> search(String query, int maxDistance) {
+    List<Match> matches = new ArrayList<>();
+    if (this.values.length == 0) {
+      return matches;
+    }
+    Distance distance = new Distance();
+    int[] stack = new int[16];
+    int size = 0;
+    stack[size++] = 0;
+    while (size > 0) {
+      int node = stack[--size];
+      int d = distance.between(query, this.values[node]);
+      if (d <= maxDistance) {
+        matches.add(new Match(this.values[node], d));
+      }
+      for (int child = this.firstChild[node]; child != NONE; child = this.nextSibling[child]) {
+        if (Math.abs(this.edge[child] - d) <= maxDistance) {
+          if (size == stack.length) {
+            stack = Arrays.copyOf(stack, size * 2);
+          }
+          stack[size++] = child;
+        }
+      }
+    }
+    return matches;
+  }
+
+  /**
+   * getNumValues returns the number of values in the tree
+   *
+   * @return the number of nodes
+   */
+  public int getNumValues() {
+    return this.values.length;
+  }
+
+  /**
+   * getMemoryUsage estimates the heap the tree takes, not counting its values, which are the
+   * normalized index's Strings
+   *
+   * @return the estimated size in bytes
+   */
+  public long getMemoryUsage() {
+    return 4L * MemoryEstimates.ARRAY_HEADER
+        + (MemoryEstimates.REFERENCE + 12L) * this.values.length;
+  }
+
+  /** Distance computes Levenshtein distances, reusing its rows between calls */
+  static final class Distance {
+    private int[] previous = new int[16];
+    private int[] current = new int[16];
+
+    /**
+     * between returns the Levenshtein distance of two strings: the fewest single-character
+     * insertions, deletions and substitutions turning one into the other
+     *
+     * @param a - one string
+     * @param b - the other
+     * @return the distance
+     */
+    int between(String a, String b) {
+      if (a.length() < b.length()) {
+        String swap = a;
+        a = b;
+        b = swap;
+      }
+      // the rows are as long as the shorter string
+      int n = b.length();
+      if (this.previous.length <= n) {
+        this.previous = new int[n + 1];
+        this.current = new int[n + 1];
+      }
+      int[] previous = this.previous;
+      int[] current = this.current;
+      for (int j = 0; j <= n; j++) {
+        previous[j] = j;
+      }
+      for (int i = 1; i <= a.length(); i++) {
+        current[0] = i;
+        char c = a.charAt(i - 1);
+        for (int j = 1; j <= n; j++) {
+          int substitute = previous[j - 1] + (c == b.charAt(j - 1) ? 0 : 1);
+          current[j] = Math.min(substitute, Math.min(previous[j], current[j - 1]) + 1);
+        }
+        int[] swap = previous;
+        previous = current;
+        current = swap;
+      }
+      return previous[n];
+    }
+  }
+}
@@ -0,0 +1,182 @@
+package edu.brown.cs.student.main.csv;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * ByteScanner finds the structural characters of CSV bytes (comma, quote, LF, CR) eight bytes at a
+ * time. Each step loads a long from the buffer and builds a mask with the high bit set in every
+ * byte that is one of the characters being looked for (SIMD within a register), so runs of field
+ * text are skipped a word at a time rather than compared byte by byte. Bytes that don't fill a
+ * whole word at the end of a range are scanned one at a time.
+ *
+ * <p>The static methods find a single byte, which suits the scans that usually stop early or skip
+ * long stretches (finding record boundaries). Tokenizing stops at nearly every field, so an
+ * instance instead indexes a range in batches: every set bit of a word's mask becomes a position,
+ * and the tokenizer walks the positions without looking at the bytes in between.
+ */
+public final class ByteScanner {
+
+  /** Positions found per call to index */
+  private static final int BATCH_SIZE = 1 << 12;
+
+  private static final long ONES = 0x0101010101010101L;
+  private static final long LOW_BITS = 0x7F7F7F7F7F7F7F7FL;
+  private static final long COMMAS = ONES * ',';
+  private static final long QUOTES = ONES * '"';
+  private static final long LFS = ONES * '\n';
+  private static final long CRS = ONES * '\r';
+
+  private final int[] positions = new int[BATCH_SIZE];
+  private int end;
+
+  /** ByteScanner constructor, for indexing with index */
+  public ByteScanner() {}
+
+  /**
+   * Marks the zero bytes of a word, exactly: the high bit of every byte that is 0 is set, and no
+   * other bit. (The common (x - ONES) & ~x trick can also mark bytes after a zero byte.)
+   *
+   * @param x - the word
+   * @return the mask
+   */
+  private static long zeroBytes(long x) {
+    return ~(((x & LOW_BITS) + LOW_BITS) | x | LOW_BITS);
+  }
+
+  /**
+   * Marks the bytes of a word that a scan stops at.
+   *
+   * @param word - eight bytes of the buffer
+   * @param quoted - whether the scan is inside a quoted field, where only quotes matter
+   * @return a mask with the high bit of every such byte set
+   */
+  private static long structural(long word, boolean quoted) {
+    long mask = zeroBytes(word ^ QUOTES);
+    if (!quoted) {
+      mask |= zeroBytes(word ^ COMMAS) | zeroBytes(word ^ LFS) | zeroBytes(word ^ CRS);
+    }
+    return mask;
+  }
+
+  /**
+   * Finds the first byte at or after from that ends a field or changes the quote state: a quote, or
+   * outside quotes also a comma or line break.
+   *
+   * @param buffer - the bytes to scan
+   * @param from - index to start scanning at
+   * @param to - index one past the last byte to scan
+   * @param quoted - whether from is inside a quoted field
+   * @return index of that byte, or to if there is none
+   */
+  public static int next(ByteBuffer buffer, int from, int to, boolean quoted) {
+    boolean littleEndian = buffer.order() == ByteOrder.LITTLE_ENDIAN;
+    int pos = from;
+    for (; pos + Long.BYTES <= to; pos += Long.BYTES) {
+      long mask = structural(buffer.getLong(pos), quoted);
+      if (mask != 0) {
+        // the first byte in memory is the lowest in a little-endian word, the highest otherwise
+        int bit = littleEndian ? Long.numberOfTrailingZeros(mask) : Long.numberOfLeadingZeros(mask);
+        return pos + bit / Byte.SIZE;
+      }
+    }
+    return nextScalar(buffer, pos, to, quoted);
+  }
+
+  /**
+   * Same as next, one byte at a time. Used for the bytes at the end of a range and to compare
+   * against in benchmarks.
+   *
+   * @param buffer - the bytes to scan
+   * @param from - index to start scanning at
+   * @param to - index one past the last byte to scan
+   * @param quoted - whether from is inside a quoted field
+   * @return index of that byte, or to if there is none
+   */
+  public static int nextScalar(ByteBuffer buffer, int from, int to, boolean quoted) {
+    for (int pos = from; pos < to; pos++) {
+      byte b = buffer.get(pos);
+      if (b == '"' || (!quoted && (b == ',' || b == '\n' || b == '\r'))) {
+        return pos;
+      }
+    }
+    return to;
+  }
+
+  /**
+   * Finds the structural bytes (quotes, commas and line breaks, quoted or not) from from onwards,
+   * in order, until to or the batch is full. They are then available from getPositions, and the
+   * scan continues from getEnd.
+   *
+   * @param buffer - the bytes to scan
+   * @param from - index to start scanning at
+   * @param to - index one past the last byte to scan
+   * @return the number of positions found
+   */
+  public int index(ByteBuffer buffer, int from, int to) {
+    boolean littleEndian = buffer.order() == ByteOrder.LITTLE_ENDIAN;
+    int[] found = this.positions;
+    int count = 0;
+    int pos = from;
+    // a word adds at most Long.BYTES positions
+    for (; pos + Long.BYTES <= to && count <= found.length - Long.BYTES; pos += Long.BYTES) {
+      long word = buffer.getLong(pos);
+      // put the first byte in memory lowest, so positions come out in order
+      long mask = structural(littleEndian ? word : Long.reverseBytes(word), false);
+      while (mask != 0) {
+        found[count++] = pos + (Long.numberOfTrailingZeros(mask) >>> 3);
+        mask &= mask - 1;
+      }
+    }
+    if (pos + Long.BYTES > to) {
+      for (; pos < to && count < found.length; pos++) {
+        byte b = buffer.get(pos);
+        if (b == '"' || b == ',' || b == '\n' || b == '\r') {
+          found[count++] = pos;
+        }
+      }
+    }
+    this.end = pos;
+    return count;
+  }
+
+  /**
+   * getPositions returns the positions found by the last call to index. The array is reused.
+   *
+   * @return the positions; only the first index() of them are valid
+   */
+  public int[] getPositions() {
+    return this.positions;
+  }
+
+  /**
+   * getEnd returns where the last call to index stopped scanning
+   *
+   * @return index of the first byte not scanned, the to passed to index if it got that far
+   */
+  public int getEnd() {
+    return this.end;
+  }
+
+  /**
+   * Counts the quote characters in [from, to) of buffer, a word at a time.
+   *
+   * @param buffer - the bytes to scan
+   * @param from - index of the first byte to scan
+   * @param to - index one past the last byte to scan
+   * @return the number of '"' bytes
+   */
+  public static int countQuotes(ByteBuffer buffer, int from, int to) {
+    int count = 0;
+    int pos = from;
+    for (; pos + Long.BYTES <= to; pos += Long.BYTES) {
+      count += Long.bitCount(zeroBytes(buffer.getLong(pos) ^ QUOTES));
+    }
+    for (; pos < to; pos++) {
+      if (buffer.get(pos) == '"') {
+        count++;
+      }
+    }
+    return count;
+  }
+}
@@ -0,0 +1,499 @@
+package edu.brown.cs.student.main.csv;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+
+/**
+ * ByteTable is a CSVTable whose cells are ranges of a UTF-8 ByteBuffer, located by the offsets a
+ * ByteTokenizer produced. The buffer is either a memory-mapped CSV file (map) or a packed copy of
+ * just the cell bytes, on or off the heap (pack, packOffHeap). Cells are only decoded to Strings
+ * when get is called; equalTo compares raw bytes and view copies bytes out directly.
+ */
+public class ByteTable implements CSVTable {
+
+  /** Largest file map can load; offsets (which may point one past the end) must fit in an int */
+  public static final long MAX_MAPPED_SIZE = Integer.MAX_VALUE - 1;
+
+  /** Files larger than this are tokenized in chunks of about this size when a pool is given */
+  public static final int PARALLEL_CHUNK_SIZE = 4 << 20;
+
+  // not final: a table that owns off-heap buffers drops them on release, so the GC can free them
+  private ByteBuffer data;
+  private IntBuffer offsets;
+  private final int numRows;
+  private final int numCols;
+  private final long memoryUsage;
+  private final Runnable uncountMemory;
+  private final AtomicBoolean released = new AtomicBoolean(false);
+
+  /**
+   * ByteTable constructor
+   *
+   * @param data - UTF-8 CSV bytes
+   * @param offsets - field offsets into data, laid out as described in ByteTokenizer
+   * @param numRows - the number of rows
+   * @param numCols - the number of columns in every row
+   */
+  public ByteTable(ByteBuffer data, int[] offsets, int numRows, int numCols) {
+    this(data, IntBuffer.wrap(offsets), numRows, numCols, null);
+  }
+
+  /**
+   * ByteTable constructor
+   *
+   * @param data - UTF-8 CSV bytes
+   * @param offsets - field offsets into data, laid out as described in ByteTokenizer
+   * @param numRows - the number of rows
+   * @param numCols - the number of columns in every row
+   * @param uncountMemory - stops counting data and offsets in DirectMemory when the table is
+   *     released, or null if the table doesn't own off-heap buffers
+   */
+  ByteTable(ByteBuffer data, IntBuffer offsets, int numRows, int numCols, Runnable uncountMemory) {
+    this.data = data;
+    this.offsets = offsets;
+    this.numRows = numRows;
+    this.numCols = numCols;
+    this.memoryUsage = (long) data.capacity() + (long) offsets.capacity() * Integer.BYTES;
+    this.uncountMemory = uncountMemory;
+  }
+
+  /**
+   * Memory-maps a UTF-8 CSV file and tokenizes it straight from the mapped bytes, in parallel on
+   * the common ForkJoinPool once the file is large enough. The file is not copied onto the heap;
+   * only the field offsets are.
+   *
+   * @param path - path of the CSV file
+   * @return a ByteTable over the mapped file
+   * @throws IOException if the file can't be read, or is too large to map in one buffer (2 GB)
+   * @throws IllegalArgumentException if invalid CSV file
+   */
+  public static ByteTable map(Path path) throws IOException, IllegalArgumentException {
+    return map(path, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Memory-maps a UTF-8 CSV file and tokenizes it straight from the mapped bytes.
+   *
+   * @param path - path of the CSV file
+   * @param pool - pool to tokenize chunks of the file on, or null to tokenize on this thread
+   * @return a ByteTable over the mapped file
+   * @throws IOException if the file can't be read, or is too large to map in one buffer (2 GB)
+   * @throws IllegalArgumentException if invalid CSV file
+   */
+  public static ByteTable map(Path path, ForkJoinPool pool)
+      throws IOException, IllegalArgumentException {
+    return map(path, pool, null);
+  }
+
+  /**
+   * Memory-maps a UTF-8 CSV file and tokenizes it straight from the mapped bytes.
+   *
+   * @param path - path of the CSV file
+   * @param pool - pool to tokenize chunks of the file on, or null to tokenize on this thread
+   * @param progress - where to report bytes and rows tokenized, or null
+   * @return a ByteTable over the mapped file
+   * @throws IOException if the file can't be read, or is too large to map in one buffer (2 GB)
+   * @throws IllegalArgumentException if invalid CSV file
+   */
+  public static ByteTable map(Path path, ForkJoinPool pool, LoadProgress progress)
+      throws IOException, IllegalArgumentException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size > MAX_MAPPED_SIZE) {
+        throw new IOException("File too large to map: " + size + " bytes");
+      }
+      MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      ByteTable table = tokenize(data, pool, PARALLEL_CHUNK_SIZE, progress);
+      // the mapping is dropped by the GC once the table is no longer referenced
+      return new ByteTable(data, table.offsets, table.numRows, table.numCols, null);
+    }
+  }
+
+  /**
+   * Tokenizes all of data into a ByteTable. With a pool, data is cut into chunks of roughly
+   * chunkSize bytes (at least one per pool thread) that end on record boundaries, taking quoted
+   * line breaks into account: each chunk's quote count is found in parallel, a prefix of those
+   * counts says whether each chunk starts inside quotes, and from that each chunk's first real
+   * record boundary. The chunks are then tokenized in parallel and their offsets stitched back
+   * together in file order, with the same column-count validation as a sequential pass.
+   *
+   * @param data - UTF-8 CSV bytes, from index 0 to its limit
+   * @param pool - pool to tokenize chunks on, or null to tokenize on this thread
+   * @param chunkSize - target number of bytes per chunk
+   * @return a ByteTable over data
+   * @throws IllegalArgumentException if invalid CSV file
+   */
+  public static ByteTable tokenize(ByteBuffer data, ForkJoinPool pool, int chunkSize)
+      throws IllegalArgumentException {
+    return tokenize(data, pool, chunkSize, null);
+  }
+
+  /**
+   * Same as tokenize(data, pool, chunkSize), reporting bytes and rows as they are tokenized.
+   *
+   * @param data - UTF-8 CSV bytes, from index 0 to its limit
+   * @param pool - pool to tokenize chunks on, or null to tokenize on this thread
+   * @param chunkSize - target number of bytes per chunk
+   * @param progress - where to report bytes and rows tokenized, or null
+   * @return a ByteTable over data
+   * @throws IllegalArgumentException if invalid CSV file
+   */
+  public static ByteTable tokenize(
+      ByteBuffer data, ForkJoinPool pool, int chunkSize, LoadProgress progress)
+      throws IllegalArgumentException {
+    int size = data.limit();
+    if (pool == null || size <= chunkSize) {
+      ByteTokenizer tokenizer = new ByteTokenizer(-1, progress);
+      tokenizer.tokenize(data, 0, size);
+      return new ByteTable(
+          data, tokenizer.getOffsets(), tokenizer.getNumRows(), tokenizer.getNumCols());
+    }
+
+    int chunks = Math.max(pool.getParallelism(), (size + chunkSize - 1) / chunkSize);
+    int[] starts = new int[chunks + 1];
+    for (int i = 0; i <= chunks; i++) {
+      starts[i] = (int) ((long) size * i / chunks);
+    }
+
+    // whether each chunk starts inside quotes, from the parity of the quotes before it
+    List<Integer> quoteCounts =
+        invokeAll(pool, chunks, i -> ByteTokenizer.countQuotes(data, starts[i], starts[i + 1]));
+    boolean[] quoted = new boolean[chunks];
+    for (int i = 1; i < chunks; i++) {
+      quoted[i] = quoted[i - 1] ^ (quoteCounts.get(i - 1) % 2 == 1);
+    }
+
+    List<Integer> boundaries =
+        invokeAll(
+            pool,
+            chunks,
+            i -> i == 0 ? 0 : ByteTokenizer.nextRecordStart(data, starts[i], size, quoted[i]));
+    List<ByteTokenizer> tokenizers =
+        invokeAll(
+            pool,
+            chunks,
+            i -> {
+              ByteTokenizer tokenizer = new ByteTokenizer(-1, progress);
+              int end = i + 1 < chunks ? boundaries.get(i + 1) : size;
+              tokenizer.tokenize(data, boundaries.get(i), end);
+              return tokenizer;
+            });
+
+    int numCols = 0;
+    int numRows = 0;
+    int length = 0;
+    for (ByteTokenizer tokenizer : tokenizers) {
+      if (tokenizer.getNumRows() == 0) {
+        continue;
+      }
+      if (numRows == 0) {
+        numCols = tokenizer.getNumCols();
+      } else if (tokenizer.getNumCols() != numCols) {
+        throw new IllegalArgumentException("Invalid CSV file: mismatching row dimensions");
+      }
+      numRows += tokenizer.getNumRows();
+      length += tokenizer.getNumRows() * (numCols + 1);
+    }
+    int[] offsets = new int[length];
+    int pos = 0;
+    for (ByteTokenizer tokenizer : tokenizers) {
+      int[] chunkOffsets = tokenizer.getOffsets();
+      System.arraycopy(chunkOffsets, 0, offsets, pos, chunkOffsets.length);
+      pos += chunkOffsets.length;
+    }
+    return new ByteTable(data, offsets, numRows, numCols);
+  }
+
+  /**
+   * Runs task for every chunk index on pool and waits for all of them.
+   *
+   * @param pool - pool to run the tasks on
+   * @param chunks - number of chunks
+   * @param task - work for one chunk index
+   * @return the results, in chunk order
+   * @throws IllegalArgumentException if a task threw one (e.g. invalid CSV file)
+   */
+  static <R> List<R> invokeAll(ForkJoinPool pool, int chunks, IntFunction<R> task)
+      throws IllegalArgumentException {
+    List<Callable<R>> tasks = new ArrayList<>();
+    for (int i = 0; i < chunks; i++) {
+      int chunk = i;
+      tasks.add(() -> task.apply(chunk));
+    }
+    List<R> results = new ArrayList<>();
+    try {
+      for (Future<R> future : pool.invokeAll(tasks)) {
+        results.add(future.get());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for chunks", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      throw new IllegalStateException(e.getCause());
+    }
+    return results;
+  }
+
+  /**
+   * Copies the cells of another table into one contiguous heap buffer, with an int offset array
+   * locating each row's cells. Each cell is followed by a single separator byte so that the offsets
+   * follow the same layout ByteTokenizer produces for a file. Unlike a mapped table, the result
+   * does not depend on the source file staying unchanged on disk.
+   *
+   * @param source - the table to copy
+   * @return a ByteTable over the packed cells
+   * @throws IllegalArgumentException if the packed cells would not fit in one 2 GB buffer
+   */
+  public static ByteTable pack(CSVTable source) throws IllegalArgumentException {
+    return pack(source, false);
+  }
+
+  /**
+   * Same as pack, but both the cell bytes and the offsets are stored in off-heap buffers sized
+   * exactly for the table, so only a few fields of the table stay on the Java heap. The memory is
+   * counted by DirectMemory until release is called, and returned when the GC collects the buffers.
+   *
+   * @param source - the table to copy
+   * @return a ByteTable over the packed cells, in off-heap memory
+   * @throws IllegalArgumentException if the packed cells would not fit in one 2 GB buffer
+   */
+  public static ByteTable packOffHeap(CSVTable source) throws IllegalArgumentException {
+    return pack(source, true);
+  }
+
+  private static ByteTable pack(CSVTable source, boolean offHeap) throws IllegalArgumentException {
+    int numRows = source.numRows();
+    int numCols = source.numCols();
+    long numOffsets = (long) numRows * (numCols + 1);
+    if (numOffsets * Integer.BYTES > MAX_MAPPED_SIZE) {
+      throw new IllegalArgumentException("Table too large to pack");
+    }
+    RowView view = source.view();
+
+    try {
+      // first pass only measures, so buffers can be allocated at their exact size
+      CountingStream counter = new CountingStream();
+      for (int row = 0; row < numRows; row++) {
+        view.moveTo(row);
+        for (int col = 0; col < numCols; col++) {
+          view.writeCell(col, counter);
+          counter.write(',');
+        }
+      }
+      if (counter.count > MAX_MAPPED_SIZE) {
+        throw new IllegalArgumentException("Table too large to pack");
+      }
+
+      ByteBuffer data;
+      ByteBuffer offsetBytes = null;
+      IntBuffer offsets;
+      if (offHeap) {
+        data = DirectMemory.allocate((int) counter.count);
+        offsetBytes = DirectMemory.allocate((int) numOffsets * Integer.BYTES);
+        offsets = offsetBytes.order(ByteOrder.nativeOrder()).asIntBuffer();
+      } else {
+        data = ByteBuffer.allocate((int) counter.count);
+        offsets = IntBuffer.allocate((int) numOffsets);
+      }
+
+      BufferStream out = new BufferStream(data);
+      for (int row = 0; row < numRows; row++) {
+        view.moveTo(row);
+        for (int col = 0; col < numCols; col++) {
+          offsets.put(data.position());
+          view.writeCell(col, out);
+          data.put((byte) ',');
+        }
+        offsets.put(data.position());
+      }
+
+      // captures only the size, so the table's references are the only ones to the buffers
+      long offHeapBytes = offHeap ? (long) data.capacity() + offsetBytes.capacity() : 0;
+      Runnable uncountMemory = offHeap ? () -> DirectMemory.uncount(offHeapBytes) : null;
+      return new ByteTable(data, offsets, numRows, numCols, uncountMemory);
+    } catch (IOException e) {
+      // neither stream throws
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /** OutputStream that only counts the bytes written to it */
+  private static class CountingStream extends OutputStream {
+    private long count = 0;
+
+    @Override
+    public void write(int b) {
+      this.count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+      this.count += len;
+    }
+  }
+
+  /** OutputStream that writes into a ByteBuffer at its position */
+  private static class BufferStream extends OutputStream {
+    private final ByteBuffer buffer;
+
+    BufferStream(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public void write(int b) {
+      this.buffer.put((byte) b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+      this.buffer.put(b, off, len);
+    }
+  }
+
+  /**
+   * Stops counting the table's off-heap buffers in DirectMemory, if it owns any, and drops its
+   * references to them; the GC reclaims the memory once it collects them, which may be later. The
+   * table must not be read after this. Calling it again does nothing.
+   */
+  @Override
+  public void release() {
+    if (this.released.compareAndSet(false, true) && this.uncountMemory != null) {
+      this.uncountMemory.run();
+      this.data = null;
+      this.offsets = null;
+    }
+  }
+
+  ByteBuffer getData() {
+    return this.data;
+  }
+
+  IntBuffer getOffsets() {
+    return this.offsets;
+  }
+
+  /**
+   * Counts the whole buffer and offsets, whether they are on the heap, off it, or a mapped file.
+   *
+   * @return the size of the table's buffers in bytes
+   */
+  @Override
+  public long getMemoryUsage() {
+    return this.memoryUsage;
+  }
+
+  @Override
+  public int numRows() {
+    return this.numRows;
+  }
+
+  @Override
+  public int numCols() {
+    return this.numCols;
+  }
+
+  private int start(int row, int col) {
+    return this.offsets.get(row * (this.numCols + 1) + col);
+  }
+
+  private int end(int row, int col) {
+    return this.offsets.get(row * (this.numCols + 1) + col + 1) - 1;
+  }
+
+  @Override
+  public String get(int row, int col) {
+    int start = this.start(row, col);
+    byte[] bytes = new byte[this.end(row, col) - start];
+    this.data.get(start, bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Returns a view that copies cell bytes straight from the buffer, reusing one scratch array.
+   *
+   * @return a RowView positioned on row 0
+   */
+  @Override
+  public RowView view() {
+    return new RowView() {
+      private int row;
+      private byte[] scratch = new byte[256];
+
+      @Override
+      public RowView moveTo(int row) {
+        this.row = row;
+        return this;
+      }
+
+      @Override
+      public int numCols() {
+        return ByteTable.this.numCols;
+      }
+
+      @Override
+      public String get(int col) {
+        return ByteTable.this.get(this.row, col);
+      }
+
+      @Override
+      public void writeCell(int col, OutputStream out) throws IOException {
+        int start = ByteTable.this.start(this.row, col);
+        int length = ByteTable.this.end(this.row, col) - start;
+        if (length > this.scratch.length) {
+          this.scratch = new byte[Math.max(length, 2 * this.scratch.length)];
+        }
+        ByteTable.this.data.get(start, this.scratch, 0, length);
+        out.write(this.scratch, 0, length);
+      }
+    };
+  }
+
+  @Override
+  public IntPredicate equalTo(int col, String value) {
+    byte[] target = value.getBytes(StandardCharsets.UTF_8);
+    if (this.data.hasArray()) {
+      // packed tables live in a heap array, which Arrays.equals compares in bulk
+      byte[] array = this.data.array();
+      int base = this.data.arrayOffset();
+      return row -> {
+        int start = base + this.start(row, col);
+        int end = base + this.end(row, col);
+        return Arrays.equals(array, start, end, target, 0, target.length);
+      };
+    }
+    return row -> {
+      int start = this.start(row, col);
+      if (this.end(row, col) - start != target.length) {
+        return false;
+      }
+      for (int i = 0; i < target.length; i++) {
+        if (this.data.get(start + i) != target[i]) {
+          return false;
+        }
+      }
+      return true;
+    };
+  }
+}
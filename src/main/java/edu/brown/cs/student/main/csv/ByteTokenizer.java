@@ -0,0 +1,247 @@
+package edu.brown.cs.student.main.csv;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * ByteTokenizer finds the CSV records of a range of a ByteBuffer without decoding it. It follows
+ * the same rules as CSVTokenizer (RFC 4180 quoting, LF/CRLF/CR line endings); since every
+ * structural character is ASCII, scanning UTF-8 bytes directly is safe.
+ *
+ * <p>Instead of Strings, the tokenizer records field boundaries. For each record it appends the
+ * start of every field followed by one past the end of the last field plus one, so field k of a
+ * record spans [offsets[k], offsets[k + 1] - 1) and every record takes numCols + 1 offsets.
+ *
+ * <p>The scans jump from one structural byte to the next with ByteScanner, which skips plain field
+ * text eight bytes at a time; tokenize walks the positions its index finds.
+ */
+public class ByteTokenizer {
+
+  /** Rows tokenized between progress updates */
+  private static final int PROGRESS_INTERVAL = 1 << 14;
+
+  private final LoadProgress progress;
+  private final ByteScanner scanner = new ByteScanner();
+  private int[] offsets = new int[1024];
+  private int size = 0;
+  private int numCols = -1;
+  private int numRows = 0;
+
+  /**
+   * ByteTokenizer constructor
+   *
+   * @param numCols - the column count every record must have, or -1 to take it from the first
+   * @param progress - where to report bytes and rows tokenized, or null
+   */
+  public ByteTokenizer(int numCols, LoadProgress progress) {
+    this.numCols = numCols;
+    this.progress = progress;
+  }
+
+  /**
+   * ByteTokenizer constructor
+   *
+   * @param numCols - the column count every record must have, or -1 to take it from the first
+   */
+  public ByteTokenizer(int numCols) {
+    this(numCols, null);
+  }
+
+  /** ByteTokenizer constructor, taking the column count from the first record */
+  public ByteTokenizer() {
+    this(-1);
+  }
+
+  /**
+   * Tokenizes every record in [from, to) of buffer, appending their offsets.
+   *
+   * @param buffer - the bytes to tokenize; only absolute gets are used, so it may be shared
+   * @param from - index of the first byte of the first record
+   * @param to - index one past the last byte to tokenize
+   * @throws IllegalArgumentException if a record's column count differs from the first record's
+   */
+  public void tokenize(ByteBuffer buffer, int from, int to) throws IllegalArgumentException {
+    int recordStart = from;
+    boolean inRecord = false;
+    boolean quoted = false;
+    int fields = 0;
+    // the LF of a CRLF, which the CR already ended the record at
+    int skip = -1;
+    int reportedPos = from;
+    int reportedRows = this.numRows;
+    int scanned = from;
+    while (scanned < to) {
+      int count = this.scanner.index(buffer, scanned, to);
+      int[] positions = this.scanner.getPositions();
+      scanned = this.scanner.getEnd();
+      for (int i = 0; i < count; i++) {
+        int pos = positions[i];
+        if (pos == skip) {
+          continue;
+        }
+        if (!inRecord) {
+          this.add(recordStart);
+          inRecord = true;
+        }
+        byte b = buffer.get(pos);
+        if (b == '"') {
+          quoted = !quoted;
+        } else if (!quoted) {
+          fields++;
+          this.add(pos + 1);
+          if (b == '\n' || b == '\r') {
+            recordStart = pos + 1;
+            if (b == '\r' && pos + 1 < to && buffer.get(pos + 1) == '\n') {
+              skip = pos + 1;
+              recordStart = pos + 2;
+            }
+            this.endRecord(fields);
+            inRecord = false;
+            quoted = false;
+            fields = 0;
+            if (this.progress != null && this.numRows - reportedRows == PROGRESS_INTERVAL) {
+              this.progress.add(recordStart - reportedPos, PROGRESS_INTERVAL);
+              reportedPos = recordStart;
+              reportedRows = this.numRows;
+            }
+          }
+        }
+      }
+    }
+    if (inRecord || recordStart < to) {
+      // the last record has no line break after it
+      if (!inRecord) {
+        this.add(recordStart);
+      }
+      this.add(to + 1);
+      this.endRecord(fields + 1);
+    }
+    if (this.progress != null) {
+      this.progress.add(to - reportedPos, this.numRows - reportedRows);
+    }
+  }
+
+  /**
+   * Checks a finished record's column count and counts it.
+   *
+   * @param fields - number of fields in the record
+   * @throws IllegalArgumentException if it differs from the first record's
+   */
+  private void endRecord(int fields) throws IllegalArgumentException {
+    if (this.numCols == -1) {
+      this.numCols = fields;
+    }
+    if (fields != this.numCols) {
+      throw new IllegalArgumentException("Invalid CSV file: mismatching row dimensions");
+    }
+    this.numRows++;
+  }
+
+  /**
+   * Counts the quote characters in [from, to) of buffer. Used to work out whether a chunk of a file
+   * starts inside a quoted field, from the parity of all the quotes before it.
+   *
+   * @param buffer - the bytes to scan
+   * @param from - index of the first byte to scan
+   * @param to - index one past the last byte to scan
+   * @return the number of '"' bytes
+   */
+  public static int countQuotes(ByteBuffer buffer, int from, int to) {
+    return ByteScanner.countQuotes(buffer, from, to);
+  }
+
+  /**
+   * Finds where the first record starting at or after from begins, skipping line breaks inside
+   * quotes. This is how a file is cut into chunks that can be tokenized independently.
+   *
+   * @param buffer - the bytes to scan
+   * @param from - index to start scanning at
+   * @param to - index one past the last byte of the buffer's CSV data
+   * @param quoted - whether from is inside a quoted field
+   * @return index just past the first unquoted line break at or after from, or to if there is none
+   */
+  public static int nextRecordStart(ByteBuffer buffer, int from, int to, boolean quoted) {
+    for (int pos = ByteScanner.next(buffer, from, to, quoted);
+        pos < to;
+        pos = ByteScanner.next(buffer, pos + 1, to, quoted)) {
+      byte b = buffer.get(pos);
+      if (b == '"') {
+        quoted = !quoted;
+      } else if (!quoted && (b == '\n' || b == '\r')) {
+        if (b == '\r' && pos + 1 < to && buffer.get(pos + 1) == '\n') {
+          pos++;
+        }
+        return pos + 1;
+      }
+    }
+    return to;
+  }
+
+  /**
+   * Finds where the last complete record in [from, to) ends, skipping line breaks inside quotes.
+   * Used to leave a record that is still being appended to a file for a later read. A CR at the
+   * very end doesn't count, since it may be the first half of a CRLF.
+   *
+   * @param buffer - the bytes to scan
+   * @param from - index of the first byte of a record
+   * @param to - index one past the last byte available
+   * @return index just past the last unquoted line break, or from if there is none
+   */
+  public static int lastRecordEnd(ByteBuffer buffer, int from, int to) {
+    int end = from;
+    boolean quoted = false;
+    for (int pos = ByteScanner.next(buffer, from, to, quoted);
+        pos < to;
+        pos = ByteScanner.next(buffer, pos + 1, to, quoted)) {
+      byte b = buffer.get(pos);
+      if (b == '"') {
+        quoted = !quoted;
+      } else if (!quoted && (b == '\n' || b == '\r')) {
+        if (b == '\r') {
+          if (pos + 1 == to) {
+            break;
+          }
+          if (buffer.get(pos + 1) == '\n') {
+            pos++;
+          }
+        }
+        end = pos + 1;
+      }
+    }
+    return end;
+  }
+
+  private void add(int offset) {
+    if (this.size == this.offsets.length) {
+      this.offsets = Arrays.copyOf(this.offsets, this.offsets.length * 2);
+    }
+    this.offsets[this.size++] = offset;
+  }
+
+  /**
+   * getOffsets returns the field offsets found so far, trimmed to length
+   *
+   * @return numRows * (numCols + 1) offsets
+   */
+  public int[] getOffsets() {
+    return Arrays.copyOf(this.offsets, this.size);
+  }
+
+  /**
+   * getNumCols returns the column count of the tokenized records
+   *
+   * @return the number of columns, 0 if no records were found
+   */
+  public int getNumCols() {
+    return Math.max(this.numCols, 0);
+  }
+
+  /**
+   * getNumRows returns the number of records tokenized so far
+   *
+   * @return the number of records
+   */
+  public int getNumRows() {
+    return this.numRows;
+  }
+}
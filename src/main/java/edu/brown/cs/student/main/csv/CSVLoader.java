@@ -0,0 +1,260 @@
+package edu.brown.cs.student.main.csv;
+
+import edu.brown.cs.student.main.exception.FactoryFailureException;
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.GZIPInputStream;
+
+/** CSVLoader reads CSV files from disk into a CSVTable with the requested storage. */
+public class CSVLoader {
+
+  /** Extension of gzip-compressed CSV files, which are decompressed as they are read */
+  public static final String GZIP_SUFFIX = ".gz";
+
+  private static final int BUFFER_SIZE = 1 << 16;
+  private static final int GZIP_BUFFER_SIZE = 1 << 20;
+  // bytes of cell text read into Strings before they are converted to the requested storage
+  private static final int CHUNK_SIZE = 16 << 20;
+  private static final int PROGRESS_INTERVAL = 1 << 14;
+
+  private CSVLoader() {}
+
+  /**
+   * Loads a UTF-8 CSV file into a CSVTable, using and keeping a snapshot of it (see load).
+   *
+   * @param path - path of the CSV file
+   * @param storage - how the loaded table should be held in memory
+   * @return the loaded table
+   * @throws IOException if failure reading file
+   * @throws FactoryFailureException if failure creating row
+   * @throws IllegalArgumentException if invalid CSV file
+   */
+  public static CSVTable load(Path path, TableStorage storage)
+      throws IOException, FactoryFailureException, IllegalArgumentException {
+    return load(path, storage, true);
+  }
+
+  /**
+   * Loads a UTF-8 CSV file into a CSVTable. Files that fit in a single mapping are memory-mapped
+   * and tokenized from the mapped bytes (see ByteTable); larger ones are parsed through a Reader in
+   * chunks (see readChunks). With snapshots on, a snapshot made from the file as it is now is
+   * mapped instead of tokenizing, and if there wasn't one, one is written in the background after
+   * tokenizing (see TableSnapshot). The result is then converted to the requested storage.
+   *
+   * <p>Files ending in .gz are decompressed as they are read and parsed in bounded chunks (see
+   * readChunks), so only the compressed bytes are read from disk and the decompressed file is never
+   * held in memory or written anywhere. They never use snapshots, which would store them
+   * decompressed.
+   *
+   * @param path - path of the CSV file
+   * @param storage - how the loaded table should be held in memory
+   * @param useSnapshot - whether to read and write a snapshot of the tokenized file
+   * @return the loaded table
+   * @throws IOException if failure reading file
+   * @throws FactoryFailureException if failure creating row
+   * @throws IllegalArgumentException if invalid CSV file
+   */
+  public static CSVTable load(Path path, TableStorage storage, boolean useSnapshot)
+      throws IOException, FactoryFailureException, IllegalArgumentException {
+    return load(path, storage, useSnapshot, new LoadProgress());
+  }
+
+  /**
+   * Same as load(path, storage, useSnapshot), reporting progress as the file is read.
+   *
+   * @param path - path of the CSV file
+   * @param storage - how the loaded table should be held in memory
+   * @param useSnapshot - whether to read and write a snapshot of the tokenized file
+   * @param progress - where to report the stage, bytes read and rows parsed
+   * @return the loaded table
+   * @throws IOException if failure reading file
+   * @throws FactoryFailureException if failure creating row
+   * @throws IllegalArgumentException if invalid CSV file
+   */
+  public static CSVTable load(
+      Path path, TableStorage storage, boolean useSnapshot, LoadProgress progress)
+      throws IOException, FactoryFailureException, IllegalArgumentException {
+    CSVTable table;
+    BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+    progress.start(attributes.size());
+    if (isCompressed(path)) {
+      // the file is its own resource: GZIPInputStream reads the header, and may throw, when built
+      try (InputStream file = countingStream(path, progress);
+          InputStream input = new GZIPInputStream(file, GZIP_BUFFER_SIZE)) {
+        return readChunks(input, storage, progress);
+      }
+    } else if (attributes.size() <= ByteTable.MAX_MAPPED_SIZE) {
+      ByteTable mapped = useSnapshot ? TableSnapshot.read(path, attributes) : null;
+      if (mapped != null) {
+        progress.add(attributes.size(), mapped.numRows());
+        // the snapshot was made from a file of exactly this size
+        progress.setLoadedBytes(attributes.size());
+      } else {
+        mapped = ByteTable.map(path, ForkJoinPool.commonPool(), progress);
+        // the mapping covers the file as it was when mapped, which may have grown since
+        progress.setLoadedBytes(mapped.getData().limit());
+        if (useSnapshot && mapped.getData().limit() == attributes.size()) {
+          TableSnapshot.writeLater(path, attributes, mapped);
+        }
+      }
+      table = mapped;
+    } else {
+      table = readChunks(countingStream(path, progress), storage, progress);
+      progress.setLoadedBytes(progress.getBytesRead());
+      return table;
+    }
+
+    if (storage != TableStorage.MAPPED) {
+      progress.setStage(LoadProgress.Stage.CONVERTING);
+    }
+    return convert(table, storage);
+  }
+
+  /**
+   * Converts a freshly loaded table to the requested storage. Every storage but MAPPED copies the
+   * cells, after which table is released.
+   *
+   * @param table - the loaded table, owned by this call
+   * @param storage - how the table should be held in memory
+   * @return the converted table, or table itself for MAPPED
+   */
+  public static CSVTable convert(CSVTable table, TableStorage storage) {
+    if (storage == TableStorage.MAPPED) {
+      return table;
+    }
+    try {
+      switch (storage) {
+        case PACKED:
+          return ByteTable.pack(table);
+        case OFF_HEAP:
+          return ByteTable.packOffHeap(table);
+        case COLUMNAR:
+        default:
+          return ColumnarTable.of(table);
+      }
+    } finally {
+      table.release();
+    }
+  }
+
+  /**
+   * isCompressed returns whether a file is gzip-compressed, going by its name
+   *
+   * @param path - path of the file
+   * @return true if it ends in .gz
+   */
+  public static boolean isCompressed(Path path) {
+    return path.getFileName().toString().endsWith(GZIP_SUFFIX);
+  }
+
+  /**
+   * Opens a file for reading, reporting the bytes read from it.
+   *
+   * @param path - path of the file
+   * @param progress - where to report bytes read
+   * @return the stream
+   * @throws IOException if the file can't be opened
+   */
+  private static InputStream countingStream(Path path, LoadProgress progress) throws IOException {
+    return new CountingInputStream(Files.newInputStream(path), progress);
+  }
+
+  /**
+   * Parses a stream through a Reader, for compressed files and files too large to map. Rows are
+   * collected in chunks of about CHUNK_SIZE bytes of cell text, and each chunk is converted to the
+   * requested storage (packed for MAPPED, as there is no file to map) before the next is read, so
+   * only one chunk is ever held as Strings and nothing is sized from the stream's length. A file of
+   * more than one chunk becomes a SegmentedTable of the converted chunks.
+   *
+   * @param input - the UTF-8 CSV bytes; closed when done
+   * @param storage - how the loaded table should be held in memory
+   * @param progress - where to report rows parsed
+   * @return the loaded table
+   * @throws IOException if failure reading file
+   * @throws FactoryFailureException if failure creating row
+   * @throws IllegalArgumentException if invalid CSV file
+   */
+  private static CSVTable readChunks(InputStream input, TableStorage storage, LoadProgress progress)
+      throws IOException, FactoryFailureException, IllegalArgumentException {
+    TableStorage chunkStorage = storage == TableStorage.MAPPED ? TableStorage.PACKED : storage;
+    Reader reader =
+        new InputStreamReader(new BufferedInputStream(input, BUFFER_SIZE), StandardCharsets.UTF_8);
+    List<String[]> rows = new ArrayList<>();
+    long[] chunkSize = new long[1];
+    // each row's Strings go straight into its array, with no List in between
+    RowVisitor visitor =
+        (fields, numFields) -> {
+          String[] row = new String[numFields];
+          for (int i = 0; i < numFields; i++) {
+            row[i] = fields[i].toString();
+            chunkSize[0] += row[i].length() + 1;
+          }
+          rows.add(row);
+        };
+    List<CSVTable> chunks = new ArrayList<>();
+    try (CSVStream<String[]> stream = new CSVStream<>(reader)) {
+      int unreported = 0;
+      while (stream.visitNext(visitor)) {
+        if (++unreported == PROGRESS_INTERVAL) {
+          progress.add(0, unreported);
+          unreported = 0;
+        }
+        if (chunkSize[0] >= CHUNK_SIZE) {
+          chunks.add(convert(new RowTable(rows), chunkStorage));
+          rows.clear();
+          chunkSize[0] = 0;
+        }
+      }
+      progress.add(0, unreported);
+      if (chunks.isEmpty() || !rows.isEmpty()) {
+        chunks.add(convert(new RowTable(rows), chunkStorage));
+      }
+    } catch (IOException | FactoryFailureException | RuntimeException e) {
+      for (CSVTable chunk : chunks) {
+        chunk.release();
+      }
+      throw e;
+    }
+    // a table of one chunk is returned as is, keeping its storage's own fast paths
+    return chunks.size() == 1 ? chunks.get(0) : SegmentedTable.of(chunks);
+  }
+
+  /** InputStream that reports the bytes read through it to a LoadProgress */
+  private static class CountingInputStream extends FilterInputStream {
+    private final LoadProgress progress;
+
+    CountingInputStream(InputStream in, LoadProgress progress) {
+      super(in);
+      this.progress = progress;
+    }
+
+    @Override
+    public int read() throws IOException {
+      int b = super.read();
+      if (b != -1) {
+        this.progress.add(1, 0);
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int n = super.read(b, off, len);
+      if (n > 0) {
+        this.progress.add(n, 0);
+      }
+      return n;
+    }
+  }
+}
@@ -1,13 +1,11 @@
 package edu.brown.cs.student.main.csv;
 
 import edu.brown.cs.student.main.exception.FactoryFailureException;
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.Reader;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.regex.Pattern;
 
 public class CSVParser<T> {
 
@@ -17,11 +15,6 @@ public class CSVParser<T> {
   private List<T> parsed;
   private List<T> public_parsed;
 
-  // https://github.com/cs0320/class-livecode/
-  // Path: main/old/F23/vignettes/csvRegex/src/test/java/TestRegex.java
-  // regex string from cs0320 class livecode (old/F23/vignettes/csvRegex/src/test/java/TestRegex)
-  final Pattern rgx = Pattern.compile(",(?=([^\"]*\"[^\"]*\")*(?![^\"]*\"))");
-
   /**
    * CSVParser constructor
    *
@@ -57,32 +50,12 @@ public class CSVParser<T> {
    */
   private void parse() throws IOException, FactoryFailureException, IllegalArgumentException {
     List<T> rows = new ArrayList<>();
-    BufferedReader bufferedReader = new BufferedReader(this.reader);
+    CSVStream<T> stream = new CSVStream<>(this.reader, this.create);
 
-    String line;
-    int numCols = -1;
-    // loop through lines until reaching line break or end of file (line is null)
-    // source: https://ioflood.com/blog/java-read-line/
-    while ((line = bufferedReader.readLine()) != null) {
-      if (!line.isEmpty()) {
-        /* add '.' to line because regex has an issue missing. only for when the line length is
-         * greater than 0 to avoid creating more issues (if length is 0 there can't be a comma too)
-         */
-        line += ".";
-      }
-      String[] values = this.rgx.split(line);
-      if (!line.isEmpty()) {
-        // remove added '.'
-        int cut = values.length - 1;
-        values[cut] = values[cut].substring(0, values[cut].length() - 1);
-      }
-      if (numCols == -1) {
-        numCols = values.length;
-      }
-      if (values.length != numCols) {
-        throw new IllegalArgumentException("Invalid CSV file: mismatching row dimensions");
-      }
-      rows.add(this.create.create(List.of(values)));
+    T row;
+    // loop through rows until reaching end of file (row is null)
+    while ((row = stream.next()) != null) {
+      rows.add(row);
     }
 
     this.parsed = rows;
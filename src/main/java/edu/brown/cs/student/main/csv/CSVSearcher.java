@@ -1,13 +1,31 @@
 package edu.brown.cs.student.main.csv;
 
 import edu.brown.cs.student.main.exception.FactoryFailureException;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.IntPredicate;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
 
+/**
+ * CSVSearcher finds the rows of a table that have a value in a given column, or in any column. A
+ * searcher holds no per-search state, so one searcher can serve concurrent searches; the columns a
+ * column name or index resolves to are remembered, so repeated searches skip resolving them.
+ */
 public class CSVSearcher {
 
+  private static final Pattern INTEGER = Pattern.compile("-?(0|[1-9]\\d*)");
+
   /** Represents different column search specifications */
   public enum ColumnSpecified {
     NAME,
@@ -15,9 +33,78 @@ public class CSVSearcher {
     UNSPECIFIED
   }
 
-  private final List<String[]> rows;
-  private String[] header;
-  private int numCols;
+  /** Represents how a cell must match the searched value */
+  public enum MatchMode {
+    /** The cell equals the value */
+    EXACT,
+    /** The cell starts with the value */
+    PREFIX,
+    /** The cell contains the value */
+    CONTAINS,
+    /** The cell equals the value ignoring case, spacing and Unicode form */
+    NORMALIZED,
+    /** The cell is a few edits from the value, ignoring what NORMALIZED does */
+    FUZZY
+  }
+
+  /** Edits a fuzzy search allows unless told otherwise */
+  public static final int DEFAULT_MAX_DISTANCE = 2;
+
+  /**
+   * Candidate is a cell text close to a fuzzy search's value, with the rows that have it
+   *
+   * @param value - the cell text, normalized
+   * @param distance - its edit distance from the normalized value
+   * @param rows - the rows with that text in a searched column, in table order
+   */
+  public record Candidate(String value, int distance, List<String[]> rows) {}
+
+  /**
+   * ParallelScan lets searches that no index covers split their rows into ranges scanned at the
+   * same time. Matches are gathered per range and joined in range order, so results are the same as
+   * a scan on one thread.
+   *
+   * @param pool - pool the ranges are scanned on
+   * @param minRows - fewer rows than this are scanned on the calling thread
+   * @param maxTasks - most ranges one search is split into, which caps the threads it can occupy
+   */
+  public record ParallelScan(ForkJoinPool pool, int minRows, int maxTasks) {
+
+    /** Rows a search must cover before it is worth splitting */
+    public static final int DEFAULT_MIN_ROWS = 1 << 16;
+  }
+
+  /**
+   * Query is one search request: see search(value, column, specification)
+   *
+   * @param value - the value to match
+   * @param column - the column name or index, or null if unspecified
+   * @param specification - what kind of column specification column is
+   * @param mode - how cells must match value
+   */
+  public record Query(String value, String column, ColumnSpecified specification, MatchMode mode) {
+
+    /**
+     * Query constructor for an exact match
+     *
+     * @param value - the value to match
+     * @param column - the column name or index, or null if unspecified
+     * @param specification - what kind of column specification column is
+     */
+    public Query(String value, String column, ColumnSpecified specification) {
+      this(value, column, specification, MatchMode.EXACT);
+    }
+  }
+
+  /** ColumnKey identifies a resolved column specification */
+  private record ColumnKey(String column, ColumnSpecified specification) {}
+
+  private final CSVTable table;
+  private final SearchIndexes indexes;
+  private final ParallelScan parallelScan;
+  private final Map<ColumnKey, List<Integer>> resolvedColumns = new ConcurrentHashMap<>();
+  private final String[] header;
+  private final int numCols;
   private final boolean hasHeader;
 
   /**
@@ -27,21 +114,53 @@ public class CSVSearcher {
    * @param hasHeader - boolean for if the CSV has a header or not.
    */
   public CSVSearcher(CSVParser<String[]> newParser, boolean hasHeader) {
-    this.hasHeader = hasHeader;
-    this.rows = newParser.getParsed();
+    this(new RowTable(newParser.getParsed()), hasHeader);
+  }
 
-    this.numCols = 0;
-    if (!this.rows.isEmpty()) {
-      this.numCols = this.rows.get(0).length;
-    }
+  /**
+   * CSVSearcher constructor
+   *
+   * @param table - a loaded CSVTable
+   * @param hasHeader - boolean for if the CSV has a header or not.
+   */
+  public CSVSearcher(CSVTable table, boolean hasHeader) {
+    this(table, hasHeader, null);
+  }
 
-    this.header = new String[0];
-    if (this.hasHeader) {
-      if (this.rows.isEmpty()) {
-        throw new IllegalArgumentException("Invalid CSV: header specified for empty CSV");
-      }
-      this.header = this.rows.get(0);
+  /**
+   * CSVSearcher constructor for a loaded dataset. Searches on a named or indexed column look the
+   * value up in that column's hash index (building it the first time) instead of scanning, and so
+   * do searches on every column if the table has an inverted index.
+   *
+   * @param table - a loaded CSVTable
+   * @param hasHeader - boolean for if the CSV has a header or not.
+   * @param indexes - the table's search indexes, or null to always scan
+   */
+  public CSVSearcher(CSVTable table, boolean hasHeader, SearchIndexes indexes) {
+    this(table, hasHeader, indexes, null);
+  }
+
+  /**
+   * CSVSearcher constructor for a loaded dataset, scanning large tables in parallel when no index
+   * covers a search
+   *
+   * @param table - a loaded CSVTable
+   * @param hasHeader - boolean for if the CSV has a header or not.
+   * @param indexes - the table's search indexes, or null to always scan
+   * @param parallelScan - how to split scans, or null to scan on the calling thread
+   */
+  public CSVSearcher(
+      CSVTable table, boolean hasHeader, SearchIndexes indexes, ParallelScan parallelScan) {
+    this.hasHeader = hasHeader;
+    this.table = table;
+    this.indexes = indexes;
+    this.parallelScan = parallelScan;
+    this.numCols = table.numCols();
+
+    if (this.hasHeader && table.numRows() == 0) {
+      throw new IllegalArgumentException("Invalid CSV: header specified for empty CSV");
     }
+    this.header = this.hasHeader ? table.getRow(0) : new String[0];
   }
 
   /**
@@ -63,8 +182,8 @@ public class CSVSearcher {
    * @param s - a String to check if it is an integer
    * @return true if s represents an integer, false if else
    */
-  private boolean isInteger(String s) {
-    return s.matches("-?(0|[1-9]\\d*)");
+  private static boolean isInteger(String s) {
+    return INTEGER.matcher(s).matches();
   }
 
   /**
@@ -73,33 +192,36 @@ public class CSVSearcher {
    * representing an int index. Returns a list because it is possible for queried column to have
    * multiple matching header columns (duplicate header columns).
    *
+   * @param header - the header row, or an empty array if there is no header
+   * @param numCols - the number of columns in each row
    * @param column - String queried column
    * @param specification - ColumnSpecified value representing what kind of specification column is
    * @return a non-empty ArrayList of Integers, with column indexes that match column
    * @throws IllegalArgumentException if no columns are not found with the given input
    */
-  private List<Integer> getColumns(String column, ColumnSpecified specification)
+  private static List<Integer> getColumns(
+      String[] header, int numCols, String column, ColumnSpecified specification)
       throws IllegalArgumentException {
     List<Integer> columnIndexes = new ArrayList<>();
 
     // check if column specified is an index (integer)
-    if (specification == ColumnSpecified.INDEX && this.isInteger(column)) {
+    if (specification == ColumnSpecified.INDEX && isInteger(column)) {
       int x = Integer.parseInt(column);
-      if (x >= 0 && x < this.numCols) {
+      if (x >= 0 && x < numCols) {
         columnIndexes.add(x);
         return columnIndexes;
       }
     }
 
     // check if column specified matches any header columns
-    if (specification == ColumnSpecified.NAME && this.header.length != this.numCols) {
+    if (specification == ColumnSpecified.NAME && header.length != numCols) {
       throw new IllegalArgumentException("Header length and column count must match.");
     }
 
-    for (int i = 0; i < this.numCols; i++) {
+    for (int i = 0; i < numCols; i++) {
       // if didn't specify column, add all indexes
       if (specification == ColumnSpecified.UNSPECIFIED
-          || (this.header.length == this.numCols && this.header[i].equals(column))) {
+          || (header.length == numCols && header[i].equals(column))) {
         columnIndexes.add(i);
       }
     }
@@ -128,28 +250,423 @@ public class CSVSearcher {
    */
   public List<String[]> search(String value, String column, ColumnSpecified specification)
       throws FactoryFailureException, IllegalArgumentException {
+    return this.search(new Query(value, column, specification));
+  }
+
+  /**
+   * Checks the table for rows matching a query, see search(value, column, specification). Prefix
+   * and substring matches look the value up in the sorted dictionary (and, for substrings, the
+   * trigram index) of each column searched, when the searcher has indexes.
+   *
+   * @param query - the value, column, column specification and match mode to search with
+   * @return the matching rows, in table order
+   * @throws FactoryFailureException if failure to create a row from raw CSV split data
+   * @throws IllegalArgumentException if invalid CSV file or invalid specified column
+   */
+  public List<String[]> search(Query query)
+      throws FactoryFailureException, IllegalArgumentException {
+    String value = query.value();
+    ColumnSpecified specification = query.specification();
     List<String[]> result = new ArrayList<>();
 
-    if (this.rows.isEmpty()) {
+    if (this.table.numRows() == 0) {
+      return result;
+    }
+
+    List<Integer> checkColumns = this.resolveColumns(query.column(), specification);
+    int firstRow = this.hasHeader ? 1 : 0;
+    if (query.mode() == MatchMode.FUZZY) {
+      for (Candidate candidate : this.searchFuzzy(query, DEFAULT_MAX_DISTANCE)) {
+        result.addAll(candidate.rows());
+      }
+      return result;
+    } else if (query.mode() == MatchMode.NORMALIZED) {
+      return this.searchNormalized(value, checkColumns, firstRow);
+    } else if (query.mode() != MatchMode.EXACT) {
+      return this.searchText(value, query.mode(), checkColumns, firstRow);
+    }
+    if (this.indexes != null
+        && specification == ColumnSpecified.UNSPECIFIED
+        && this.indexes.hasInverted()) {
+      for (int row : this.indexes.inverted().rowsEqualTo(value)) {
+        if (row >= firstRow) {
+          result.add(this.table.getRow(row));
+        }
+      }
+      return result;
+    }
+    if (this.indexes != null && specification != ColumnSpecified.UNSPECIFIED) {
+      // rows matching in any of the (possibly duplicate-named) columns, once each, in table order
+      int[] rows =
+          checkColumns.stream()
+              .flatMapToInt(col -> IntStream.of(this.indexes.column(col).rowsEqualTo(value)))
+              .sorted()
+              .distinct()
+              .toArray();
+      for (int row : rows) {
+        if (row >= firstRow) {
+          result.add(this.table.getRow(row));
+        }
+      }
       return result;
     }
+    IntPredicate[] matchers = new IntPredicate[checkColumns.size()];
+    for (int i = 0; i < matchers.length; i++) {
+      matchers[i] = this.table.equalTo(checkColumns.get(i), value);
+    }
+    return this.scanRows(matchers, firstRow);
+  }
+
+  /**
+   * Finds the rows with a cell that equals value once both are normalized, see
+   * NormalizedIndex.normalize. With indexes, cells were normalized when the column's index was
+   * built; without, each cell is normalized as it is scanned.
+   *
+   * @param value - the text to match
+   * @param checkColumns - indexes of the columns to check
+   * @param firstRow - the first row that can match
+   * @return the matching rows, in table order
+   */
+  private List<String[]> searchNormalized(String value, List<Integer> checkColumns, int firstRow) {
+    if (this.indexes == null) {
+      String normalized = NormalizedIndex.normalize(value);
+      IntPredicate[] matchers = new IntPredicate[checkColumns.size()];
+      for (int i = 0; i < matchers.length; i++) {
+        int col = checkColumns.get(i);
+        matchers[i] = row -> NormalizedIndex.normalize(this.table.get(row, col)).equals(normalized);
+      }
+      return this.scanRows(matchers, firstRow);
+    }
+    int[] rows =
+        checkColumns.stream()
+            .flatMapToInt(col -> IntStream.of(this.indexes.normalized(col).rowsMatching(value)))
+            .sorted()
+            .distinct()
+            .toArray();
+    List<String[]> result = new ArrayList<>();
+    for (int row : rows) {
+      if (row >= firstRow) {
+        result.add(this.table.getRow(row));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Finds the cell texts within maxDistance edits (Levenshtein distance: insertions, deletions and
+   * substitutions) of a query's value, both normalized as for NORMALIZED, ranked by distance, then
+   * by how many rows have them. With indexes, each searched column's BK-tree narrows the texts
+   * compared; without, every cell is compared. A row close to several texts (in different columns)
+   * is listed under the best ranked one only.
+   *
+   * @param query - the value, column and column specification to search with; its mode is ignored
+   * @param maxDistance - the most edits a candidate may be from the value
+   * @return the candidates, best first
+   * @throws IllegalArgumentException if the column is invalid or maxDistance is negative
+   */
+  public List<Candidate> searchFuzzy(Query query, int maxDistance) throws IllegalArgumentException {
+    if (maxDistance < 0) {
+      throw new IllegalArgumentException("maxDistance must not be negative.");
+    }
+    if (this.table.numRows() == 0) {
+      return new ArrayList<>();
+    }
+    List<Integer> checkColumns = this.resolveColumns(query.column(), query.specification());
+    int firstRow = this.hasHeader ? 1 : 0;
+    String target = NormalizedIndex.normalize(query.value());
+    Map<String, Integer> distances = new HashMap<>();
+    Map<String, List<int[]>> rowLists = new HashMap<>();
+    if (this.indexes != null) {
+      for (int col : checkColumns) {
+        Map<String, int[]> rows = this.indexes.normalized(col).values();
+        for (BKTree.Match match : this.indexes.fuzzy(col).search(target, maxDistance)) {
+          distances.put(match.value(), match.distance());
+          rowLists
+              .computeIfAbsent(match.value(), unused -> new ArrayList<>())
+              .add(rows.get(match.value()));
+        }
+      }
+    } else {
+      // each distinct normalized text is compared once
+      BKTree.Distance distance = new BKTree.Distance();
+      Map<String, Integer> compared = new HashMap<>();
+      for (int col : checkColumns) {
+        Map<String, List<Integer>> rows = new HashMap<>();
+        for (int row = firstRow; row < this.table.numRows(); row++) {
+          String value = NormalizedIndex.normalize(this.table.get(row, col));
+          int d = compared.computeIfAbsent(value, v -> distance.between(target, v));
+          if (d <= maxDistance) {
+            distances.put(value, d);
+            rows.computeIfAbsent(value, unused -> new ArrayList<>()).add(row);
+          }
+        }
+        rows.forEach(
+            (value, list) ->
+                rowLists
+                    .computeIfAbsent(value, unused -> new ArrayList<>())
+                    .add(list.stream().mapToInt(Integer::intValue).toArray()));
+      }
+    }
+
+    Map<String, int[]> rowsByValue = new HashMap<>();
+    rowLists.forEach(
+        (value, lists) ->
+            rowsByValue.put(
+                value,
+                lists.stream()
+                    .flatMapToInt(IntStream::of)
+                    .filter(row -> row >= firstRow)
+                    .sorted()
+                    .distinct()
+                    .toArray()));
+    List<String> ranked = new ArrayList<>(rowsByValue.keySet());
+    ranked.sort(
+        Comparator.comparingInt((String value) -> distances.get(value))
+            .thenComparing(value -> -rowsByValue.get(value).length)
+            .thenComparing(Comparator.naturalOrder()));
+    List<Candidate> candidates = new ArrayList<>();
+    BitSet listed = new BitSet();
+    for (String value : ranked) {
+      List<String[]> rows = new ArrayList<>();
+      for (int row : rowsByValue.get(value)) {
+        if (!listed.get(row)) {
+          listed.set(row);
+          rows.add(this.table.getRow(row));
+        }
+      }
+      if (!rows.isEmpty()) {
+        candidates.add(new Candidate(value, distances.get(value), rows));
+      }
+    }
+    return candidates;
+  }
+
+  /**
+   * Finds the rows with a cell that starts with or contains value.
+   *
+   * @param value - the text to match
+   * @param mode - PREFIX or CONTAINS
+   * @param checkColumns - indexes of the columns to check
+   * @param firstRow - the first row that can match
+   * @return the matching rows, in table order
+   */
+  private List<String[]> searchText(
+      String value, MatchMode mode, List<Integer> checkColumns, int firstRow) {
+    if (this.indexes == null) {
+      IntPredicate[] matchers = new IntPredicate[checkColumns.size()];
+      for (int i = 0; i < matchers.length; i++) {
+        int col = checkColumns.get(i);
+        matchers[i] =
+            mode == MatchMode.PREFIX
+                ? row -> this.table.get(row, col).startsWith(value)
+                : row -> this.table.get(row, col).contains(value);
+      }
+      return this.scanRows(matchers, firstRow);
+    }
+    int[] rows =
+        checkColumns.stream()
+            .flatMapToInt(
+                col -> {
+                  SortedDictionary dictionary = this.indexes.dictionary(col);
+                  int[] ids =
+                      mode == MatchMode.PREFIX
+                          ? dictionary.idsStartingWith(value)
+                          : dictionary.idsContaining(value, this.indexes.trigrams(col));
+                  return IntStream.of(dictionary.rowsOf(ids));
+                })
+            .sorted()
+            .distinct()
+            .toArray();
+    List<String[]> result = new ArrayList<>();
+    for (int row : rows) {
+      if (row >= firstRow) {
+        result.add(this.table.getRow(row));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Scans the rows from firstRow on for ones where any matcher holds, split into ranges scanned in
+   * parallel if the searcher was configured to and there are enough rows.
+   *
+   * @param matchers - tests of the columns to check
+   * @param firstRow - the first row that can match
+   * @return the matching rows, in table order
+   */
+  private List<String[]> scanRows(IntPredicate[] matchers, int firstRow) {
+    List<String[]> result = new ArrayList<>();
+    int numRows = this.table.numRows();
+    ParallelScan parallel = this.parallelScan;
+    if (parallel == null || parallel.maxTasks() < 2 || numRows - firstRow < parallel.minRows()) {
+      return this.scan(matchers, firstRow, numRows);
+    }
+    int span = (numRows - firstRow + parallel.maxTasks() - 1) / parallel.maxTasks();
+    List<List<String[]>> parts =
+        ByteTable.invokeAll(
+            parallel.pool(),
+            parallel.maxTasks(),
+            task ->
+                this.scan(
+                    matchers,
+                    firstRow + task * span,
+                    Math.min(numRows, firstRow + (task + 1) * span)));
+    for (List<String[]> part : parts) {
+      result.addAll(part);
+    }
+    return result;
+  }
+
+  /**
+   * Resolves a column specification with getColumns, remembering the result. Specifications that
+   * don't resolve aren't remembered, so only valid ones (a bounded set) are kept.
+   *
+   * @param column - String queried column
+   * @param specification - ColumnSpecified value representing what kind of specification column is
+   * @return the column indexes to check
+   * @throws IllegalArgumentException if no columns are found with the given input
+   */
+  private List<Integer> resolveColumns(String column, ColumnSpecified specification)
+      throws IllegalArgumentException {
+    ColumnKey key = new ColumnKey(column, specification);
+    List<Integer> columns = this.resolvedColumns.get(key);
+    if (columns == null) {
+      columns = List.copyOf(getColumns(this.header, this.numCols, column, specification));
+      this.resolvedColumns.put(key, columns);
+    }
+    return columns;
+  }
 
-    List<Integer> checkColumns = this.getColumns(column, specification);
+  /**
+   * Plans a filter over this searcher's table, using its indexes where they help. A column in the
+   * filter is a header name if the table has a header with that name, and a column index otherwise.
+   *
+   * @param filter - the filter to plan
+   * @return the plan, which can be described or evaluated
+   * @throws IllegalArgumentException if the filter names a column that doesn't exist
+   */
+  public FilterPlan plan(Filter filter) throws IllegalArgumentException {
+    return new FilterPlan(
+        filter, this.table, this.hasHeader ? 1 : 0, this.indexes, this::resolveFilterColumn);
+  }
+
+  /**
+   * Finds the rows matching a filter, see plan
+   *
+   * @param filter - the filter to match
+   * @return the matching rows, in table order
+   * @throws IllegalArgumentException if the filter names a column that doesn't exist
+   */
+  public List<String[]> filter(Filter filter) throws IllegalArgumentException {
+    List<String[]> result = new ArrayList<>();
+    for (int row : this.plan(filter).rows()) {
+      result.add(this.table.getRow(row));
+    }
+    return result;
+  }
+
+  private List<Integer> resolveFilterColumn(String column) throws IllegalArgumentException {
+    if (this.hasHeader) {
+      try {
+        return this.resolveColumns(column, ColumnSpecified.NAME);
+      } catch (IllegalArgumentException e) {
+        // not a header name, so it may be an index
+      }
+    }
+    return this.resolveColumns(column, ColumnSpecified.INDEX);
+  }
+
+  /**
+   * getParallelScan returns how this searcher splits scans
+   *
+   * @return the configuration, or null if it scans on the calling thread
+   */
+  public ParallelScan getParallelScan() {
+    return this.parallelScan;
+  }
+
+  /**
+   * Scans a range of rows for ones where any matcher holds.
+   *
+   * @param matchers - equality tests of the columns to check
+   * @param from - index of the first row to scan
+   * @param to - index one past the last row to scan
+   * @return the matching rows, in table order
+   */
+  private List<String[]> scan(IntPredicate[] matchers, int from, int to) {
+    List<String[]> result = new ArrayList<>();
     // loop through rows and columns to check and add row if there is a matching value
-    // i; i < this.rows.size(); i++
-    int i;
-    for (i = 0; i < this.rows.size(); i++) {
-      if (i == 0 && this.hasHeader) {
-        i++;
-      }
-      for (int colIndex : checkColumns) {
-        if (this.rows.get(i)[colIndex].equals(value)) {
-          result.add(this.rows.get(i));
+    for (int i = from; i < to; i++) {
+      for (IntPredicate matcher : matchers) {
+        if (matcher.test(i)) {
+          result.add(this.table.getRow(i));
           break;
         }
       }
     }
-
     return result;
   }
+
+  /**
+   * Streaming version of search: pulls rows from stream one at a time and passes each row that has
+   * a datapoint equal to value in the specified column (or any column if no specification) to
+   * onMatch. Only the current row is held in memory, so files larger than the heap can be searched.
+   *
+   * @param stream - CSVStream producing String[] rows, positioned at the start of the file
+   * @param hasHeader - boolean for if the CSV has a header or not
+   * @param value - String value to match, see search
+   * @param column - String column to check, see search
+   * @param specification - ColumnSpecified value representing what kind of specification column is
+   * @param onMatch - called with every matching row, in file order
+   * @return the number of matching rows
+   * @throws IOException if failure reading CSV file
+   * @throws FactoryFailureException if failure to create a row from raw CSV split data
+   * @throws IllegalArgumentException if invalid CSV file or invalid specified column
+   */
+  public static int search(
+      CSVStream<String[]> stream,
+      boolean hasHeader,
+      String value,
+      String column,
+      ColumnSpecified specification,
+      Consumer<String[]> onMatch)
+      throws IOException, FactoryFailureException, IllegalArgumentException {
+    String[] first = stream.next();
+    if (first == null) {
+      if (hasHeader) {
+        throw new IllegalArgumentException("Invalid CSV: header specified for empty CSV");
+      }
+      return 0;
+    }
+
+    String[] header = hasHeader ? first : new String[0];
+    List<Integer> checkColumns = getColumns(header, first.length, column, specification);
+    int count = 0;
+    String[] row = hasHeader ? stream.next() : first;
+    while (row != null) {
+      if (matches(row, checkColumns, value)) {
+        onMatch.accept(row);
+        count++;
+      }
+      row = stream.next();
+    }
+    return count;
+  }
+
+  /**
+   * Checks if any of the given columns of row equal value
+   *
+   * @param row - the row to check
+   * @param checkColumns - indexes of the columns to check
+   * @param value - String value to match
+   * @return true if a checked column equals value, false otherwise
+   */
+  private static boolean matches(String[] row, List<Integer> checkColumns, String value) {
+    for (int colIndex : checkColumns) {
+      if (row[colIndex].equals(value)) {
+        return true;
+      }
+    }
+    return false;
+  }
 }
@@ -0,0 +1,121 @@
+package edu.brown.cs.student.main.csv;
+
+import edu.brown.cs.student.main.exception.FactoryFailureException;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * CSVStream is the pull-based counterpart to CSVParser: rows are tokenized and created one at a
+ * time as the caller asks for them, so memory use does not grow with the size of the file and the
+ * first row is available as soon as it has been read. Rows are validated the same way CSVParser
+ * validates them (every row must have as many columns as the first).
+ *
+ * <p>next creates each row with the CreatorFromRow, from the row's fields as Strings. visitNext is
+ * the allocation-free alternative: it hands a RowVisitor reusable views of the fields instead.
+ */
+public class CSVStream<T> implements Closeable {
+
+  private final Reader reader;
+  private final CreatorFromRow<T> create;
+  private final CSVTokenizer tokenizer;
+
+  private int numCols = -1;
+  private int rowCount = 0;
+
+  /**
+   * CSVStream constructor. Nothing is read until next is called.
+   *
+   * @param newReader - a Reader that has the contents of a CSV file
+   * @param newCreate - a CreatorFromRow object for creating rows
+   */
+  public CSVStream(Reader newReader, CreatorFromRow<T> newCreate) {
+    this.reader = newReader;
+    this.create = newCreate;
+    this.tokenizer = new CSVTokenizer(newReader);
+  }
+
+  /**
+   * CSVStream constructor, for reading rows with visitNext only. Nothing is read until then.
+   *
+   * @param newReader - a Reader that has the contents of a CSV file
+   */
+  public CSVStream(Reader newReader) {
+    this(newReader, null);
+  }
+
+  /**
+   * Reads and creates the next row.
+   *
+   * @return the next row, or null if the end of the CSV has been reached
+   * @throws IOException if failure reading CSV file
+   * @throws FactoryFailureException if failure creating row
+   * @throws IllegalArgumentException if the row's column count differs from the first row's
+   */
+  public T next() throws IOException, FactoryFailureException, IllegalArgumentException {
+    String[] values = this.tokenizer.next();
+    if (values == null) {
+      return null;
+    }
+    this.check(values.length);
+    return this.create.create(Collections.unmodifiableList(Arrays.asList(values)));
+  }
+
+  /**
+   * Reads the next row and passes views of its fields to visitor, without creating a String for any
+   * field (see RowVisitor).
+   *
+   * @param visitor - receives the row
+   * @return true if a row was read, false if the end of the CSV has been reached
+   * @throws IOException if failure reading CSV file
+   * @throws FactoryFailureException if the visitor fails
+   * @throws IllegalArgumentException if the row's column count differs from the first row's
+   */
+  public boolean visitNext(RowVisitor visitor)
+      throws IOException, FactoryFailureException, IllegalArgumentException {
+    int numFields = this.tokenizer.advance();
+    if (numFields == -1) {
+      return false;
+    }
+    this.check(numFields);
+    visitor.visit(this.tokenizer.getFields(), numFields);
+    return true;
+  }
+
+  /**
+   * Checks a row's column count against the first row's, counting the row.
+   *
+   * @param numFields - the row's column count
+   * @throws IllegalArgumentException if it differs from the first row's
+   */
+  private void check(int numFields) throws IllegalArgumentException {
+    if (this.numCols == -1) {
+      this.numCols = numFields;
+    }
+    if (numFields != this.numCols) {
+      throw new IllegalArgumentException("Invalid CSV file: mismatching row dimensions");
+    }
+    this.rowCount++;
+  }
+
+  /**
+   * getRowCount returns how many rows have been read so far
+   *
+   * @return the number of rows returned by next or visitNext
+   */
+  public int getRowCount() {
+    return this.rowCount;
+  }
+
+  /**
+   * Closes the underlying reader.
+   *
+   * @throws IOException if failure closing reader
+   */
+  @Override
+  public void close() throws IOException {
+    this.reader.close();
+  }
+}
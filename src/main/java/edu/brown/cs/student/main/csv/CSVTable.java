@@ -0,0 +1,109 @@
+package edu.brown.cs.student.main.csv;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+/**
+ * CSVTable is a loaded, validated CSV: a grid of cells with the same number of columns in every
+ * row. Implementations decide how cells are stored; callers read them through get, or through
+ * equalTo when they only need to compare cells against a value (which lets an implementation avoid
+ * creating a String per cell).
+ */
+public interface CSVTable {
+
+  /**
+   * numRows returns the number of rows in the table, including any header row
+   *
+   * @return the number of rows
+   */
+  int numRows();
+
+  /**
+   * numCols returns the number of columns in every row
+   *
+   * @return the number of columns, 0 if the table is empty
+   */
+  int numCols();
+
+  /**
+   * get returns the text of one cell
+   *
+   * @param row - index of the row
+   * @param col - index of the column
+   * @return the cell text, exactly as it appeared in the CSV
+   */
+  String get(int row, int col);
+
+  /**
+   * getRow returns a copy of one row
+   *
+   * @param row - index of the row
+   * @return a new String[] with the cells of the row
+   */
+  default String[] getRow(int row) {
+    String[] values = new String[this.numCols()];
+    for (int col = 0; col < values.length; col++) {
+      values[col] = this.get(row, col);
+    }
+    return values;
+  }
+
+  /**
+   * getRows returns a copy of every row
+   *
+   * @return a list of String[] rows in table order
+   */
+  default List<String[]> getRows() {
+    List<String[]> rows = new ArrayList<>(this.numRows());
+    for (int row = 0; row < this.numRows(); row++) {
+      rows.add(this.getRow(row));
+    }
+    return rows;
+  }
+
+  /**
+   * view returns a reusable cursor over the rows of the table. Implementations that store bytes
+   * override this so cells can be copied out without creating Strings.
+   *
+   * @return a RowView positioned on row 0
+   */
+  default RowView view() {
+    return RowView.of(this);
+  }
+
+  /**
+   * equalTo returns a test for whether a cell of a column equals value. Implementations may
+   * override this to compare without creating Strings.
+   *
+   * @param col - index of the column to check
+   * @param value - the value cells are compared against
+   * @return an IntPredicate taking a row index, true if that row's cell in col equals value
+   */
+  default IntPredicate equalTo(int col, String value) {
+    return row -> this.get(row, col).equals(value);
+  }
+
+  /**
+   * getMemoryUsage estimates the bytes the table holds, on and off the heap. The default assumes a
+   * String[] per row and a separate String per cell, as in a RowTable, and reads every cell.
+   *
+   * @return the estimated size of the table in bytes
+   */
+  default long getMemoryUsage() {
+    long bytes = 0;
+    for (int row = 0; row < this.numRows(); row++) {
+      bytes += MemoryEstimates.ARRAY_HEADER + (long) this.numCols() * MemoryEstimates.REFERENCE;
+      for (int col = 0; col < this.numCols(); col++) {
+        bytes += MemoryEstimates.string(this.get(row, col));
+      }
+    }
+    return bytes;
+  }
+
+  /**
+   * release frees any memory the table holds outside the Java heap. The table must not be read
+   * afterwards. Tables that only use the heap don't need to do anything.
+   */
+  default void release() {}
+}
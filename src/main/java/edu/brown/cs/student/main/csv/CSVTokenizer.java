@@ -0,0 +1,204 @@
+package edu.brown.cs.student.main.csv;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * CSVTokenizer splits the characters of a Reader into CSV records in a single pass, following RFC
+ * 4180 for quoting: commas and line breaks inside double quotes do not end a field, and an escaped
+ * quote ("") simply toggles the quote state twice. Records end at LF, CRLF or a lone CR.
+ *
+ * <p>Field text is returned exactly as it appears in the file (surrounding quotes and whitespace
+ * included), which is what the regex-based parser used to produce.
+ *
+ * <p>A record is always kept whole in the buffer: when it runs past the end, it is moved to the
+ * front (or the buffer grown) before reading more. Fields are then just bounds within the buffer,
+ * which advance exposes as reusable CharSequence views and next copies into Strings.
+ */
+public class CSVTokenizer {
+
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private final Reader reader;
+  private char[] buffer = new char[BUFFER_SIZE];
+  private int position;
+  private int limit;
+
+  // where the current record starts in buffer; field bounds are relative to it
+  private int recordStart;
+  private int[] fieldStarts = new int[16];
+  private int[] fieldEnds = new int[16];
+  private int numFields;
+  private FieldView[] views = new FieldView[0];
+
+  /** FieldView is a CharSequence over one field of the current record, reused across records */
+  private final class FieldView implements CharSequence {
+    private final int index;
+
+    private FieldView(int index) {
+      this.index = index;
+    }
+
+    private int start() {
+      return CSVTokenizer.this.recordStart + CSVTokenizer.this.fieldStarts[this.index];
+    }
+
+    @Override
+    public int length() {
+      return CSVTokenizer.this.fieldEnds[this.index] - CSVTokenizer.this.fieldStarts[this.index];
+    }
+
+    @Override
+    public char charAt(int i) {
+      return CSVTokenizer.this.buffer[this.start() + i];
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+      return new String(CSVTokenizer.this.buffer, this.start() + start, end - start);
+    }
+
+    @Override
+    public String toString() {
+      return new String(CSVTokenizer.this.buffer, this.start(), this.length());
+    }
+  }
+
+  /**
+   * CSVTokenizer constructor
+   *
+   * @param reader - a Reader that has the contents of a CSV file
+   */
+  public CSVTokenizer(Reader reader) {
+    this.reader = reader;
+  }
+
+  /**
+   * Reads the next record from the underlying reader.
+   *
+   * @return the fields of the next record, or null if the end of input has been reached
+   * @throws IOException if failure reading from reader
+   */
+  public String[] next() throws IOException {
+    if (this.advance() == -1) {
+      return null;
+    }
+    String[] fields = new String[this.numFields];
+    for (int i = 0; i < fields.length; i++) {
+      fields[i] =
+          new String(
+              this.buffer,
+              this.recordStart + this.fieldStarts[i],
+              this.fieldEnds[i] - this.fieldStarts[i]);
+    }
+    return fields;
+  }
+
+  /**
+   * Reads the next record from the underlying reader, without creating any Strings. Its fields are
+   * then available from getFields until the next call.
+   *
+   * @return the number of fields in the record, or -1 if the end of input has been reached
+   * @throws IOException if failure reading from reader
+   */
+  public int advance() throws IOException {
+    this.recordStart = this.position;
+    this.numFields = 0;
+    if (this.position == this.limit && !this.fill()) {
+      return -1;
+    }
+    boolean quoted = false;
+    int start = this.position;
+    while (true) {
+      if (this.position == this.limit) {
+        int shift = this.recordStart;
+        if (!this.fill()) {
+          this.addField(start - shift, this.position);
+          return this.numFields;
+        }
+        start -= shift;
+      }
+      char c = this.buffer[this.position];
+      if (c == '"') {
+        quoted = !quoted;
+      } else if (!quoted) {
+        if (c == ',') {
+          this.addField(start, this.position);
+          start = this.position + 1;
+        } else if (c == '\n' || c == '\r') {
+          this.addField(start, this.position);
+          this.position++;
+          if (c == '\r'
+              && (this.position < this.limit || this.fill())
+              && this.buffer[this.position] == '\n') {
+            this.position++;
+          }
+          return this.numFields;
+        }
+      }
+      this.position++;
+    }
+  }
+
+  /**
+   * getFields returns views of the fields of the record last read by advance. The array and the
+   * views are reused, so they are only valid until the next call to advance or next.
+   *
+   * @return the views; only the first advance() of them are valid
+   */
+  public CharSequence[] getFields() {
+    if (this.views.length < this.numFields) {
+      int old = this.views.length;
+      this.views = Arrays.copyOf(this.views, this.fieldStarts.length);
+      for (int i = old; i < this.views.length; i++) {
+        this.views[i] = new FieldView(i);
+      }
+    }
+    return this.views;
+  }
+
+  /**
+   * Records the bounds of a field of the current record.
+   *
+   * @param start - index in buffer where the field starts
+   * @param end - index in buffer one past the last char of the field
+   */
+  private void addField(int start, int end) {
+    if (this.numFields == this.fieldStarts.length) {
+      this.fieldStarts = Arrays.copyOf(this.fieldStarts, this.numFields * 2);
+      this.fieldEnds = Arrays.copyOf(this.fieldEnds, this.numFields * 2);
+    }
+    this.fieldStarts[this.numFields] = start - this.recordStart;
+    this.fieldEnds[this.numFields] = end - this.recordStart;
+    this.numFields++;
+  }
+
+  /**
+   * Reads more chars into buffer after limit. The current record is first moved to the front of
+   * buffer, or buffer is grown if the record already fills it, so the record stays whole.
+   *
+   * @return false if the end of input has been reached, true otherwise
+   * @throws IOException if failure reading from reader
+   */
+  private boolean fill() throws IOException {
+    int kept = this.limit - this.recordStart;
+    if (this.recordStart > 0) {
+      System.arraycopy(this.buffer, this.recordStart, this.buffer, 0, kept);
+    } else if (kept == this.buffer.length) {
+      this.buffer = Arrays.copyOf(this.buffer, this.buffer.length * 2);
+    }
+    this.position -= this.recordStart;
+    this.limit = kept;
+    this.recordStart = 0;
+    int n;
+    do {
+      n = this.reader.read(this.buffer, this.limit, this.buffer.length - this.limit);
+    } while (n == 0);
+    if (n < 0) {
+      return false;
+    }
+    this.limit += n;
+    return true;
+  }
+}
@@ -0,0 +1,95 @@
+package edu.brown.cs.student.main.csv;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * ColumnIndex is a hash index over one column of a CSVTable: each distinct cell text maps to the
+ * rows that have it, in ascending order. An equality lookup is then one hash probe plus the
+ * matching rows, rather than a comparison against every row. Every row is indexed, including a
+ * header row; callers skip it.
+ */
+public class ColumnIndex {
+
+  private static final int[] NO_ROWS = new int[0];
+
+  private final Map<String, int[]> rows;
+  private final long memoryUsage;
+
+  private ColumnIndex(Map<String, int[]> rows, long memoryUsage) {
+    this.rows = rows;
+    this.memoryUsage = memoryUsage;
+  }
+
+  /**
+   * Builds the index of a column by reading every one of its cells once.
+   *
+   * @param table - the table to index
+   * @param col - index of the column
+   * @return the index
+   */
+  public static ColumnIndex of(CSVTable table, int col) {
+    Map<String, int[]> rows = new HashMap<>();
+    // the first element of each array is how many rows it holds, until they are trimmed below
+    for (int row = 0; row < table.numRows(); row++) {
+      String cell = table.get(row, col);
+      int[] postings = rows.computeIfAbsent(cell, unused -> new int[4]);
+      int size = postings[0] + 1;
+      if (size == postings.length) {
+        postings = Arrays.copyOf(postings, size * 2);
+        rows.put(cell, postings);
+      }
+      postings[size] = row;
+      postings[0] = size;
+    }
+    rows.replaceAll((value, postings) -> Arrays.copyOfRange(postings, 1, postings[0] + 1));
+    long memoryUsage = 0;
+    for (Map.Entry<String, int[]> entry : rows.entrySet()) {
+      memoryUsage +=
+          MemoryEstimates.MAP_ENTRY
+              + MemoryEstimates.string(entry.getKey())
+              + MemoryEstimates.ARRAY_HEADER
+              + 4L * entry.getValue().length;
+    }
+    return new ColumnIndex(rows, memoryUsage);
+  }
+
+  /**
+   * rowsEqualTo returns the rows whose cell in the column equals value
+   *
+   * @param value - the cell text to look up
+   * @return the row indexes in ascending order, empty if there are none; must not be modified
+   */
+  public int[] rowsEqualTo(String value) {
+    return this.rows.getOrDefault(value, NO_ROWS);
+  }
+
+  /**
+   * values returns the index's distinct cell texts with their rows, for building other indexes on
+   * top of it
+   *
+   * @return the index's own map, which must not be modified
+   */
+  Map<String, int[]> values() {
+    return this.rows;
+  }
+
+  /**
+   * getNumValues returns the number of distinct cell texts in the column
+   *
+   * @return the number of keys in the index
+   */
+  public int getNumValues() {
+    return this.rows.size();
+  }
+
+  /**
+   * getMemoryUsage estimates the heap the index takes, counting each cell text as its own copy
+   *
+   * @return the estimated size in bytes
+   */
+  public long getMemoryUsage() {
+    return this.memoryUsage;
+  }
+}
@@ -0,0 +1,11 @@
+package edu.brown.cs.student.main.csv;
+
+/** ColumnType is how ColumnarTable stores a column, as inferred when the table is built */
+public enum ColumnType {
+  /** Text, dictionary-encoded */
+  STRING,
+  /** Whole numbers, stored in a long[] */
+  LONG,
+  /** Decimal numbers (and whole numbers mixed in with them), stored in a double[] */
+  DOUBLE
+}
@@ -0,0 +1,577 @@
+package edu.brown.cs.student.main.csv;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntPredicate;
+
+/**
+ * ColumnarTable is a column-oriented CSVTable whose column types are inferred when it is built.
+ * Numeric columns are stored as a long[] or double[] with a bitmap of the cells that hold no
+ * number, so numeric work never parses text again. Every other column is dictionary-encoded: it
+ * keeps every distinct value once, and an int code per row pointing into that dictionary. CSVs that
+ * repeat the same few values (county names, categories) then cost about 4 bytes per cell instead of
+ * a String per cell, and equality checks compare ints instead of Strings.
+ *
+ * <p>Cells always read back as their original text. A number is only stored as a number when
+ * formatting it gives back exactly the text it was parsed from; other cells of a numeric column
+ * (the header, "007", "1.50") keep their text on the side.
+ */
+public class ColumnarTable implements CSVTable {
+
+  /** Code returned by codeOf for a value that does not appear in a column */
+  public static final int NOT_FOUND = -1;
+
+  /** Number of rows sampled to infer a column's type */
+  public static final int SAMPLE_SIZE = 1024;
+
+  // a numeric column falls back to the next type once more than 1 in this many cells are text
+  private static final int MAX_TEXT_RATIO = 64;
+  // any decimal with at most this many digits survives a round trip through a double
+  private static final int MAX_DECIMAL_DIGITS = 15;
+  private static final double[] POWERS_OF_TEN = new double[MAX_DECIMAL_DIGITS + 1];
+  // parseDecimal's result for text that isn't a decimal; can't be a real result
+  private static final long NOT_DECIMAL = Long.MIN_VALUE;
+
+  static {
+    POWERS_OF_TEN[0] = 1;
+    for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+      POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+    }
+  }
+
+  /** Column holds the cells of one column */
+  private abstract static class Column {
+    abstract ColumnType type();
+
+    abstract String get(int row);
+
+    abstract IntPredicate equalTo(String value);
+
+    abstract long getMemoryUsage();
+  }
+
+  /** DictionaryColumn stores each distinct value once, plus an int code per row */
+  private static final class DictionaryColumn extends Column {
+    private final String[] dictionary;
+    private final Map<String, Integer> codesByValue;
+    private final int[] codes;
+
+    private DictionaryColumn(String[] dictionary, Map<String, Integer> codesByValue, int[] codes) {
+      this.dictionary = dictionary;
+      this.codesByValue = codesByValue;
+      this.codes = codes;
+    }
+
+    @Override
+    ColumnType type() {
+      return ColumnType.STRING;
+    }
+
+    @Override
+    String get(int row) {
+      return this.dictionary[this.codes[row]];
+    }
+
+    /** Looks value up in the dictionary once, so testing a row only compares its int code. */
+    @Override
+    IntPredicate equalTo(String value) {
+      int code = this.codesByValue.getOrDefault(value, NOT_FOUND);
+      if (code == NOT_FOUND) {
+        return row -> false;
+      }
+      int[] columnCodes = this.codes;
+      return row -> columnCodes[row] == code;
+    }
+
+    @Override
+    long getMemoryUsage() {
+      long bytes = MemoryEstimates.ARRAY_HEADER + (long) this.codes.length * Integer.BYTES;
+      bytes += MemoryEstimates.ARRAY_HEADER;
+      for (String value : this.dictionary) {
+        bytes +=
+            MemoryEstimates.REFERENCE + MemoryEstimates.MAP_ENTRY + MemoryEstimates.string(value);
+      }
+      return bytes;
+    }
+  }
+
+  /**
+   * NumericColumn stores a LONG column's values in a long[] and a DOUBLE column's in a double[].
+   * Cells without a number are set in nulls; the ones that aren't empty keep their text in texts. A
+   * DOUBLE column also keeps each cell's number of decimal places, which together with the value
+   * gives back its text ("1.50" is 1.5 with 2 places).
+   */
+  private static final class NumericColumn extends Column {
+    private final ColumnType type;
+    private final long[] longs;
+    private final double[] doubles;
+    private final byte[] scales;
+    private final BitSet nulls;
+    private final Map<Integer, String> texts;
+
+    private NumericColumn(
+        ColumnType type,
+        long[] longs,
+        double[] doubles,
+        byte[] scales,
+        BitSet nulls,
+        Map<Integer, String> texts) {
+      this.type = type;
+      this.longs = longs;
+      this.doubles = doubles;
+      this.scales = scales;
+      this.nulls = nulls;
+      this.texts = texts;
+    }
+
+    /**
+     * Stores a column of source as type, in one pass.
+     *
+     * @return the column, or null if too many of its cells aren't numbers of that type
+     */
+    static NumericColumn encode(CSVTable source, int col, ColumnType type) {
+      int numRows = source.numRows();
+      boolean isLong = type == ColumnType.LONG;
+      long[] longs = isLong ? new long[numRows] : null;
+      double[] doubles = isLong ? null : new double[numRows];
+      byte[] scales = isLong ? null : new byte[numRows];
+      BitSet nulls = new BitSet();
+      Map<Integer, String> texts = new HashMap<>();
+      int maxTexts = 1 + numRows / MAX_TEXT_RATIO;
+
+      for (int row = 0; row < numRows; row++) {
+        String text = source.get(row, col);
+        if (isLong) {
+          if (isCanonicalLong(text)) {
+            longs[row] = Long.parseLong(text);
+            continue;
+          }
+        } else {
+          long unscaled = parseDecimal(text);
+          int scale = scaleOf(text);
+          double value = toDouble(unscaled, scale);
+          if (unscaled != NOT_DECIMAL && Math.round(value * POWERS_OF_TEN[scale]) == unscaled) {
+            doubles[row] = value;
+            scales[row] = (byte) scale;
+            continue;
+          }
+        }
+        nulls.set(row);
+        if (!text.isEmpty()) {
+          texts.put(row, text);
+          if (texts.size() > maxTexts) {
+            return null;
+          }
+        }
+      }
+      return new NumericColumn(type, longs, doubles, scales, nulls, texts);
+    }
+
+    @Override
+    ColumnType type() {
+      return this.type;
+    }
+
+    boolean isNumber(int row) {
+      return !this.nulls.get(row);
+    }
+
+    long getLong(int row) {
+      return this.type == ColumnType.LONG ? this.longs[row] : (long) this.doubles[row];
+    }
+
+    double getDouble(int row) {
+      return this.type == ColumnType.LONG ? this.longs[row] : this.doubles[row];
+    }
+
+    @Override
+    String get(int row) {
+      if (this.nulls.get(row)) {
+        return this.texts.getOrDefault(row, "");
+      } else if (this.type == ColumnType.LONG) {
+        return Long.toString(this.longs[row]);
+      }
+      int scale = this.scales[row];
+      return formatDecimal(Math.round(this.doubles[row] * POWERS_OF_TEN[scale]), scale);
+    }
+
+    /**
+     * Parses value once, so testing a row compares numbers. Values that aren't written the way
+     * numbers are stored can only match cells kept as text.
+     */
+    @Override
+    IntPredicate equalTo(String value) {
+      BitSet nulls = this.nulls;
+      if (value.isEmpty()) {
+        return row -> nulls.get(row) && !this.texts.containsKey(row);
+      }
+      if (this.type == ColumnType.LONG && isCanonicalLong(value)) {
+        long number = Long.parseLong(value);
+        long[] longs = this.longs;
+        return row -> longs[row] == number && !nulls.get(row);
+      }
+      long unscaled = this.type == ColumnType.DOUBLE ? parseDecimal(value) : NOT_DECIMAL;
+      if (unscaled != NOT_DECIMAL) {
+        // a value and its number of places give back one text, so both equal means the text does
+        int scale = scaleOf(value);
+        double number = toDouble(unscaled, scale);
+        double[] doubles = this.doubles;
+        byte[] scales = this.scales;
+        return row -> doubles[row] == number && scales[row] == scale && !nulls.get(row);
+      }
+      BitSet matches = new BitSet();
+      for (Map.Entry<Integer, String> entry : this.texts.entrySet()) {
+        if (entry.getValue().equals(value)) {
+          matches.set(entry.getKey());
+        }
+      }
+      return matches::get;
+    }
+
+    @Override
+    long getMemoryUsage() {
+      int numRows = this.longs != null ? this.longs.length : this.doubles.length;
+      long bytes = MemoryEstimates.ARRAY_HEADER + (long) numRows * Long.BYTES;
+      if (this.scales != null) {
+        bytes += MemoryEstimates.ARRAY_HEADER + numRows;
+      }
+      bytes += MemoryEstimates.ARRAY_HEADER + this.nulls.size() / Byte.SIZE;
+      for (String text : this.texts.values()) {
+        bytes += MemoryEstimates.MAP_ENTRY + MemoryEstimates.string(text);
+      }
+      return bytes;
+    }
+  }
+
+  private final int numRows;
+  private final Column[] columns;
+
+  private ColumnarTable(int numRows, Column[] columns) {
+    this.numRows = numRows;
+    this.columns = columns;
+  }
+
+  /**
+   * Encodes the cells of another table, one column at a time. Each column's type is inferred from a
+   * sample of up to SAMPLE_SIZE rows spread over the table (leaving out the first, which is often a
+   * header). A column the sample says is numeric is then stored in a full pass, which falls back
+   * from LONG to DOUBLE to dictionary encoding if the rest of the column turns out not to be.
+   *
+   * @param source - the table to encode
+   * @return a ColumnarTable with the same cells as source
+   */
+  public static ColumnarTable of(CSVTable source) {
+    int numRows = source.numRows();
+    Column[] columns = new Column[source.numCols()];
+    for (int col = 0; col < columns.length; col++) {
+      ColumnType type = inferType(source, col);
+      Column column = null;
+      if (type == ColumnType.LONG) {
+        column = NumericColumn.encode(source, col, ColumnType.LONG);
+        type = ColumnType.DOUBLE;
+      }
+      if (column == null && type == ColumnType.DOUBLE) {
+        column = NumericColumn.encode(source, col, ColumnType.DOUBLE);
+      }
+      columns[col] = column != null ? column : encodeDictionary(source, col);
+    }
+    return new ColumnarTable(numRows, columns);
+  }
+
+  /**
+   * Guesses a column's type from a sample of its cells.
+   *
+   * @param source - the table
+   * @param col - index of the column
+   * @return LONG if the non-empty sampled cells are whole numbers, DOUBLE if they are numbers,
+   *     apart from as many as a numeric column may keep as text; STRING otherwise or if they are
+   *     all empty
+   */
+  private static ColumnType inferType(CSVTable source, int col) {
+    int numRows = source.numRows();
+    int step = Math.max(1, (numRows - 1) / SAMPLE_SIZE);
+    ColumnType type = null;
+    int sampled = 0;
+    int texts = 0;
+    for (int row = numRows > 1 ? 1 : 0; row < numRows; row += step) {
+      String text = source.get(row, col);
+      sampled++;
+      if (text.isEmpty()) {
+        continue;
+      } else if (isCanonicalLong(text)) {
+        type = type == null ? ColumnType.LONG : type;
+      } else if (parseDecimal(text) != NOT_DECIMAL) {
+        type = ColumnType.DOUBLE;
+      } else {
+        texts++;
+      }
+    }
+    if (type == null || texts > 1 + sampled / MAX_TEXT_RATIO) {
+      return ColumnType.STRING;
+    }
+    return type;
+  }
+
+  /**
+   * Dictionary-encodes a column of source.
+   *
+   * @param source - the table
+   * @param col - index of the column
+   * @return the column
+   */
+  private static DictionaryColumn encodeDictionary(CSVTable source, int col) {
+    int numRows = source.numRows();
+    Map<String, Integer> columnCodes = new HashMap<>();
+    List<String> dictionary = new ArrayList<>();
+    int[] columnCells = new int[numRows];
+    for (int row = 0; row < numRows; row++) {
+      String value = source.get(row, col);
+      Integer code = columnCodes.get(value);
+      if (code == null) {
+        code = dictionary.size();
+        columnCodes.put(value, code);
+        dictionary.add(value);
+      }
+      columnCells[row] = code;
+    }
+    return new DictionaryColumn(dictionary.toArray(new String[0]), columnCodes, columnCells);
+  }
+
+  /**
+   * Checks that text is a long written the way Long.toString writes it: an optional minus sign and
+   * digits without leading zeros.
+   *
+   * @param text - the text to check
+   * @return true if Long.parseLong(text) would succeed and Long.toString would give back text
+   */
+  private static boolean isCanonicalLong(String text) {
+    int length = text.length();
+    int start = length > 0 && text.charAt(0) == '-' ? 1 : 0;
+    int digits = length - start;
+    if (digits == 0 || digits > 19 || (text.charAt(start) == '0' && (digits > 1 || start == 1))) {
+      return false;
+    }
+    for (int i = start; i < length; i++) {
+      char c = text.charAt(i);
+      if (c < '0' || c > '9') {
+        return false;
+      }
+    }
+    if (digits == 19) {
+      String limit = start == 1 ? "9223372036854775808" : "9223372036854775807";
+      return text.substring(start).compareTo(limit) <= 0;
+    }
+    return true;
+  }
+
+  /**
+   * Parses text written as a plain decimal: an optional minus sign, digits without leading zeros,
+   * and optionally a point followed by more digits, at most MAX_DECIMAL_DIGITS digits in all.
+   * formatDecimal gives back exactly such a text.
+   *
+   * @param text - the text to parse
+   * @return the digits as a long (1250 for "12.50", see scaleOf), or NOT_DECIMAL
+   */
+  private static long parseDecimal(String text) {
+    int length = text.length();
+    int start = length > 0 && text.charAt(0) == '-' ? 1 : 0;
+    int point = -1;
+    int digits = 0;
+    long unscaled = 0;
+    for (int i = start; i < length; i++) {
+      char c = text.charAt(i);
+      if (c == '.' && point == -1) {
+        point = i;
+      } else if (c < '0' || c > '9' || ++digits > MAX_DECIMAL_DIGITS) {
+        return NOT_DECIMAL;
+      } else {
+        unscaled = unscaled * 10 + (c - '0');
+      }
+    }
+    int wholeDigits = (point == -1 ? length : point) - start;
+    if (wholeDigits == 0
+        || point == length - 1
+        || (wholeDigits > 1 && text.charAt(start) == '0')
+        || (start == 1 && unscaled == 0)) {
+      return NOT_DECIMAL;
+    }
+    return start == 1 ? -unscaled : unscaled;
+  }
+
+  /**
+   * scaleOf returns the number of decimal places a decimal is written with
+   *
+   * @param text - a decimal
+   * @return the number of digits after the point, 0 if there is none
+   */
+  private static int scaleOf(String text) {
+    int point = text.indexOf('.');
+    return point == -1 ? 0 : text.length() - point - 1;
+  }
+
+  /**
+   * Converts a parsed decimal to the double nearest to it. Both operands are exact doubles, so the
+   * division rounds the same way Double.parseDouble would.
+   */
+  private static double toDouble(long unscaled, int scale) {
+    return unscaled == NOT_DECIMAL ? 0 : unscaled / POWERS_OF_TEN[scale];
+  }
+
+  /**
+   * Writes a decimal back as text, the inverse of parseDecimal.
+   *
+   * @param unscaled - the digits
+   * @param scale - how many of them come after the point
+   * @return the text, e.g. "12.50" for 1250 and 2
+   */
+  private static String formatDecimal(long unscaled, int scale) {
+    if (scale == 0) {
+      return Long.toString(unscaled);
+    }
+    String digits = Long.toString(Math.abs(unscaled));
+    StringBuilder text = new StringBuilder(digits.length() + 3);
+    if (unscaled < 0) {
+      text.append('-');
+    }
+    for (int i = digits.length(); i <= scale; i++) {
+      text.append('0');
+    }
+    text.append(digits);
+    text.insert(text.length() - scale, '.');
+    return text.toString();
+  }
+
+  @Override
+  public int numRows() {
+    return this.numRows;
+  }
+
+  @Override
+  public int numCols() {
+    return this.columns.length;
+  }
+
+  @Override
+  public String get(int row, int col) {
+    return this.columns[col].get(row);
+  }
+
+  /**
+   * getColumnType returns how a column is stored
+   *
+   * @param col - index of the column
+   * @return the column's inferred type
+   */
+  public ColumnType getColumnType(int col) {
+    return this.columns[col].type();
+  }
+
+  /**
+   * isNumber returns whether a cell of a numeric column holds a number
+   *
+   * @param row - index of the row
+   * @param col - index of the column
+   * @return false for empty cells, cells kept as text and STRING columns
+   */
+  public boolean isNumber(int row, int col) {
+    return this.columns[col] instanceof NumericColumn numeric && numeric.isNumber(row);
+  }
+
+  /**
+   * getLong returns the number in a cell of a numeric column, without parsing
+   *
+   * @param row - index of the row
+   * @param col - index of the column
+   * @return the number, truncated for DOUBLE columns; only meaningful if isNumber
+   * @throws IllegalArgumentException if the column is a STRING column
+   */
+  public long getLong(int row, int col) throws IllegalArgumentException {
+    return this.numeric(col).getLong(row);
+  }
+
+  /**
+   * getDouble returns the number in a cell of a numeric column, without parsing
+   *
+   * @param row - index of the row
+   * @param col - index of the column
+   * @return the number; only meaningful if isNumber
+   * @throws IllegalArgumentException if the column is a STRING column
+   */
+  public double getDouble(int row, int col) throws IllegalArgumentException {
+    return this.numeric(col).getDouble(row);
+  }
+
+  private NumericColumn numeric(int col) {
+    if (this.columns[col] instanceof NumericColumn numeric) {
+      return numeric;
+    }
+    throw new IllegalArgumentException("Column " + col + " is not numeric");
+  }
+
+  private DictionaryColumn dictionary(int col) {
+    if (this.columns[col] instanceof DictionaryColumn dictionary) {
+      return dictionary;
+    }
+    throw new IllegalArgumentException("Column " + col + " is not dictionary-encoded");
+  }
+
+  /**
+   * getCode returns the dictionary code of one cell of a STRING column
+   *
+   * @param row - index of the row
+   * @param col - index of the column
+   * @return the code of the cell's value in the column's dictionary
+   * @throws IllegalArgumentException if the column is numeric
+   */
+  public int getCode(int row, int col) throws IllegalArgumentException {
+    return this.dictionary(col).codes[row];
+  }
+
+  /**
+   * codeOf looks up the dictionary code of a value in a STRING column
+   *
+   * @param col - index of the column
+   * @param value - the value to look up
+   * @return the value's code, or NOT_FOUND if no cell in the column has that value
+   * @throws IllegalArgumentException if the column is numeric
+   */
+  public int codeOf(int col, String value) throws IllegalArgumentException {
+    return this.dictionary(col).codesByValue.getOrDefault(value, NOT_FOUND);
+  }
+
+  /**
+   * getDictionarySize returns the number of distinct values in a STRING column
+   *
+   * @param col - index of the column
+   * @return the number of entries in the column's dictionary
+   * @throws IllegalArgumentException if the column is numeric
+   */
+  public int getDictionarySize(int col) throws IllegalArgumentException {
+    return this.dictionary(col).dictionary.length;
+  }
+
+  @Override
+  public long getMemoryUsage() {
+    long bytes = 0;
+    for (Column column : this.columns) {
+      bytes += column.getMemoryUsage();
+    }
+    return bytes;
+  }
+
+  /**
+   * Compares numbers for numeric columns and dictionary codes for the rest, so testing a row never
+   * compares Strings (except against the few cells of a numeric column kept as text).
+   *
+   * @param col - index of the column to check
+   * @param value - the value cells are compared against
+   * @return an IntPredicate taking a row index, true if that row's cell in col equals value
+   */
+  @Override
+  public IntPredicate equalTo(int col, String value) {
+    return this.columns[col].equalTo(value);
+  }
+}
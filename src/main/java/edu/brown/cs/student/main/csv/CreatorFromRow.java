@@ -8,6 +8,10 @@ import java.util.List;
  * some arbitrary passed type.
  *
  * <p>Your parser class constructor should take a second parameter of this generic interface type.
+ *
+ * <p>This is the convenient way to consume rows: every field arrives as a String. Consumers that
+ * parse numbers or build their own structures can skip those Strings with a RowVisitor instead (see
+ * CSVStream.visitNext).
  */
 public interface CreatorFromRow<T> {
   T create(List<String> row) throws FactoryFailureException;
@@ -0,0 +1,302 @@
+package edu.brown.cs.student.main.csv;
+
+import edu.brown.cs.student.main.csv.ParserState.Dataset;
+import edu.brown.cs.student.main.csv.ParserState.Publication;
+import edu.brown.cs.student.main.exception.FactoryFailureException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
+
+/**
+ * DatasetWatcher polls the files behind watched datasets for appended rows. When a file has grown,
+ * only the bytes after the last complete record already loaded are mapped and tokenized, checked
+ * against the dataset's column count, converted to the dataset's storage and appended as a new
+ * segment (see SegmentedTable), and the result is published as a new version. The cost of a reload
+ * grows with what was appended, not with the size of the file. A record still being written (no
+ * line break after it yet) is left for a later poll. Small appended segments are merged as they
+ * pile up, so many polls don't leave a dataset spread over as many segments and mappings.
+ *
+ * <p>If a file shrinks or its last loaded record is changed, it is loaded again in full. A dataset
+ * stops being watched once it is unloaded or replaced by another load, or when appended rows are
+ * invalid; getFailure then says why.
+ */
+public class DatasetWatcher {
+
+  /** Watch is what a watcher knows about one watched dataset; only touched while polling */
+  private static final class Watch {
+    private final Path path;
+    private final TableStorage storage;
+    private long version;
+    // bytes of the file loaded so far, always up to the end of a complete record
+    private long offset;
+    private boolean endsWithBreak;
+    private long size;
+    private long modified = -1;
+
+    private Watch(Path path, TableStorage storage, long version, long offset) {
+      this.path = path;
+      this.storage = storage;
+      this.version = version;
+      this.offset = offset;
+      this.size = offset;
+    }
+  }
+
+  /**
+   * Appended is the result of reading what was appended to a file
+   *
+   * @param table - the appended rows, or null if no complete record was appended
+   * @param consumed - bytes of the file read, to add to the watch's offset
+   */
+  private record Appended(CSVTable table, long consumed) {}
+
+  private final ParserState parserState;
+  private final Map<String, Watch> watches = new ConcurrentHashMap<>();
+  private final Map<String, String> failures = new ConcurrentHashMap<>();
+  private ScheduledExecutorService scheduler;
+
+  /**
+   * DatasetWatcher constructor
+   *
+   * @param parserState - the catalog new versions are published to
+   */
+  public DatasetWatcher(ParserState parserState) {
+    this.parserState = parserState;
+  }
+
+  /**
+   * start polls every watched file at a fixed interval on a background thread
+   *
+   * @param intervalMillis - milliseconds between polls
+   */
+  public synchronized void start(long intervalMillis) {
+    if (this.scheduler == null) {
+      this.scheduler =
+          Executors.newSingleThreadScheduledExecutor(
+              task -> {
+                Thread thread = new Thread(task, "csv-watcher");
+                thread.setDaemon(true);
+                return thread;
+              });
+      this.scheduler.scheduleWithFixedDelay(
+          this::pollAll, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /** stop ends background polling */
+  public synchronized void stop() {
+    if (this.scheduler != null) {
+      this.scheduler.shutdownNow();
+      this.scheduler = null;
+    }
+  }
+
+  /**
+   * watch starts watching a dataset that was just published. Its table must be a SegmentedTable.
+   * Nothing here reads the file, so a dataset that was published is always watched.
+   *
+   * @param name - the dataset's name
+   * @param path - the file it was loaded from
+   * @param storage - the storage it was loaded with, used for appended rows too
+   * @param version - the version that was published
+   * @param loadedBytes - the bytes of the file that were parsed
+   * @param endsWithBreak - endsWithBreak(path, loadedBytes), checked before publishing
+   */
+  public void watch(
+      String name,
+      Path path,
+      TableStorage storage,
+      long version,
+      long loadedBytes,
+      boolean endsWithBreak) {
+    Watch watch = new Watch(path, storage, version, loadedBytes);
+    watch.endsWithBreak = endsWithBreak;
+    this.failures.remove(name);
+    this.watches.put(name, watch);
+  }
+
+  /**
+   * isWatching returns whether a dataset is being watched
+   *
+   * @param name - the dataset's name
+   * @return true if its file is polled for appended rows
+   */
+  public boolean isWatching(String name) {
+    return this.watches.containsKey(name);
+  }
+
+  /**
+   * getFailure returns why a dataset stopped being watched, if it was because of an error
+   *
+   * @param name - the dataset's name
+   * @return the error, or null
+   */
+  public String getFailure(String name) {
+    return this.failures.get(name);
+  }
+
+  /** pollAll checks every watched file once, publishing new versions for the ones that grew */
+  public synchronized void pollAll() {
+    for (Map.Entry<String, Watch> entry : this.watches.entrySet()) {
+      String name = entry.getKey();
+      // a load of the same name may have put a new watch meanwhile, which must be kept
+      try {
+        if (!this.poll(name, entry.getValue())) {
+          this.watches.remove(name, entry.getValue());
+        }
+      } catch (IOException | FactoryFailureException | RuntimeException e) {
+        if (this.watches.remove(name, entry.getValue())) {
+          this.failures.put(name, e.getMessage() == null ? e.toString() : e.getMessage());
+        }
+      }
+    }
+  }
+
+  /**
+   * Checks one watched file.
+   *
+   * @return false if the dataset is no longer the version being watched
+   */
+  private boolean poll(String name, Watch watch) throws IOException, FactoryFailureException {
+    if (this.parserState.getVersion(name) != watch.version) {
+      return false;
+    }
+    BasicFileAttributes attributes = Files.readAttributes(watch.path, BasicFileAttributes.class);
+    long size = attributes.size();
+    long modified = attributes.lastModifiedTime().toMillis();
+    if (size == watch.size && modified == watch.modified) {
+      return true;
+    }
+
+    // holding the dataset keeps its segments alive while they are shared with the new version
+    try (Dataset dataset = this.parserState.acquire(name)) {
+      if (dataset == null
+          || dataset.version() != watch.version
+          || !(dataset.table() instanceof SegmentedTable current)) {
+        return false;
+      }
+
+      CSVTable next;
+      long offset;
+      boolean endsWithBreak;
+      Appended appended = size < watch.offset ? null : this.readAppended(watch, current, size);
+      if (appended == null) {
+        // truncated, or the last loaded record was changed: load the whole file again
+        LoadProgress progress = new LoadProgress();
+        next = SegmentedTable.of(CSVLoader.load(watch.path, watch.storage, true, progress));
+        offset = progress.getLoadedBytes();
+        endsWithBreak = endsWithBreak(watch.path, offset);
+      } else if (appended.table() == null) {
+        watch.offset += appended.consumed();
+        watch.endsWithBreak |= appended.consumed() > 0;
+        watch.size = size;
+        watch.modified = modified;
+        return true;
+      } else {
+        next = current.append(appended.table(), this.merger(watch.storage));
+        offset = watch.offset + appended.consumed();
+        endsWithBreak = true;
+      }
+
+      Publication publication = this.parserState.replace(name, watch.version, next);
+      if (publication == null) {
+        next.release();
+        return false;
+      }
+      watch.version = publication.version();
+      watch.offset = offset;
+      watch.endsWithBreak = endsWithBreak;
+      watch.size = size;
+      watch.modified = modified;
+      return true;
+    }
+  }
+
+  /**
+   * merger returns how a watched dataset's appended segments are merged: copied into one table of
+   * the dataset's storage, or packed for MAPPED, since merged rows no longer lie together in the
+   * file
+   *
+   * @param storage - the dataset's storage
+   * @return the merge function for SegmentedTable.append
+   */
+  private UnaryOperator<CSVTable> merger(TableStorage storage) {
+    TableStorage merged = storage == TableStorage.MAPPED ? TableStorage.PACKED : storage;
+    return table -> CSVLoader.convert(table, merged);
+  }
+
+  /**
+   * Maps and tokenizes the complete records appended after watch.offset.
+   *
+   * @return the appended rows, or null if the last loaded record was changed instead
+   */
+  private Appended readAppended(Watch watch, CSVTable current, long size) throws IOException {
+    long length = size - watch.offset;
+    if (length > ByteTable.MAX_MAPPED_SIZE) {
+      return null;
+    }
+    try (FileChannel channel = FileChannel.open(watch.path, StandardOpenOption.READ)) {
+      MappedByteBuffer delta = channel.map(FileChannel.MapMode.READ_ONLY, watch.offset, length);
+      int start = 0;
+      if (!watch.endsWithBreak && length > 0) {
+        // the file ended mid-line when loaded, so new rows must start with the missing line break
+        byte first = delta.get(0);
+        if (first != '\n' && first != '\r') {
+          return null;
+        }
+        if (first == '\r' && length == 1) {
+          return new Appended(null, 0);
+        }
+        start = first == '\r' && delta.get(1) == '\n' ? 2 : 1;
+      }
+      int end = ByteTokenizer.lastRecordEnd(delta, start, (int) length);
+      if (end == start) {
+        return new Appended(null, start);
+      }
+
+      ByteTokenizer tokenizer = new ByteTokenizer(current.numRows() > 0 ? current.numCols() : -1);
+      tokenizer.tokenize(delta, start, end);
+      ByteTable tail =
+          new ByteTable(
+              delta,
+              IntBuffer.wrap(tokenizer.getOffsets()),
+              tokenizer.getNumRows(),
+              tokenizer.getNumCols(),
+              null);
+      return new Appended(CSVLoader.convert(tail, watch.storage), end);
+    }
+  }
+
+  /**
+   * endsWithBreak checks whether the first bytes of a file end with a line break, which watch needs
+   * to know about the part of the file that was loaded
+   *
+   * @param path - the file
+   * @param length - how many bytes of it to consider
+   * @return true if byte length - 1 is a line break, or length is 0
+   * @throws IOException if the file can't be read
+   */
+  public static boolean endsWithBreak(Path path, long length) throws IOException {
+    if (length == 0) {
+      return true;
+    }
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      ByteBuffer last = ByteBuffer.allocate(1);
+      channel.read(last, length - 1);
+      byte b = last.get(0);
+      return b == '\n' || b == '\r';
+    }
+  }
+}
@@ -0,0 +1,50 @@
+package edu.brown.cs.student.main.csv;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * DirectMemory allocates the off-heap ByteBuffers tables are stored in and counts how much of it
+ * live tables hold. The JDK has no supported way to free a direct buffer early, so the memory
+ * itself is returned when the GC collects the buffer, some time after its table is released; the
+ * count (and ParserState's memory budget) drops as soon as the table is released, and
+ * reference-counted release (see ParserState.Dataset) makes sure no reader still holds it then.
+ */
+public final class DirectMemory {
+
+  private static final AtomicLong allocated = new AtomicLong();
+
+  private DirectMemory() {}
+
+  /**
+   * Allocates a zeroed off-heap buffer of exactly size bytes.
+   *
+   * @param size - the number of bytes
+   * @return a direct ByteBuffer
+   */
+  public static ByteBuffer allocate(int size) {
+    allocated.addAndGet(size);
+    return ByteBuffer.allocateDirect(size);
+  }
+
+  /**
+   * Stops counting buffers returned by allocate, once their table is released. This frees nothing:
+   * the memory stays allocated until the GC collects the buffers.
+   *
+   * @param bytes - the buffers' total capacity
+   */
+  public static void uncount(long bytes) {
+    allocated.addAndGet(-bytes);
+  }
+
+  /**
+   * getAllocated returns how many bytes allocate has handed out to tables not yet released. That
+   * tracks live tables, not resident off-heap memory, which may be higher until the GC collects the
+   * buffers of released tables.
+   *
+   * @return the number of off-heap bytes held by live tables
+   */
+  public static long getAllocated() {
+    return allocated.get();
+  }
+}
@@ -0,0 +1,113 @@
+package edu.brown.cs.student.main.csv;
+
+import java.util.List;
+
+/**
+ * Filter is a parsed boolean filter expression over the columns of a table, searched with
+ * CSVSearcher.filter. Expressions combine predicates with AND, OR, NOT and parentheses, for example
+ *
+ * <pre>
+ *   State = RI AND (Race IN ('White', 'Black') OR NOT 'Earnings Disparity' &lt; 0.8)
+ *   Income BETWEEN 50000 AND 80000
+ * </pre>
+ *
+ * <p>A column is a header name or, failing that, a column index. = , != and IN compare the cell
+ * text exactly, like search; &lt;, &lt;=, &gt; and &gt;= compare numerically and only hold for
+ * cells that are plain numbers. Values and column names that aren't a single word are written in
+ * single quotes, with '' for a quote inside them. AND, OR, NOT and IN are not case sensitive.
+ * Parentheses and NOTs nest at most FilterParser.MAX_DEPTH deep.
+ */
+public interface Filter {
+
+  /** Operator is how a Comparison compares a cell with its value */
+  enum Operator {
+    EQUAL("="),
+    NOT_EQUAL("!="),
+    LESS("<"),
+    LESS_OR_EQUAL("<="),
+    GREATER(">"),
+    GREATER_OR_EQUAL(">=");
+
+    private final String symbol;
+
+    Operator(String symbol) {
+      this.symbol = symbol;
+    }
+
+    /**
+     * symbol returns how the operator is written in a filter
+     *
+     * @return the operator's text
+     */
+    public String symbol() {
+      return this.symbol;
+    }
+
+    /**
+     * isNumeric checks whether the operator compares numbers rather than text
+     *
+     * @return true for the ordering operators
+     */
+    public boolean isNumeric() {
+      return this != EQUAL && this != NOT_EQUAL;
+    }
+  }
+
+  /**
+   * And holds if every one of its filters holds
+   *
+   * @param filters - two or more filters
+   */
+  record And(List<Filter> filters) implements Filter {}
+
+  /**
+   * Or holds if any one of its filters holds
+   *
+   * @param filters - two or more filters
+   */
+  record Or(List<Filter> filters) implements Filter {}
+
+  /**
+   * Not holds if its filter doesn't
+   *
+   * @param filter - the negated filter
+   */
+  record Not(Filter filter) implements Filter {}
+
+  /**
+   * Comparison compares the cells of a column with a value
+   *
+   * @param column - the column's name or index
+   * @param operator - how cells are compared
+   * @param value - the value, a number for the ordering operators
+   */
+  record Comparison(String column, Operator operator, String value) implements Filter {}
+
+  /**
+   * In holds if a column's cell equals any of a list of values
+   *
+   * @param column - the column's name or index
+   * @param values - the values, at least one
+   */
+  record In(String column, List<String> values) implements Filter {}
+
+  /**
+   * Between holds if a column's cell is a number from low to high, both included
+   *
+   * @param column - the column's name or index
+   * @param low - the lower bound, a number
+   * @param high - the upper bound, a number
+   */
+  record Between(String column, String low, String high) implements Filter {}
+
+  /**
+   * Parses a filter expression.
+   *
+   * @param expression - the filter text
+   * @return the parsed filter
+   * @throws IllegalArgumentException if the expression is malformed, with where it went wrong
+   */
+  static Filter parse(String expression) throws IllegalArgumentException {
+    return new FilterParser(expression).parse();
+  }
+}
@@ -0,0 +1,265 @@
+package edu.brown.cs.student.main.csv;
+
+import edu.brown.cs.student.main.csv.Filter.Operator;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * FilterParser is a recursive descent parser for the expressions described in Filter. NOT binds
+ * tighter than AND, which binds tighter than OR.
+ *
+ * <pre>
+ *   or        := and (OR and)*
+ *   and       := unary (AND unary)*
+ *   unary     := NOT unary | '(' or ')' | predicate
+ *   predicate := term operator term | term IN '(' term (',' term)* ')'
+ *              | term BETWEEN term AND term
+ *   term      := word | 'quoted text'
+ * </pre>
+ */
+final class FilterParser {
+
+  /** Most parentheses and NOTs an expression may nest, so parsing can't overflow the stack */
+  static final int MAX_DEPTH = 64;
+
+  private final String text;
+  private int position;
+  private int depth;
+
+  /**
+   * FilterParser constructor
+   *
+   * @param text - the expression to parse
+   */
+  FilterParser(String text) {
+    this.text = text;
+  }
+
+  /**
+   * Parses the whole expression.
+   *
+   * @return the filter
+   * @throws IllegalArgumentException if the expression is malformed or nested more than MAX_DEPTH
+   *     deep
+   */
+  Filter parse() throws IllegalArgumentException {
+    Filter filter = this.or();
+    this.skipSpaces();
+    if (this.position < this.text.length()) {
+      throw this.error("expected AND, OR or the end of the filter");
+    }
+    return filter;
+  }
+
+  private Filter or() {
+    List<Filter> filters = new ArrayList<>();
+    filters.add(this.and());
+    while (this.keyword("OR")) {
+      filters.add(this.and());
+    }
+    return filters.size() == 1 ? filters.get(0) : new Filter.Or(List.copyOf(filters));
+  }
+
+  private Filter and() {
+    List<Filter> filters = new ArrayList<>();
+    filters.add(this.unary());
+    while (this.keyword("AND")) {
+      filters.add(this.unary());
+    }
+    return filters.size() == 1 ? filters.get(0) : new Filter.And(List.copyOf(filters));
+  }
+
+  private Filter unary() {
+    if (this.keyword("NOT")) {
+      this.enter();
+      Filter filter = new Filter.Not(this.unary());
+      this.depth--;
+      return filter;
+    }
+    if (this.symbol("(")) {
+      this.enter();
+      Filter filter = this.or();
+      if (!this.symbol(")")) {
+        throw this.error("expected ')'");
+      }
+      this.depth--;
+      return filter;
+    }
+    return this.predicate();
+  }
+
+  private void enter() {
+    if (++this.depth > MAX_DEPTH) {
+      throw new IllegalArgumentException("Filter nested too deeply.");
+    }
+  }
+
+  private Filter predicate() {
+    String column = this.term("a column");
+    if (this.keyword("IN")) {
+      if (!this.symbol("(")) {
+        throw this.error("expected '(' after IN");
+      }
+      List<String> values = new ArrayList<>();
+      do {
+        values.add(this.term("a value"));
+      } while (this.symbol(","));
+      if (!this.symbol(")")) {
+        throw this.error("expected ',' or ')'");
+      }
+      return new Filter.In(column, List.copyOf(values));
+    }
+    if (this.keyword("BETWEEN")) {
+      String low = this.number("BETWEEN");
+      if (!this.keyword("AND")) {
+        throw this.error("expected AND in BETWEEN");
+      }
+      return new Filter.Between(column, low, this.number("BETWEEN"));
+    }
+    Operator operator = this.operator();
+    String value = operator.isNumeric() ? this.number(operator.symbol()) : this.term("a value");
+    return new Filter.Comparison(column, operator, value);
+  }
+
+  /**
+   * Reads a term that must be a number.
+   *
+   * @param what - what needs the number, for the error message
+   * @return the term's text
+   */
+  private String number(String what) {
+    this.skipSpaces();
+    int start = this.position;
+    String value = this.term("a value");
+    if (Double.isNaN(FilterPlan.parseNumber(value))) {
+      this.position = start;
+      throw this.error("'" + what + "' needs a number");
+    }
+    return value;
+  }
+
+  private Operator operator() {
+    this.skipSpaces();
+    // two-character operators first, so "<=" isn't read as "<"
+    for (String symbol : new String[] {"!=", "<=", ">=", "=", "<", ">"}) {
+      if (this.text.startsWith(symbol, this.position)) {
+        this.position += symbol.length();
+        for (Operator operator : Operator.values()) {
+          if (operator.symbol().equals(symbol)) {
+            return operator;
+          }
+        }
+      }
+    }
+    throw this.error("expected =, !=, <, <=, >, >=, IN or BETWEEN");
+  }
+
+  /**
+   * Reads a word or quoted text. Unquoted keywords aren't terms.
+   *
+   * @param what - what the term is, for the error message
+   * @return the term's text, unquoted
+   */
+  private String term(String what) {
+    this.skipSpaces();
+    int start = this.position;
+    if (start < this.text.length() && this.text.charAt(start) == '\'') {
+      StringBuilder term = new StringBuilder();
+      int pos = start + 1;
+      while (true) {
+        if (pos == this.text.length()) {
+          this.position = start;
+          throw this.error("unterminated quote");
+        }
+        char c = this.text.charAt(pos++);
+        if (c == '\'') {
+          if (pos < this.text.length() && this.text.charAt(pos) == '\'') {
+            pos++;
+          } else {
+            break;
+          }
+        }
+        term.append(c);
+      }
+      this.position = pos;
+      return term.toString();
+    }
+    int end = this.wordEnd(start);
+    String word = this.text.substring(start, end);
+    if (word.isEmpty() || isKeyword(word)) {
+      throw this.error("expected " + what);
+    }
+    this.position = end;
+    return word;
+  }
+
+  private static boolean isKeyword(String word) {
+    for (String keyword : new String[] {"AND", "OR", "NOT", "IN", "BETWEEN"}) {
+      if (keyword.equalsIgnoreCase(word)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Finds where a word starting at start ends: at whitespace, a quote or a symbol.
+   *
+   * @param start - index of the word's first char
+   * @return index one past its last char
+   */
+  private int wordEnd(int start) {
+    int end = start;
+    while (end < this.text.length()) {
+      char c = this.text.charAt(end);
+      if (Character.isWhitespace(c) || "()',=!<>".indexOf(c) >= 0) {
+        break;
+      }
+      end++;
+    }
+    return end;
+  }
+
+  /**
+   * Consumes a keyword if it is next.
+   *
+   * @param keyword - the keyword, upper case
+   * @return true if it was next and consumed
+   */
+  private boolean keyword(String keyword) {
+    this.skipSpaces();
+    int end = this.wordEnd(this.position);
+    if (keyword.equalsIgnoreCase(this.text.substring(this.position, end))) {
+      this.position = end;
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Consumes a symbol if it is next.
+   *
+   * @param symbol - the symbol
+   * @return true if it was next and consumed
+   */
+  private boolean symbol(String symbol) {
+    this.skipSpaces();
+    if (this.text.startsWith(symbol, this.position)) {
+      this.position += symbol.length();
+      return true;
+    }
+    return false;
+  }
+
+  private void skipSpaces() {
+    while (this.position < this.text.length()
+        && Character.isWhitespace(this.text.charAt(this.position))) {
+      this.position++;
+    }
+  }
+
+  private IllegalArgumentException error(String message) {
+    return new IllegalArgumentException(
+        "Invalid filter: " + message + " at position " + this.position + ".");
+  }
+}
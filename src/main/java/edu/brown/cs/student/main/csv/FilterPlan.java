@@ -0,0 +1,576 @@
+package edu.brown.cs.student.main.csv;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.IntPredicate;
+import java.util.stream.Collectors;
+
+/**
+ * FilterPlan is how a Filter is evaluated against one table. Planning turns every predicate into a
+ * node that can either list its matching rows or test a single row, and estimates how many rows it
+ * matches:
+ *
+ * <ul>
+ *   <li>= and IN look their values up in the column's hash index (SearchIndexes.column), which
+ *       gives the exact count; without indexes they scan.
+ *   <li>The ordering comparisons and BETWEEN look their range up in the column's sorted index
+ *       (SearchIndexes.range), which also gives the exact count; without indexes they scan, reading
+ *       numeric columns of a ColumnarTable without parsing.
+ *   <li>AND evaluates its most selective filter first and only tests the others on the rows it
+ *       returns, so cells outside those rows are never read.
+ *   <li>OR unions its filters' rows when all of them come from indexes, and otherwise makes one
+ *       scan testing each row, instead of one scan per filter.
+ * </ul>
+ *
+ * <p>describe shows the chosen order and access paths.
+ */
+public class FilterPlan {
+
+  private final CSVTable table;
+  private final SearchIndexes indexes;
+  private final Function<String, List<Integer>> columns;
+  private final int firstRow;
+  private final int numRows;
+  private final Node root;
+
+  /** Node is one planned filter */
+  private abstract static class Node {
+    /** Rows the node is expected to match */
+    long estimate;
+    /** Whether rows comes from indexes rather than a scan */
+    boolean indexed;
+
+    abstract int[] rows();
+
+    abstract boolean test(int row);
+
+    abstract String describe();
+  }
+
+  /**
+   * FilterPlan constructor, which plans the filter
+   *
+   * @param filter - the filter to plan
+   * @param table - the table to evaluate it on
+   * @param firstRow - the first row that can match (1 to skip a header)
+   * @param indexes - the table's indexes, or null to always scan
+   * @param columns - resolves a column name or index to column indexes
+   * @throws IllegalArgumentException if the filter names a column that doesn't exist
+   */
+  FilterPlan(
+      Filter filter,
+      CSVTable table,
+      int firstRow,
+      SearchIndexes indexes,
+      Function<String, List<Integer>> columns)
+      throws IllegalArgumentException {
+    this.table = table;
+    this.indexes = indexes;
+    this.columns = columns;
+    this.firstRow = firstRow;
+    this.numRows = table.numRows();
+    this.root = this.plan(filter);
+  }
+
+  /**
+   * rows evaluates the filter
+   *
+   * @return the indexes of the matching rows, ascending; must not be modified
+   */
+  public int[] rows() {
+    return this.root.rows();
+  }
+
+  /**
+   * estimate returns how many rows the planner expects to match
+   *
+   * @return the estimate
+   */
+  public long estimate() {
+    return this.root.estimate;
+  }
+
+  /**
+   * describe shows the plan: filters in the order they are evaluated, with how each finds its rows
+   *
+   * @return a one-line description
+   */
+  public String describe() {
+    return this.root.describe();
+  }
+
+  private Node plan(Filter filter) {
+    if (filter instanceof Filter.And and) {
+      return new AndNode(this.planAll(and.filters()));
+    } else if (filter instanceof Filter.Or or) {
+      return new OrNode(this.planAll(or.filters()));
+    } else if (filter instanceof Filter.Not not) {
+      return new NotNode(this.plan(not.filter()));
+    } else if (filter instanceof Filter.In in) {
+      return new EqualNode(in.column(), in.values());
+    } else if (filter instanceof Filter.Between between) {
+      return new RangeNode(
+          between.column(),
+          parseNumber(between.low()),
+          true,
+          parseNumber(between.high()),
+          true,
+          "BETWEEN " + between.low() + " AND " + between.high());
+    }
+    Filter.Comparison comparison = (Filter.Comparison) filter;
+    String column = comparison.column();
+    double bound = comparison.operator().isNumeric() ? parseNumber(comparison.value()) : Double.NaN;
+    String condition = comparison.operator().symbol() + " " + comparison.value();
+    double infinity = Double.POSITIVE_INFINITY;
+    return switch (comparison.operator()) {
+      case EQUAL -> new EqualNode(column, List.of(comparison.value()));
+      case NOT_EQUAL -> new NotNode(new EqualNode(column, List.of(comparison.value())));
+      case LESS -> new RangeNode(column, -infinity, true, bound, false, condition);
+      case LESS_OR_EQUAL -> new RangeNode(column, -infinity, true, bound, true, condition);
+      case GREATER -> new RangeNode(column, bound, false, infinity, true, condition);
+      case GREATER_OR_EQUAL -> new RangeNode(column, bound, true, infinity, true, condition);
+    };
+  }
+
+  private List<Node> planAll(List<Filter> filters) {
+    List<Node> nodes = new ArrayList<>();
+    for (Filter filter : filters) {
+      nodes.add(this.plan(filter));
+    }
+    return nodes;
+  }
+
+  /** Rows a filter can match: every row after any header */
+  private long total() {
+    return Math.max(0, this.numRows - this.firstRow);
+  }
+
+  private int[] scan(IntPredicate test) {
+    int[] rows = new int[16];
+    int size = 0;
+    for (int row = this.firstRow; row < this.numRows; row++) {
+      if (test.test(row)) {
+        if (size == rows.length) {
+          rows = Arrays.copyOf(rows, size * 2);
+        }
+        rows[size++] = row;
+      }
+    }
+    return Arrays.copyOf(rows, size);
+  }
+
+  /**
+   * Merges ascending row lists into one, without duplicates.
+   *
+   * @param lists - ascending row lists
+   * @return their union, ascending
+   */
+  private static int[] union(List<int[]> lists) {
+    if (lists.size() == 1) {
+      return lists.get(0);
+    }
+    return lists.stream().flatMapToInt(Arrays::stream).sorted().distinct().toArray();
+  }
+
+  private static String quote(String text) {
+    return "'" + text.replace("'", "''") + "'";
+  }
+
+  /** EqualNode is = (one value) or IN (several): the cell text equals one of the values */
+  private final class EqualNode extends Node {
+    private final String column;
+    private final List<String> values;
+    private final List<Integer> cols;
+    private final IntPredicate[] matchers;
+    private final Set<String> valueSet;
+    private final List<int[]> postings = new ArrayList<>();
+
+    private EqualNode(String column, List<String> values) {
+      this.column = column;
+      this.values = values;
+      this.cols = FilterPlan.this.columns.apply(column);
+      this.valueSet = new HashSet<>(values);
+      this.matchers = new IntPredicate[this.cols.size()];
+      for (int i = 0; i < this.matchers.length; i++) {
+        this.matchers[i] = FilterPlan.this.table.equalTo(this.cols.get(i), values.get(0));
+      }
+      if (FilterPlan.this.indexes != null) {
+        for (int col : this.cols) {
+          for (String value : this.valueSet) {
+            int[] rows = FilterPlan.this.indexes.column(col).rowsEqualTo(value);
+            this.postings.add(rows);
+            this.estimate += rows.length;
+          }
+        }
+        this.indexed = true;
+      } else {
+        // a guess: equality is usually selective
+        this.estimate = FilterPlan.this.total() / 10;
+      }
+    }
+
+    @Override
+    int[] rows() {
+      if (!this.indexed) {
+        return FilterPlan.this.scan(this::test);
+      }
+      int[] rows = union(this.postings);
+      int skip = 0;
+      while (skip < rows.length && rows[skip] < FilterPlan.this.firstRow) {
+        skip++;
+      }
+      return skip == 0 ? rows : Arrays.copyOfRange(rows, skip, rows.length);
+    }
+
+    @Override
+    boolean test(int row) {
+      if (this.values.size() == 1) {
+        for (IntPredicate matcher : this.matchers) {
+          if (matcher.test(row)) {
+            return true;
+          }
+        }
+        return false;
+      }
+      for (int col : this.cols) {
+        if (this.valueSet.contains(FilterPlan.this.table.get(row, col))) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @Override
+    String describe() {
+      String condition =
+          this.values.size() == 1
+              ? quote(this.column) + " = " + quote(this.values.get(0))
+              : quote(this.column)
+                  + " IN ("
+                  + this.values.stream().map(FilterPlan::quote).collect(Collectors.joining(", "))
+                  + ")";
+      return condition + (this.indexed ? " [index: " + this.estimate + " rows]" : " [scan]");
+    }
+  }
+
+  /** RangeNode is a numeric range: the cell is a number within the bounds */
+  private final class RangeNode extends Node {
+    private final String column;
+    private final List<Integer> cols;
+    private final double low;
+    private final boolean lowInclusive;
+    private final double high;
+    private final boolean highInclusive;
+    private final String condition;
+
+    private RangeNode(
+        String column,
+        double low,
+        boolean lowInclusive,
+        double high,
+        boolean highInclusive,
+        String condition) {
+      this.column = column;
+      this.cols = FilterPlan.this.columns.apply(column);
+      this.low = low;
+      this.lowInclusive = lowInclusive;
+      this.high = high;
+      this.highInclusive = highInclusive;
+      this.condition = condition;
+      if (FilterPlan.this.indexes != null) {
+        for (int col : this.cols) {
+          this.estimate +=
+              FilterPlan.this.indexes.range(col).count(low, lowInclusive, high, highInclusive);
+        }
+        this.indexed = true;
+      } else {
+        // a guess: a range keeps about a third of the rows
+        this.estimate = FilterPlan.this.total() / 3;
+      }
+    }
+
+    @Override
+    int[] rows() {
+      if (!this.indexed) {
+        return FilterPlan.this.scan(this::test);
+      }
+      List<int[]> lists = new ArrayList<>();
+      for (int col : this.cols) {
+        lists.add(
+            FilterPlan.this
+                .indexes
+                .range(col)
+                .rowsBetween(this.low, this.lowInclusive, this.high, this.highInclusive));
+      }
+      int[] rows = union(lists);
+      int skip = 0;
+      while (skip < rows.length && rows[skip] < FilterPlan.this.firstRow) {
+        skip++;
+      }
+      return skip == 0 ? rows : Arrays.copyOfRange(rows, skip, rows.length);
+    }
+
+    @Override
+    boolean test(int row) {
+      for (int col : this.cols) {
+        double number = FilterPlan.this.number(row, col);
+        // NaN, for cells that aren't numbers, fails every comparison
+        if ((this.lowInclusive ? number >= this.low : number > this.low)
+            && (this.highInclusive ? number <= this.high : number < this.high)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @Override
+    String describe() {
+      return quote(this.column)
+          + " "
+          + this.condition
+          + (this.indexed ? " [range index: " + this.estimate + " rows]" : " [scan]");
+    }
+  }
+
+  /** NotNode holds where its filter doesn't */
+  private final class NotNode extends Node {
+    private final Node filter;
+
+    private NotNode(Node filter) {
+      this.filter = filter;
+      this.estimate = Math.max(0, FilterPlan.this.total() - filter.estimate);
+      // the complement of index rows is found without reading any cells
+      this.indexed = filter.indexed;
+    }
+
+    @Override
+    int[] rows() {
+      if (!this.filter.indexed) {
+        return FilterPlan.this.scan(this::test);
+      }
+      int[] excluded = this.filter.rows();
+      int[] rows = new int[(int) Math.max(0, FilterPlan.this.total() - excluded.length)];
+      int size = 0;
+      int next = 0;
+      for (int row = FilterPlan.this.firstRow; row < FilterPlan.this.numRows; row++) {
+        if (next < excluded.length && excluded[next] == row) {
+          next++;
+        } else {
+          rows[size++] = row;
+        }
+      }
+      return rows;
+    }
+
+    @Override
+    boolean test(int row) {
+      return !this.filter.test(row);
+    }
+
+    @Override
+    String describe() {
+      return "NOT(" + this.filter.describe() + ")";
+    }
+  }
+
+  /** AndNode holds where all its filters hold; the most selective is evaluated first */
+  private final class AndNode extends Node {
+    private final List<Node> filters;
+
+    private AndNode(List<Node> filters) {
+      this.filters = new ArrayList<>(filters);
+      // ties go to the filter that doesn't need a scan
+      this.filters.sort(
+          Comparator.comparingLong((Node node) -> node.estimate)
+              .thenComparing(node -> !node.indexed));
+      this.estimate = this.filters.get(0).estimate;
+      this.indexed = this.filters.get(0).indexed;
+    }
+
+    @Override
+    int[] rows() {
+      // the candidates may be an index's own postings, so matches are copied out, not compacted
+      int[] candidates = this.filters.get(0).rows();
+      int[] rows = new int[candidates.length];
+      int size = 0;
+      for (int row : candidates) {
+        if (this.testRest(row)) {
+          rows[size++] = row;
+        }
+      }
+      return Arrays.copyOf(rows, size);
+    }
+
+    private boolean testRest(int row) {
+      for (int i = 1; i < this.filters.size(); i++) {
+        if (!this.filters.get(i).test(row)) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    @Override
+    boolean test(int row) {
+      return this.filters.get(0).test(row) && this.testRest(row);
+    }
+
+    @Override
+    String describe() {
+      return "AND("
+          + this.filters.stream().map(Node::describe).collect(Collectors.joining(", "))
+          + ")";
+    }
+  }
+
+  /** OrNode holds where any of its filters holds */
+  private final class OrNode extends Node {
+    private final List<Node> filters;
+
+    private OrNode(List<Node> filters) {
+      this.filters = new ArrayList<>(filters);
+      // when testing rows, try the filter most likely to hold first
+      this.filters.sort(Comparator.comparingLong((Node node) -> node.estimate).reversed());
+      long sum = 0;
+      boolean allIndexed = true;
+      for (Node filter : this.filters) {
+        sum += filter.estimate;
+        allIndexed &= filter.indexed;
+      }
+      this.estimate = Math.min(FilterPlan.this.total(), sum);
+      this.indexed = allIndexed;
+    }
+
+    @Override
+    int[] rows() {
+      if (!this.indexed) {
+        return FilterPlan.this.scan(this::test);
+      }
+      List<int[]> lists = new ArrayList<>();
+      for (Node filter : this.filters) {
+        lists.add(filter.rows());
+      }
+      return union(lists);
+    }
+
+    @Override
+    boolean test(int row) {
+      for (Node filter : this.filters) {
+        if (filter.test(row)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @Override
+    String describe() {
+      return (this.indexed ? "OR(" : "OR[scan](")
+          + this.filters.stream().map(Node::describe).collect(Collectors.joining(", "))
+          + ")";
+    }
+  }
+
+  /**
+   * Reads a cell as a number, without parsing for numeric columns of a ColumnarTable.
+   *
+   * @param row - index of the row
+   * @param col - index of the column
+   * @return the number, or NaN if the cell isn't one
+   */
+  private double number(int row, int col) {
+    if (this.table instanceof ColumnarTable columnar && columnar.isNumber(row, col)) {
+      return columnar.getDouble(row, col);
+    }
+    return parseNumber(this.table.get(row, col));
+  }
+
+  /**
+   * Parses text that is a decimal number: an optional sign, an optional '$', digits with optional
+   * ',' thousands separators, and an optional fraction and exponent. Surrounding whitespace and a
+   * surrounding pair of double quotes are allowed, so census cells such as " $1,058.47 " and
+   * "\"74,489.00\"" are numbers. Anything else, such as "75%" or "NaN", is not.
+   *
+   * @param text - the text to parse
+   * @return the number, or NaN if text isn't one
+   */
+  static double parseNumber(CharSequence text) {
+    int start = 0;
+    int end = text.length();
+    while (start < end && Character.isWhitespace(text.charAt(start))) {
+      start++;
+    }
+    while (end > start && Character.isWhitespace(text.charAt(end - 1))) {
+      end--;
+    }
+    if (end - start >= 2 && text.charAt(start) == '"' && text.charAt(end - 1) == '"') {
+      start++;
+      end--;
+      while (start < end && Character.isWhitespace(text.charAt(start))) {
+        start++;
+      }
+      while (end > start && Character.isWhitespace(text.charAt(end - 1))) {
+        end--;
+      }
+    }
+    StringBuilder number = new StringBuilder(end - start);
+    int pos = start;
+    if (pos < end && (text.charAt(pos) == '-' || text.charAt(pos) == '+')) {
+      number.append(text.charAt(pos++));
+    }
+    if (pos < end && text.charAt(pos) == '$') {
+      pos++;
+    }
+    int digits = 0;
+    while (pos < end) {
+      char c = text.charAt(pos);
+      if (isDigit(c)) {
+        number.append(c);
+        digits++;
+      } else if (c != ',' || digits == 0 || pos + 1 == end || !isDigit(text.charAt(pos + 1))) {
+        // a separator must sit between digits
+        break;
+      }
+      pos++;
+    }
+    if (pos < end && text.charAt(pos) == '.') {
+      number.append('.');
+      pos++;
+      while (pos < end && isDigit(text.charAt(pos))) {
+        number.append(text.charAt(pos++));
+        digits++;
+      }
+    }
+    if (digits == 0) {
+      return Double.NaN;
+    }
+    if (pos < end && (text.charAt(pos) == 'e' || text.charAt(pos) == 'E')) {
+      number.append('e');
+      pos++;
+      if (pos < end && (text.charAt(pos) == '-' || text.charAt(pos) == '+')) {
+        number.append(text.charAt(pos++));
+      }
+      int exponentDigits = 0;
+      while (pos < end && isDigit(text.charAt(pos))) {
+        number.append(text.charAt(pos++));
+        exponentDigits++;
+      }
+      if (exponentDigits == 0) {
+        return Double.NaN;
+      }
+    }
+    if (pos != end) {
+      return Double.NaN;
+    }
+    return Double.parseDouble(number.toString());
+  }
+
+  private static boolean isDigit(char c) {
+    return c >= '0' && c <= '9';
+  }
+}
@@ -0,0 +1,208 @@
+package edu.brown.cs.student.main.csv;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * InvertedIndex maps every distinct cell text of a table, in any column, to the cells that have it.
+ * It answers searches that don't name a column with one hash probe, where a scan would compare the
+ * value against every cell.
+ *
+ * <p>Each value's postings are (row, column) pairs in table order, stored as varints: the row as
+ * the difference from the previous posting's row, then the column. Most deltas and columns fit in
+ * one byte, so a posting usually takes two bytes instead of the eight of two ints.
+ *
+ * <p>The index is built in parallel: row ranges are indexed separately and their postings appended
+ * in range order, which keeps every list in table order.
+ */
+public class InvertedIndex {
+
+  /** Rows indexed by one task when building in parallel */
+  static final int CHUNK_ROWS = 1 << 15;
+
+  private static final int[] NO_CELLS = new int[0];
+
+  private final Map<String, byte[]> postings;
+  private final long memoryUsage;
+
+  /** Postings is a growable list of (row, column) pairs, used while building */
+  private static final class Postings {
+    private int[] cells = new int[4];
+    private int size;
+
+    private void add(int row, int col) {
+      if (this.size + 2 > this.cells.length) {
+        this.cells = Arrays.copyOf(this.cells, this.cells.length * 2);
+      }
+      this.cells[this.size++] = row;
+      this.cells[this.size++] = col;
+    }
+
+    private Postings append(Postings later) {
+      if (this.size + later.size > this.cells.length) {
+        this.cells =
+            Arrays.copyOf(this.cells, Math.max(this.cells.length * 2, this.size + later.size));
+      }
+      System.arraycopy(later.cells, 0, this.cells, this.size, later.size);
+      this.size += later.size;
+      return this;
+    }
+
+    private byte[] encode() {
+      byte[] bytes = new byte[this.size * 5];
+      int length = 0;
+      int previousRow = 0;
+      for (int i = 0; i < this.size; i += 2) {
+        length = writeVarint(bytes, length, this.cells[i] - previousRow);
+        length = writeVarint(bytes, length, this.cells[i + 1]);
+        previousRow = this.cells[i];
+      }
+      return Arrays.copyOf(bytes, length);
+    }
+  }
+
+  private InvertedIndex(Map<String, byte[]> postings, long memoryUsage) {
+    this.postings = postings;
+    this.memoryUsage = memoryUsage;
+  }
+
+  /**
+   * Builds the index of every cell of a table, including a header row's.
+   *
+   * @param table - the table to index
+   * @param pool - pool to index row ranges on
+   * @return the index
+   */
+  public static InvertedIndex of(CSVTable table, ForkJoinPool pool) {
+    int numRows = table.numRows();
+    int chunks = (numRows + CHUNK_ROWS - 1) / CHUNK_ROWS;
+    List<Map<String, Postings>> parts =
+        ByteTable.invokeAll(
+            pool,
+            chunks,
+            chunk -> index(table, chunk * CHUNK_ROWS, Math.min(numRows, (chunk + 1) * CHUNK_ROWS)));
+
+    Map<String, Postings> merged = parts.isEmpty() ? new HashMap<>() : parts.get(0);
+    for (int i = 1; i < parts.size(); i++) {
+      parts.get(i).forEach((value, later) -> merged.merge(value, later, Postings::append));
+    }
+
+    Map<String, byte[]> postings = new HashMap<>(merged.size() * 2);
+    long memoryUsage = 0;
+    for (Map.Entry<String, Postings> entry : merged.entrySet()) {
+      byte[] encoded = entry.getValue().encode();
+      postings.put(entry.getKey(), encoded);
+      memoryUsage +=
+          MemoryEstimates.MAP_ENTRY
+              + MemoryEstimates.string(entry.getKey())
+              + MemoryEstimates.ARRAY_HEADER
+              + encoded.length;
+    }
+    return new InvertedIndex(postings, memoryUsage);
+  }
+
+  /**
+   * Indexes the cells of a range of rows.
+   *
+   * @param table - the table to index
+   * @param from - index of the first row
+   * @param to - index one past the last row
+   * @return each cell text's postings within the range
+   */
+  private static Map<String, Postings> index(CSVTable table, int from, int to) {
+    Map<String, Postings> postings = new HashMap<>();
+    int numCols = table.numCols();
+    for (int row = from; row < to; row++) {
+      for (int col = 0; col < numCols; col++) {
+        postings.computeIfAbsent(table.get(row, col), unused -> new Postings()).add(row, col);
+      }
+    }
+    return postings;
+  }
+
+  private static int writeVarint(byte[] bytes, int pos, int value) {
+    while ((value & ~0x7F) != 0) {
+      bytes[pos++] = (byte) ((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    bytes[pos++] = (byte) value;
+    return pos;
+  }
+
+  /**
+   * cellsEqualTo returns the cells whose text equals value
+   *
+   * @param value - the cell text to look up
+   * @return row, column pairs flattened into one array ({row0, col0, row1, col1, ...}), in table
+   *     order; empty if there are none
+   */
+  public int[] cellsEqualTo(String value) {
+    byte[] encoded = this.postings.get(value);
+    if (encoded == null) {
+      return NO_CELLS;
+    }
+    int[] cells = new int[encoded.length];
+    int size = 0;
+    int row = 0;
+    int pos = 0;
+    while (pos < encoded.length) {
+      // each varint: 7 bits per byte, low bits first, high bit set on all but the last byte
+      for (int k = 0; k < 2; k++) {
+        int decoded = 0;
+        int shift = 0;
+        byte b;
+        do {
+          b = encoded[pos++];
+          decoded |= (b & 0x7F) << shift;
+          shift += 7;
+        } while (b < 0);
+        if (k == 0) {
+          row += decoded;
+          cells[size++] = row;
+        } else {
+          cells[size++] = decoded;
+        }
+      }
+    }
+    return Arrays.copyOf(cells, size);
+  }
+
+  /**
+   * rowsEqualTo returns the rows with at least one cell whose text equals value
+   *
+   * @param value - the cell text to look up
+   * @return the row indexes in ascending order, each once; empty if there are none
+   */
+  public int[] rowsEqualTo(String value) {
+    int[] cells = this.cellsEqualTo(value);
+    int[] rows = new int[cells.length / 2];
+    int size = 0;
+    for (int i = 0; i < cells.length; i += 2) {
+      if (size == 0 || rows[size - 1] != cells[i]) {
+        rows[size++] = cells[i];
+      }
+    }
+    return Arrays.copyOf(rows, size);
+  }
+
+  /**
+   * getNumValues returns the number of distinct cell texts in the table
+   *
+   * @return the number of keys in the index
+   */
+  public int getNumValues() {
+    return this.postings.size();
+  }
+
+  /**
+   * getMemoryUsage estimates the heap the index takes
+   *
+   * @return the estimated size in bytes
+   */
+  public long getMemoryUsage() {
+    return this.memoryUsage;
+  }
+}
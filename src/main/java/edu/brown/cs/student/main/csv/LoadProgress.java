@@ -0,0 +1,138 @@
+package edu.brown.cs.student.main.csv;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LoadProgress tracks how far a CSVLoader.load has got, so it can be reported while the load runs
+ * on another thread. Tokenizers add to it as they go, possibly from several threads at once.
+ */
+public class LoadProgress {
+
+  /** Stage is where a load is up to */
+  public enum Stage {
+    /** Waiting to start */
+    QUEUED,
+    /** Reading and tokenizing the file */
+    PARSING,
+    /** Converting the tokenized file to the requested storage */
+    CONVERTING,
+    /** Loaded and published */
+    DONE,
+    /** Stopped with an error */
+    FAILED
+  }
+
+  private final AtomicLong bytesRead = new AtomicLong();
+  private final AtomicLong rowsParsed = new AtomicLong();
+  private volatile long totalBytes = 0;
+  private volatile long loadedBytes = 0;
+  private volatile long startNanos = 0;
+  private volatile long endNanos = 0;
+  private volatile Stage stage = Stage.QUEUED;
+
+  /**
+   * start marks the beginning of parsing
+   *
+   * @param totalBytes - size of the file being loaded
+   */
+  public void start(long totalBytes) {
+    this.totalBytes = totalBytes;
+    this.startNanos = System.nanoTime();
+    this.stage = Stage.PARSING;
+  }
+
+  /**
+   * add records more of the file as parsed
+   *
+   * @param bytes - bytes read since the last call
+   * @param rows - rows parsed since the last call
+   */
+  public void add(long bytes, long rows) {
+    this.bytesRead.addAndGet(bytes);
+    this.rowsParsed.addAndGet(rows);
+  }
+
+  /**
+   * setStage moves the load to another stage; DONE and FAILED stop the clock
+   *
+   * @param stage - the new stage
+   */
+  public void setStage(Stage stage) {
+    if (stage == Stage.DONE || stage == Stage.FAILED) {
+      this.endNanos = System.nanoTime();
+    }
+    this.stage = stage;
+  }
+
+  public Stage getStage() {
+    return this.stage;
+  }
+
+  public long getBytesRead() {
+    return this.bytesRead.get();
+  }
+
+  public long getRowsParsed() {
+    return this.rowsParsed.get();
+  }
+
+  public long getTotalBytes() {
+    return this.totalBytes;
+  }
+
+  /**
+   * setLoadedBytes records how much of the file the loaded table holds, which can differ from the
+   * size the load started with if the file was written to meanwhile
+   *
+   * @param loadedBytes - the number of leading bytes of the file that were parsed
+   */
+  public void setLoadedBytes(long loadedBytes) {
+    this.loadedBytes = loadedBytes;
+  }
+
+  /**
+   * getLoadedBytes returns how much of the file the loaded table holds, the offset to watch the
+   * file for appended rows from
+   *
+   * @return the number of leading bytes of the file that were parsed
+   */
+  public long getLoadedBytes() {
+    return this.loadedBytes;
+  }
+
+  /**
+   * getElapsedSeconds returns how long the load has been running, or ran for
+   *
+   * @return seconds since parsing started, 0 if it hasn't
+   */
+  public double getElapsedSeconds() {
+    if (this.startNanos == 0) {
+      return 0;
+    }
+    long end = this.endNanos == 0 ? System.nanoTime() : this.endNanos;
+    return (end - this.startNanos) / 1e9;
+  }
+
+  /**
+   * getBytesPerSecond returns the average parsing throughput so far
+   *
+   * @return bytes read per second, 0 before any time has passed
+   */
+  public double getBytesPerSecond() {
+    double seconds = this.getElapsedSeconds();
+    return seconds > 0 ? this.getBytesRead() / seconds : 0;
+  }
+
+  /**
+   * getEtaSeconds estimates how long the rest of the file will take to parse at the current rate
+   *
+   * @return the estimated seconds left, or -1 if there is no rate to go on yet
+   */
+  public double getEtaSeconds() {
+    double rate = this.getBytesPerSecond();
+    if (rate == 0) {
+      return -1;
+    }
+    return Math.max(0, this.totalBytes - this.getBytesRead()) / rate;
+  }
+}
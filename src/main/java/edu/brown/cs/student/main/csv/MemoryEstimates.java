@@ -0,0 +1,35 @@
+package edu.brown.cs.student.main.csv;
+
+/**
+ * MemoryEstimates holds rough sizes of JVM objects (64-bit JVM, compressed references) used by
+ * CSVTable.getMemoryUsage. They are estimates for budgeting, not exact measurements.
+ */
+final class MemoryEstimates {
+
+  /** Bytes of an array's object header, including its length */
+  static final int ARRAY_HEADER = 16;
+
+  /** Bytes of an object reference */
+  static final int REFERENCE = 4;
+
+  /** Bytes of a String object, not counting its characters */
+  static final int STRING = 24;
+
+  /** Bytes of one HashMap entry, plus its share of the table */
+  static final int MAP_ENTRY = 40;
+
+  private MemoryEstimates() {}
+
+  /**
+   * string estimates the size of a String, assuming one byte per Latin-1 character and two
+   * otherwise
+   *
+   * @param value - the String
+   * @return the estimated size in bytes
+   */
+  static long string(String value) {
+    int length = value.length();
+    boolean latin1 = value.chars().allMatch(c -> c < 256);
+    return STRING + ARRAY_HEADER + (latin1 ? length : 2L * length);
+  }
+}
@@ -0,0 +1,156 @@
+package edu.brown.cs.student.main.csv;
+
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * NormalizedIndex is a hash index over the normalized form of one column's cells (see normalize),
+ * so "providence county", " Providence County" and "PROVIDENCE COUNTY" find the same rows. Each
+ * distinct cell text is normalized once, when the index is built, rather than on every comparison;
+ * a search normalizes only its value and does one hash probe.
+ *
+ * <p>It is built from the column's ColumnIndex. Normalized forms that come from a single cell text,
+ * the usual case, share that index's row arrays.
+ */
+public class NormalizedIndex {
+
+  private static final int[] NO_ROWS = new int[0];
+
+  private final Map<String, int[]> rows;
+  private final long memoryUsage;
+
+  private NormalizedIndex(Map<String, int[]> rows, long memoryUsage) {
+    this.rows = rows;
+    this.memoryUsage = memoryUsage;
+  }
+
+  /**
+   * Builds the index of a column from its hash index.
+   *
+   * @param index - the column's hash index
+   * @return the index
+   */
+  public static NormalizedIndex of(ColumnIndex index) {
+    Map<String, int[]> rows = new HashMap<>();
+    long memoryUsage = 0;
+    for (Map.Entry<String, int[]> entry : index.values().entrySet()) {
+      String key = normalize(entry.getKey());
+      int[] previous = rows.get(key);
+      if (previous == null) {
+        rows.put(key, entry.getValue());
+        memoryUsage += MemoryEstimates.MAP_ENTRY;
+        // texts that were already normalized are the hash index's own Strings
+        if (key != entry.getKey()) {
+          memoryUsage += MemoryEstimates.string(key);
+        }
+      } else {
+        int[] merged = merge(previous, entry.getValue());
+        rows.put(key, merged);
+        memoryUsage += MemoryEstimates.ARRAY_HEADER + 4L * merged.length;
+      }
+    }
+    return new NormalizedIndex(rows, memoryUsage);
+  }
+
+  private static int[] merge(int[] a, int[] b) {
+    // cell texts have disjoint rows, so a sorted concatenation has no duplicates
+    int[] merged = Arrays.copyOf(a, a.length + b.length);
+    System.arraycopy(b, 0, merged, a.length, b.length);
+    Arrays.sort(merged);
+    return merged;
+  }
+
+  /**
+   * Normalizes text for forgiving comparison: Unicode NFKC normalization (so full-width and
+   * composed characters compare equal to their plain forms), lower case, no leading or trailing
+   * whitespace, and each run of whitespace inside replaced by one space. Text that is already
+   * normalized is returned as is, without allocating.
+   *
+   * @param text - the text to normalize
+   * @return the normalized text
+   */
+  public static String normalize(String text) {
+    if (isNormalized(text)) {
+      return text;
+    }
+    String folded = Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+    StringBuilder normalized = new StringBuilder(folded.length());
+    boolean space = false;
+    for (int i = 0; i < folded.length(); i++) {
+      char c = folded.charAt(i);
+      if (Character.isWhitespace(c) || Character.isSpaceChar(c)) {
+        space = normalized.length() > 0;
+      } else {
+        if (space) {
+          normalized.append(' ');
+          space = false;
+        }
+        normalized.append(c);
+      }
+    }
+    return normalized.toString();
+  }
+
+  /**
+   * Checks for the common case of text normalize wouldn't change: ASCII without capitals, tabs,
+   * line breaks, or spaces at either end or next to each other.
+   *
+   * @param text - the text to check
+   * @return true if normalize(text) equals text
+   */
+  private static boolean isNormalized(String text) {
+    int length = text.length();
+    for (int i = 0; i < length; i++) {
+      char c = text.charAt(i);
+      if (c >= 0x80 || (c >= 'A' && c <= 'Z') || c < ' ') {
+        return false;
+      }
+      if (c == ' ' && (i == 0 || i == length - 1 || text.charAt(i - 1) == ' ')) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * rowsMatching returns the rows whose cell normalizes to the same text as value
+   *
+   * @param value - the text to look up, normalized here
+   * @return the row indexes in ascending order, empty if there are none; must not be modified
+   */
+  public int[] rowsMatching(String value) {
+    return this.rows.getOrDefault(normalize(value), NO_ROWS);
+  }
+
+  /**
+   * values returns the index's distinct normalized texts with their rows, for building other
+   * indexes on top of it
+   *
+   * @return the index's own map, which must not be modified
+   */
+  Map<String, int[]> values() {
+    return this.rows;
+  }
+
+  /**
+   * getNumValues returns the number of distinct normalized texts in the column
+   *
+   * @return the number of keys in the index
+   */
+  public int getNumValues() {
+    return this.rows.size();
+  }
+
+  /**
+   * getMemoryUsage estimates the heap the index adds to its column's hash index. Arrays merged for
+   * texts with several cell texts are counted as built, even if a later merge replaced them.
+   *
+   * @return the estimated size in bytes
+   */
+  public long getMemoryUsage() {
+    return this.memoryUsage;
+  }
+}
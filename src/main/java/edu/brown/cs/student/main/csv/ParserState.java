@@ -1,14 +1,413 @@
 package edu.brown.cs.student.main.csv;
 
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * ParserState is the catalog of CSVTables shared by the loadcsv, viewcsv, searchcsv and unloadcsv
+ * endpoints. Each loaded table is kept under a name, so several datasets can be loaded at once;
+ * requests that don't give a name use the most recently loaded dataset.
+ *
+ * <p>The catalog is an immutable snapshot published through an AtomicReference, and every published
+ * dataset gets a new, increasing version. Readers never lock: acquire takes a reference on a
+ * dataset from the current snapshot, and the dataset stays readable until that reference is closed,
+ * even if it is unloaded or replaced in the meantime. A dataset's memory is released when it has
+ * left the catalog and its last reader is done. Only changes to the catalog (put, remove) are
+ * serialized with each other.
+ *
+ * <p>A dataset's memory use is its table's plus that of the search indexes built over it so far.
+ * When the total goes over the memory budget, because a dataset was loaded or an index was built,
+ * the least recently used datasets are unloaded until it fits again; the dataset just loaded, or
+ * whose index was just built, is never evicted, even if it alone is over the budget.
+ */
 public class ParserState {
 
-  private CSVParser<String[]> parser;
+  /** Budget used by the no-argument constructor: datasets are never evicted */
+  public static final long UNLIMITED = Long.MAX_VALUE;
+
+  /** Name setTable stores its table under */
+  public static final String DEFAULT_NAME = "default";
+
+  /** Share of the memory budget the trigram indexes of one dataset version may take */
+  private static final int TRIGRAM_BUDGET_DIVISOR = 8;
+
+  /**
+   * Dataset is one published version of a loaded table. The catalog holds one reference to it, and
+   * each acquire another; closing the last one releases the table. Search indexes over the table
+   * belong to the Dataset, so they are dropped along with the version they were built for.
+   */
+  public static final class Dataset implements AutoCloseable {
+    private final CSVTable table;
+    private final SearchIndexes indexes;
+    private final long tableMemory;
+    private final long version;
+    // catalog's reference + readers; 0 once released, after which it can't be acquired again
+    private final AtomicInteger references = new AtomicInteger(1);
+    private volatile long lastUsed;
+
+    private Dataset(CSVTable table, SearchIndexes indexes, long version) {
+      this.table = table;
+      this.indexes = indexes;
+      this.tableMemory = table.getMemoryUsage();
+      this.version = version;
+      this.lastUsed = version;
+    }
+
+    private boolean retain() {
+      while (true) {
+        int count = this.references.get();
+        if (count == 0) {
+          return false;
+        }
+        if (this.references.compareAndSet(count, count + 1)) {
+          return true;
+        }
+      }
+    }
+
+    /** Drops one reference, releasing the table if it was the last */
+    @Override
+    public void close() {
+      if (this.references.decrementAndGet() == 0) {
+        this.table.release();
+      }
+    }
+
+    public CSVTable table() {
+      return this.table;
+    }
+
+    /**
+     * indexes returns the search indexes of this version of the dataset, built as they are used
+     *
+     * @return the indexes, only valid while the dataset is acquired
+     */
+    public SearchIndexes indexes() {
+      return this.indexes;
+    }
+
+    /**
+     * memoryUsage returns the memory used by the table and the indexes built over it so far
+     *
+     * @return the size in bytes
+     */
+    public long memoryUsage() {
+      return this.tableMemory + this.indexes.getMemoryUsage();
+    }
+
+    /**
+     * version identifies this load of the dataset; a dataset loaded again gets a higher version
+     *
+     * @return the version, unique across the catalog
+     */
+    public long version() {
+      return this.version;
+    }
+  }
+
+  /**
+   * Publication describes a dataset put into the catalog
+   *
+   * @param version - the new dataset's version
+   * @param memoryUsage - the new dataset's memory use in bytes
+   * @param evicted - the names of the datasets evicted to make room, least recently used first
+   */
+  public record Publication(long version, long memoryUsage, List<String> evicted) {}
+
+  /** Catalog is one immutable state of the catalog */
+  private record Catalog(Map<String, Dataset> datasets, String current) {}
+
+  private final long memoryBudget;
+  private final AtomicReference<Catalog> catalog =
+      new AtomicReference<>(new Catalog(Map.of(), null));
+  // versions double as the clock for least-recently-used order
+  private final AtomicLong clock = new AtomicLong();
+  private final Object writeLock = new Object();
+
+  /** ParserState constructor, without a memory budget */
+  public ParserState() {
+    this(UNLIMITED);
+  }
+
+  /**
+   * ParserState constructor
+   *
+   * @param memoryBudget - total bytes loaded datasets may use before older ones are evicted
+   */
+  public ParserState(long memoryBudget) {
+    this.memoryBudget = memoryBudget;
+  }
+
+  /**
+   * put publishes a table under a name, replacing any table already under it, then evicts least
+   * recently used datasets while the catalog is over its memory budget. Replaced and evicted tables
+   * are released once their readers are done.
+   *
+   * @param name - the dataset's name
+   * @param table - the loaded table
+   * @return the new dataset's version and size, and what was evicted
+   */
+  public Publication put(String name, CSVTable table) {
+    return this.put(name, table, this.newIndexes(table));
+  }
+
+  /**
+   * put publishes a table along with indexes already built over it, see put(name, table)
+   *
+   * @param name - the dataset's name
+   * @param table - the loaded table
+   * @param indexes - the table's search indexes
+   * @return the new dataset's version and size, and what was evicted
+   */
+  public Publication put(String name, CSVTable table, SearchIndexes indexes) {
+    return this.publish(name, table, indexes, -1);
+  }
+
+  /**
+   * replace publishes a new version of a dataset, like put, but only if the dataset is still at the
+   * version the caller based the new table on. Nothing is published otherwise, and the caller keeps
+   * ownership of table. If the old version has an inverted index, the new one gets one too.
+   *
+   * @param name - the dataset's name
+   * @param version - the version that must still be published under name
+   * @param table - the new version's table
+   * @return the new version, or null if name is no longer at version
+   */
+  public Publication replace(String name, long version, CSVTable table) {
+    return this.publish(name, table, this.newIndexes(table), version);
+  }
+
+  /**
+   * newIndexes creates the search indexes for a table to be published here, with a trigram budget
+   * that is a share of the memory budget, or SearchIndexes.DEFAULT_TRIGRAM_BUDGET without one
+   *
+   * @param table - the table to index
+   * @return indexes with nothing built yet
+   */
+  public SearchIndexes newIndexes(CSVTable table) {
+    return new SearchIndexes(table, this.getTrigramBudget());
+  }
+
+  private Publication publish(
+      String name, CSVTable table, SearchIndexes indexes, long expectedVersion) {
+    Dataset dataset = new Dataset(table, indexes, this.clock.incrementAndGet());
+    indexes.setGrowthListener(() -> this.indexBuilt(dataset));
+    List<Dataset> retired = new ArrayList<>();
+    List<String> evicted = new ArrayList<>();
+    synchronized (this.writeLock) {
+      Catalog old = this.catalog.get();
+      if (expectedVersion != -1) {
+        Dataset expected = old.datasets().get(name);
+        if (expected == null || expected.version() != expectedVersion) {
+          return null;
+        }
+        if (expected.indexes().hasInverted()) {
+          indexes.enableInverted();
+        }
+      }
+      Map<String, Dataset> datasets = new HashMap<>(old.datasets());
+      Dataset previous = datasets.put(name, dataset);
+      if (previous != null) {
+        retired.add(previous);
+      }
+      this.evict(datasets, name, retired, evicted);
+      this.catalog.set(new Catalog(Map.copyOf(datasets), name));
+    }
+    for (Dataset old : retired) {
+      old.close();
+    }
+    return new Publication(dataset.version(), dataset.memoryUsage(), evicted);
+  }
+
+  /**
+   * indexBuilt charges a dataset for an index just built over it, evicting other datasets if that
+   * put the catalog over its memory budget
+   *
+   * @param dataset - the dataset whose index was built
+   */
+  private void indexBuilt(Dataset dataset) {
+    if (this.memoryBudget == UNLIMITED) {
+      return;
+    }
+    List<Dataset> retired = new ArrayList<>();
+    List<String> evicted = new ArrayList<>();
+    synchronized (this.writeLock) {
+      Catalog old = this.catalog.get();
+      String name = null;
+      for (Map.Entry<String, Dataset> entry : old.datasets().entrySet()) {
+        if (entry.getValue() == dataset) {
+          name = entry.getKey();
+        }
+      }
+      if (name == null) {
+        // replaced or unloaded while the index was built
+        return;
+      }
+      Map<String, Dataset> datasets = new HashMap<>(old.datasets());
+      this.evict(datasets, name, retired, evicted);
+      if (evicted.isEmpty()) {
+        return;
+      }
+      String current = evicted.contains(old.current()) ? null : old.current();
+      this.catalog.set(new Catalog(Map.copyOf(datasets), current));
+    }
+    for (Dataset old : retired) {
+      old.close();
+    }
+  }
+
+  /**
+   * evict removes the least recently used datasets, other than the one kept, while the datasets are
+   * over the memory budget. Must be called holding writeLock.
+   *
+   * @param datasets - the datasets, modified in place
+   * @param keep - name of the dataset that is never evicted
+   * @param retired - receives the evicted datasets, to be closed once the catalog is published
+   * @param evicted - receives the evicted names, least recently used first
+   */
+  private void evict(
+      Map<String, Dataset> datasets, String keep, List<Dataset> retired, List<String> evicted) {
+    long memoryUsage = totalMemory(datasets);
+    List<Map.Entry<String, Dataset>> byLastUse = new ArrayList<>(datasets.entrySet());
+    byLastUse.sort(Comparator.comparingLong(entry -> entry.getValue().lastUsed));
+    for (Map.Entry<String, Dataset> entry : byLastUse) {
+      if (memoryUsage <= this.memoryBudget) {
+        break;
+      }
+      if (!entry.getKey().equals(keep)) {
+        datasets.remove(entry.getKey());
+        retired.add(entry.getValue());
+        evicted.add(entry.getKey());
+        memoryUsage -= entry.getValue().memoryUsage();
+      }
+    }
+  }
+
+  private static long totalMemory(Map<String, Dataset> datasets) {
+    long total = 0;
+    for (Dataset dataset : datasets.values()) {
+      total += dataset.memoryUsage();
+    }
+    return total;
+  }
+
+  /**
+   * acquire takes a reference on a loaded dataset, marking it as recently used. The dataset's table
+   * stays readable until the returned Dataset is closed, so use it in try-with-resources.
+   *
+   * @param name - the dataset's name, or null for the most recently loaded dataset
+   * @return the dataset, or null if no dataset by that name is loaded
+   */
+  public Dataset acquire(String name) {
+    while (true) {
+      Catalog current = this.catalog.get();
+      String key = name == null ? current.current() : name;
+      Dataset dataset = key == null ? null : current.datasets().get(key);
+      if (dataset == null) {
+        return null;
+      }
+      if (dataset.retain()) {
+        dataset.lastUsed = this.clock.incrementAndGet();
+        return dataset;
+      }
+      // released between reading the catalog and retaining it, so a newer catalog is published
+    }
+  }
+
+  /**
+   * getVersion returns the version currently published under a name, without acquiring it
+   *
+   * @param name - the dataset's name
+   * @return the version, or -1 if no dataset by that name is loaded
+   */
+  public long getVersion(String name) {
+    Dataset dataset = this.catalog.get().datasets().get(name);
+    return dataset == null ? -1 : dataset.version();
+  }
+
+  /**
+   * remove unloads a dataset; its memory is released once its readers are done
+   *
+   * @param name - the dataset's name, or null for the most recently loaded dataset
+   * @return whether a dataset was unloaded
+   */
+  public boolean remove(String name) {
+    Dataset dataset;
+    synchronized (this.writeLock) {
+      Catalog old = this.catalog.get();
+      String key = name == null ? old.current() : name;
+      dataset = key == null ? null : old.datasets().get(key);
+      if (dataset == null) {
+        return false;
+      }
+      Map<String, Dataset> datasets = new HashMap<>(old.datasets());
+      datasets.remove(key);
+      String current = key.equals(old.current()) ? null : old.current();
+      this.catalog.set(new Catalog(Map.copyOf(datasets), current));
+    }
+    dataset.close();
+    return true;
+  }
+
+  /**
+   * getDatasets returns the loaded datasets, least recently used first. The Datasets are not
+   * acquired, so their tables must not be read.
+   *
+   * @return a copy of the catalog
+   */
+  public Map<String, Dataset> getDatasets() {
+    List<Map.Entry<String, Dataset>> byLastUse =
+        new ArrayList<>(this.catalog.get().datasets().entrySet());
+    byLastUse.sort(Comparator.comparingLong(entry -> entry.getValue().lastUsed));
+    Map<String, Dataset> datasets = new LinkedHashMap<>();
+    for (Map.Entry<String, Dataset> entry : byLastUse) {
+      datasets.put(entry.getKey(), entry.getValue());
+    }
+    return datasets;
+  }
+
+  /**
+   * getMemoryUsage returns the memory used by all loaded datasets
+   *
+   * @return the total in bytes
+   */
+  public long getMemoryUsage() {
+    return totalMemory(this.catalog.get().datasets());
+  }
+
+  public long getMemoryBudget() {
+    return this.memoryBudget;
+  }
 
-  public void setParser(CSVParser<String[]> parser) {
-    this.parser = parser;
+  /**
+   * getTrigramBudget returns the bytes the trigram indexes of each dataset version may take
+   *
+   * @return the budget in bytes
+   */
+  public long getTrigramBudget() {
+    if (this.memoryBudget == UNLIMITED) {
+      return SearchIndexes.DEFAULT_TRIGRAM_BUDGET;
+    }
+    return this.memoryBudget / TRIGRAM_BUDGET_DIVISOR;
   }
 
-  public CSVParser<String[]> getParser() {
-    return this.parser;
+  /**
+   * setTable loads a table under DEFAULT_NAME, or unloads the most recently loaded dataset
+   *
+   * @param table - the new table, or null to unload
+   */
+  public void setTable(CSVTable table) {
+    if (table == null) {
+      this.remove(null);
+    } else {
+      this.put(DEFAULT_NAME, table);
+    }
   }
 }
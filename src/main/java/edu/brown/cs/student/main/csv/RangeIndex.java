@@ -0,0 +1,180 @@
+package edu.brown.cs.student.main.csv;
+
+import java.util.Arrays;
+
+/**
+ * RangeIndex is a sorted index over the numeric cells of one column of a CSVTable: the numbers in
+ * ascending order, each with the row it came from. A range lookup binary searches for its two ends,
+ * so counting the rows in a range is O(log n) and listing them O(log n + matches), rather than a
+ * parse and comparison of every cell.
+ *
+ * <p>Cells that aren't numbers (see FilterPlan.parseNumber) are left out, since no range holds for
+ * them. Every row is indexed, including a header row if it is a number; callers skip it.
+ */
+public class RangeIndex {
+
+  private final double[] values;
+  private final int[] rows;
+
+  private RangeIndex(double[] values, int[] rows) {
+    this.values = values;
+    this.rows = rows;
+  }
+
+  /**
+   * Builds the index of a column by reading every one of its cells once, then sorting the numbers.
+   * Numeric columns of a ColumnarTable are read without parsing.
+   *
+   * @param table - the table to index
+   * @param col - index of the column
+   * @return the index
+   */
+  public static RangeIndex of(CSVTable table, int col) {
+    int numRows = table.numRows();
+    double[] values = new double[numRows];
+    int[] rows = new int[numRows];
+    int size = 0;
+    ColumnarTable columnar = table instanceof ColumnarTable c ? c : null;
+    for (int row = 0; row < numRows; row++) {
+      double value =
+          columnar != null && columnar.isNumber(row, col)
+              ? columnar.getDouble(row, col)
+              : FilterPlan.parseNumber(table.get(row, col));
+      if (!Double.isNaN(value)) {
+        values[size] = value;
+        rows[size] = row;
+        size++;
+      }
+    }
+    values = Arrays.copyOf(values, size);
+    rows = Arrays.copyOf(rows, size);
+    sort(values, rows, new double[size], new int[size]);
+    return new RangeIndex(values, rows);
+  }
+
+  /**
+   * Sorts values ascending, moving each row with its value. Bottom-up merge sort, which is stable,
+   * so rows with equal values stay in table order.
+   *
+   * @param values - the numbers to sort
+   * @param rows - the row of each number
+   * @param valueBuffer - scratch space as long as values
+   * @param rowBuffer - scratch space as long as rows
+   */
+  private static void sort(double[] values, int[] rows, double[] valueBuffer, int[] rowBuffer) {
+    int n = values.length;
+    double[] fromValues = values;
+    int[] fromRows = rows;
+    double[] toValues = valueBuffer;
+    int[] toRows = rowBuffer;
+    for (int width = 1; width < n; width *= 2) {
+      for (int left = 0; left < n; left += 2 * width) {
+        int mid = Math.min(left + width, n);
+        int right = Math.min(left + 2 * width, n);
+        int i = left;
+        int j = mid;
+        for (int k = left; k < right; k++) {
+          if (i < mid && (j >= right || fromValues[i] <= fromValues[j])) {
+            toValues[k] = fromValues[i];
+            toRows[k] = fromRows[i++];
+          } else {
+            toValues[k] = fromValues[j];
+            toRows[k] = fromRows[j++];
+          }
+        }
+      }
+      double[] swapValues = fromValues;
+      fromValues = toValues;
+      toValues = swapValues;
+      int[] swapRows = fromRows;
+      fromRows = toRows;
+      toRows = swapRows;
+    }
+    if (fromValues != values) {
+      System.arraycopy(fromValues, 0, values, 0, n);
+      System.arraycopy(fromRows, 0, rows, 0, n);
+    }
+  }
+
+  /**
+   * Finds the first position whose number is past bound: greater than it, or greater than or equal
+   * to it if inclusive is false.
+   *
+   * @param bound - the number to search for
+   * @param inclusive - whether positions equal to bound come before the result
+   * @return a position from 0 to the number of indexed cells
+   */
+  private int after(double bound, boolean inclusive) {
+    int low = 0;
+    int high = this.values.length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (this.values[mid] < bound || (inclusive && this.values[mid] == bound)) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  private int start(double low, boolean lowInclusive) {
+    return this.after(low, !lowInclusive);
+  }
+
+  private int end(double high, boolean highInclusive) {
+    return this.after(high, highInclusive);
+  }
+
+  /**
+   * count returns how many rows have a number in a range, without listing them
+   *
+   * @param low - the lower bound, or negative infinity for none
+   * @param lowInclusive - whether numbers equal to low are in the range
+   * @param high - the upper bound, or positive infinity for none
+   * @param highInclusive - whether numbers equal to high are in the range
+   * @return the number of matching rows
+   */
+  public int count(double low, boolean lowInclusive, double high, boolean highInclusive) {
+    return Math.max(0, this.end(high, highInclusive) - this.start(low, lowInclusive));
+  }
+
+  /**
+   * rowsBetween returns the rows whose number is in a range
+   *
+   * @param low - the lower bound, or negative infinity for none
+   * @param lowInclusive - whether numbers equal to low are in the range
+   * @param high - the upper bound, or positive infinity for none
+   * @param highInclusive - whether numbers equal to high are in the range
+   * @return the row indexes in ascending order, empty if there are none
+   */
+  public int[] rowsBetween(double low, boolean lowInclusive, double high, boolean highInclusive) {
+    int start = this.start(low, lowInclusive);
+    int end = this.end(high, highInclusive);
+    if (end <= start) {
+      return new int[0];
+    }
+    // matches are contiguous in value order; sorting them restores table order
+    int[] matches = Arrays.copyOfRange(this.rows, start, end);
+    Arrays.sort(matches);
+    return matches;
+  }
+
+  /**
+   * getNumRows returns the number of rows with a number in the column
+   *
+   * @return the number of indexed cells
+   */
+  public int getNumRows() {
+    return this.values.length;
+  }
+
+  /**
+   * getMemoryUsage estimates the heap the index takes
+   *
+   * @return the estimated size in bytes
+   */
+  public long getMemoryUsage() {
+    return 2L * MemoryEstimates.ARRAY_HEADER + 12L * this.values.length;
+  }
+}
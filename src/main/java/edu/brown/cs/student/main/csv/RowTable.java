@@ -0,0 +1,46 @@
+package edu.brown.cs.student.main.csv;
+
+import java.util.Collections;
+import java.util.List;
+
+/** RowTable is a CSVTable backed by a list of String[] rows, such as the output of a CSVParser. */
+public class RowTable implements CSVTable {
+
+  private final List<String[]> rows;
+  private final int numCols;
+
+  /**
+   * RowTable constructor
+   *
+   * @param rows - the rows of the table, all of the same length
+   */
+  public RowTable(List<String[]> rows) {
+    this.rows = rows;
+    this.numCols = rows.isEmpty() ? 0 : rows.get(0).length;
+  }
+
+  @Override
+  public int numRows() {
+    return this.rows.size();
+  }
+
+  @Override
+  public int numCols() {
+    return this.numCols;
+  }
+
+  @Override
+  public String get(int row, int col) {
+    return this.rows.get(row)[col];
+  }
+
+  @Override
+  public String[] getRow(int row) {
+    return this.rows.get(row);
+  }
+
+  @Override
+  public List<String[]> getRows() {
+    return Collections.unmodifiableList(this.rows);
+  }
+}
@@ -0,0 +1,78 @@
+package edu.brown.cs.student.main.csv;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * RowView is a reusable cursor over the rows of a CSVTable. One view is moved from row to row
+ * instead of creating a String[] per row, and writeCell copies a cell's UTF-8 bytes out without
+ * creating a String when the table stores bytes (see ByteTable).
+ */
+public interface RowView {
+
+  /**
+   * moveTo positions the view on a row
+   *
+   * @param row - index of the row
+   * @return this view
+   */
+  RowView moveTo(int row);
+
+  /**
+   * numCols returns the number of cells in the row
+   *
+   * @return the number of columns
+   */
+  int numCols();
+
+  /**
+   * get returns the text of a cell of the current row
+   *
+   * @param col - index of the column
+   * @return the cell text
+   */
+  String get(int col);
+
+  /**
+   * writeCell writes the UTF-8 bytes of a cell of the current row
+   *
+   * @param col - index of the column
+   * @param out - where to write the bytes
+   * @throws IOException if failure writing to out
+   */
+  void writeCell(int col, OutputStream out) throws IOException;
+
+  /**
+   * Creates a RowView that reads cells through CSVTable.get, for tables that store Strings.
+   *
+   * @param table - the table to view
+   * @return a view positioned on row 0
+   */
+  static RowView of(CSVTable table) {
+    return new RowView() {
+      private int row;
+
+      @Override
+      public RowView moveTo(int row) {
+        this.row = row;
+        return this;
+      }
+
+      @Override
+      public int numCols() {
+        return table.numCols();
+      }
+
+      @Override
+      public String get(int col) {
+        return table.get(this.row, col);
+      }
+
+      @Override
+      public void writeCell(int col, OutputStream out) throws IOException {
+        out.write(table.get(this.row, col).getBytes(StandardCharsets.UTF_8));
+      }
+    };
+  }
+}
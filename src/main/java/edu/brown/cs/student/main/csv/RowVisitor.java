@@ -0,0 +1,23 @@
+package edu.brown.cs.student.main.csv;
+
+import edu.brown.cs.student.main.exception.FactoryFailureException;
+
+/**
+ * RowVisitor is the low-level way to consume parsed rows (see CSVStream.visitNext): it is handed
+ * views of each record's fields straight out of the tokenizer's buffer, so no String, array or List
+ * is created per row unless the visitor creates one. CreatorFromRow is the convenience layer on
+ * top, which turns every field into a String first.
+ */
+public interface RowVisitor {
+
+  /**
+   * visit is called once per record. The views are reused for the next record, so they must not be
+   * kept after visit returns; call toString on the ones that need to be.
+   *
+   * @param fields - views of the record's fields, exactly as they appear in the file (quotes
+   *     included); only the first numFields are valid
+   * @param numFields - number of fields in the record
+   * @throws FactoryFailureException if the visitor can't handle the record
+   */
+  void visit(CharSequence[] fields, int numFields) throws FactoryFailureException;
+}
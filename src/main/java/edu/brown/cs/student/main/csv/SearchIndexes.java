@@ -0,0 +1,388 @@
+package edu.brown.cs.student.main.csv;
+
+import edu.brown.cs.student.main.csv.CSVSearcher.ParallelScan;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * SearchIndexes holds the indexes built over one table for searching. Each ParserState.Dataset owns
+ * one, so indexes are tied to a single version of a dataset: a reload or unload publishes or drops
+ * the Dataset, and its indexes go with it.
+ *
+ * <p>Column indexes, and the sorted range indexes of numeric columns, are built lazily, by the
+ * first search on that column that needs them. Searches on the same column wait for that build
+ * rather than starting their own; searches on other columns don't.
+ *
+ * <p>Prefix and substring searches use a SortedDictionary of the column, built on top of its hash
+ * index, and substring searches also a TrigramIndex of that dictionary. Trigram indexes can be
+ * several times the size of the column's text, so they share a budget of their own, which
+ * ParserState sets to a share of its memory budget: a column whose index wouldn't fit goes without,
+ * and its substring searches check every distinct value instead.
+ *
+ * <p>Normalized searches use a NormalizedIndex of the column, also built on top of its hash index,
+ * so each distinct cell text is normalized once per version. Fuzzy searches use a BKTree over that
+ * index's normalized texts.
+ *
+ * <p>Every index built is counted in getMemoryUsage, and the growth listener set by ParserState is
+ * called after each build, outside the column's lock, so the dataset can be charged for it.
+ *
+ * <p>The searchers over the table are kept here too, one per hasHeader setting, so the header and
+ * the column names searches have resolved are only worked out once per version.
+ *
+ * <p>The inverted index over all columns is optional. It is built when a dataset is loaded with it
+ * (buildInverted), and a new version of such a dataset published by replace has it enabled too,
+ * built by the first search that needs it, and the dataset is charged for it then.
+ */
+public class SearchIndexes {
+
+  /** Bytes the trigram indexes of one table may take, unless set otherwise or by ParserState */
+  public static final long DEFAULT_TRIGRAM_BUDGET = 64L << 20;
+
+  private final CSVTable table;
+  private final AtomicReferenceArray<ColumnIndex> columns;
+  private final AtomicReferenceArray<RangeIndex> ranges;
+  private final AtomicReferenceArray<SortedDictionary> dictionaries;
+  private final AtomicReferenceArray<NormalizedIndex> normalized;
+  private final AtomicReferenceArray<BKTree> fuzzy;
+  private final AtomicReferenceArray<TrigramIndex> trigrams;
+  // columns whose trigram index didn't fit the budget, guarded by the column's lock
+  private final boolean[] trigramsRejected;
+  private final long trigramBudget;
+  private final AtomicLong trigramMemory = new AtomicLong();
+  // every other index built, apart from the inverted index
+  private final AtomicLong indexMemory = new AtomicLong();
+  private volatile Runnable growthListener;
+  private final Object[] locks;
+  private volatile boolean invertedEnabled;
+  private volatile InvertedIndex inverted;
+  // indexed by hasHeader: 0 without a header, 1 with
+  private final AtomicReferenceArray<CSVSearcher> searchers = new AtomicReferenceArray<>(2);
+
+  /**
+   * SearchIndexes constructor; nothing is built until it is asked for
+   *
+   * @param table - the table to index
+   */
+  public SearchIndexes(CSVTable table) {
+    this(table, DEFAULT_TRIGRAM_BUDGET);
+  }
+
+  /**
+   * SearchIndexes constructor with a budget for trigram indexes
+   *
+   * @param table - the table to index
+   * @param trigramBudget - bytes the trigram indexes of all columns may take together
+   */
+  public SearchIndexes(CSVTable table, long trigramBudget) {
+    this.table = table;
+    this.trigramBudget = trigramBudget;
+    this.columns = new AtomicReferenceArray<>(table.numCols());
+    this.ranges = new AtomicReferenceArray<>(table.numCols());
+    this.dictionaries = new AtomicReferenceArray<>(table.numCols());
+    this.normalized = new AtomicReferenceArray<>(table.numCols());
+    this.fuzzy = new AtomicReferenceArray<>(table.numCols());
+    this.trigrams = new AtomicReferenceArray<>(table.numCols());
+    this.trigramsRejected = new boolean[table.numCols()];
+    this.locks = new Object[table.numCols()];
+    for (int col = 0; col < this.locks.length; col++) {
+      this.locks[col] = new Object();
+    }
+  }
+
+  /**
+   * column returns the hash index of a column, building it on first use
+   *
+   * @param col - index of the column
+   * @return the column's index
+   */
+  public ColumnIndex column(int col) {
+    ColumnIndex index = this.columns.get(col);
+    if (index == null) {
+      boolean built = false;
+      synchronized (this.locks[col]) {
+        index = this.columns.get(col);
+        if (index == null) {
+          index = ColumnIndex.of(this.table, col);
+          this.indexMemory.addAndGet(index.getMemoryUsage());
+          this.columns.set(col, index);
+          built = true;
+        }
+      }
+      if (built) {
+        this.grew();
+      }
+    }
+    return index;
+  }
+
+  /**
+   * range returns the sorted index of a column's numbers, building it on first use
+   *
+   * @param col - index of the column
+   * @return the column's range index
+   */
+  public RangeIndex range(int col) {
+    RangeIndex index = this.ranges.get(col);
+    if (index == null) {
+      boolean built = false;
+      synchronized (this.locks[col]) {
+        index = this.ranges.get(col);
+        if (index == null) {
+          index = RangeIndex.of(this.table, col);
+          this.indexMemory.addAndGet(index.getMemoryUsage());
+          this.ranges.set(col, index);
+          built = true;
+        }
+      }
+      if (built) {
+        this.grew();
+      }
+    }
+    return index;
+  }
+
+  /**
+   * dictionary returns the sorted distinct values of a column, building it (and the column's hash
+   * index) on first use
+   *
+   * @param col - index of the column
+   * @return the column's dictionary
+   */
+  public SortedDictionary dictionary(int col) {
+    SortedDictionary dictionary = this.dictionaries.get(col);
+    if (dictionary == null) {
+      ColumnIndex index = this.column(col);
+      boolean built = false;
+      synchronized (this.locks[col]) {
+        dictionary = this.dictionaries.get(col);
+        if (dictionary == null) {
+          dictionary = SortedDictionary.of(index);
+          this.indexMemory.addAndGet(dictionary.getMemoryUsage());
+          this.dictionaries.set(col, dictionary);
+          built = true;
+        }
+      }
+      if (built) {
+        this.grew();
+      }
+    }
+    return dictionary;
+  }
+
+  /**
+   * normalized returns the index of a column's normalized cell texts, building it (and the column's
+   * hash index) on first use
+   *
+   * @param col - index of the column
+   * @return the column's normalized index
+   */
+  public NormalizedIndex normalized(int col) {
+    NormalizedIndex index = this.normalized.get(col);
+    if (index == null) {
+      ColumnIndex column = this.column(col);
+      boolean built = false;
+      synchronized (this.locks[col]) {
+        index = this.normalized.get(col);
+        if (index == null) {
+          index = NormalizedIndex.of(column);
+          this.indexMemory.addAndGet(index.getMemoryUsage());
+          this.normalized.set(col, index);
+          built = true;
+        }
+      }
+      if (built) {
+        this.grew();
+      }
+    }
+    return index;
+  }
+
+  /**
+   * fuzzy returns the BK-tree of a column's distinct normalized cell texts, building it (and the
+   * column's normalized index) on first use
+   *
+   * @param col - index of the column
+   * @return the column's BK-tree
+   */
+  public BKTree fuzzy(int col) {
+    BKTree tree = this.fuzzy.get(col);
+    if (tree == null) {
+      NormalizedIndex index = this.normalized(col);
+      boolean built = false;
+      synchronized (this.locks[col]) {
+        tree = this.fuzzy.get(col);
+        if (tree == null) {
+          tree = BKTree.of(index.values().keySet());
+          this.indexMemory.addAndGet(tree.getMemoryUsage());
+          this.fuzzy.set(col, tree);
+          built = true;
+        }
+      }
+      if (built) {
+        this.grew();
+      }
+    }
+    return tree;
+  }
+
+  /**
+   * trigrams returns the trigram index of a column's dictionary, building it on first use if it
+   * fits in what is left of the trigram budget
+   *
+   * @param col - index of the column
+   * @return the column's trigram index, or null if it doesn't fit
+   */
+  public TrigramIndex trigrams(int col) {
+    TrigramIndex index = this.trigrams.get(col);
+    if (index != null) {
+      return index;
+    }
+    SortedDictionary dictionary = this.dictionary(col);
+    synchronized (this.locks[col]) {
+      index = this.trigrams.get(col);
+      if (index != null || this.trigramsRejected[col]) {
+        return index;
+      }
+      // skip building an index that is certain not to fit, then check the one built
+      long available = this.trigramBudget - this.trigramMemory.get();
+      if (TrigramIndex.estimateMemoryUsage(dictionary) <= available) {
+        index = TrigramIndex.of(dictionary);
+        if (this.trigramMemory.addAndGet(index.getMemoryUsage()) <= this.trigramBudget) {
+          this.trigrams.set(col, index);
+        } else {
+          this.trigramMemory.addAndGet(-index.getMemoryUsage());
+          index = null;
+        }
+      }
+      if (index == null) {
+        this.trigramsRejected[col] = true;
+        return null;
+      }
+    }
+    this.grew();
+    return index;
+  }
+
+  /**
+   * searcher returns a searcher over the table that uses these indexes, creating it on first use.
+   * Searchers are safe to share between concurrent searches.
+   *
+   * @param hasHeader - whether the table's first row is a header
+   * @param parallelScan - how the searcher splits scans, or null to scan on the calling thread
+   * @return the searcher for hasHeader, replaced if it was created with another parallelScan
+   * @throws IllegalArgumentException if hasHeader is true but the table is empty
+   */
+  public CSVSearcher searcher(boolean hasHeader, ParallelScan parallelScan)
+      throws IllegalArgumentException {
+    int slot = hasHeader ? 1 : 0;
+    CSVSearcher searcher = this.searchers.get(slot);
+    if (searcher == null || searcher.getParallelScan() != parallelScan) {
+      // two requests racing here both build one, and either may be kept; both are equivalent
+      searcher = new CSVSearcher(this.table, hasHeader, this, parallelScan);
+      this.searchers.set(slot, searcher);
+    }
+    return searcher;
+  }
+
+  /**
+   * buildInverted builds the inverted index now, if it isn't built yet, and keeps it
+   *
+   * @param pool - pool to build it on
+   * @return the inverted index
+   */
+  public InvertedIndex buildInverted(ForkJoinPool pool) {
+    this.invertedEnabled = true;
+    InvertedIndex index = this.inverted;
+    if (index == null) {
+      boolean built = false;
+      synchronized (this) {
+        index = this.inverted;
+        if (index == null) {
+          index = InvertedIndex.of(this.table, pool);
+          this.inverted = index;
+          built = true;
+        }
+      }
+      if (built) {
+        this.grew();
+      }
+    }
+    return index;
+  }
+
+  /** enableInverted makes the inverted index available, to be built on first use */
+  void enableInverted() {
+    this.invertedEnabled = true;
+  }
+
+  /**
+   * hasInverted checks whether this table is searched through an inverted index
+   *
+   * @return true if it was built or enabled
+   */
+  public boolean hasInverted() {
+    return this.invertedEnabled;
+  }
+
+  /**
+   * inverted returns the inverted index over all columns, building it on the common pool if it is
+   * enabled but not built yet
+   *
+   * @return the index, or null if it isn't enabled
+   */
+  public InvertedIndex inverted() {
+    if (!this.invertedEnabled) {
+      return null;
+    }
+    return this.buildInverted(ForkJoinPool.commonPool());
+  }
+
+  /**
+   * getMemoryUsage estimates the heap taken by the indexes built so far
+   *
+   * @return the estimated size in bytes, 0 if none is built
+   */
+  public long getMemoryUsage() {
+    InvertedIndex index = this.inverted;
+    return (index == null ? 0 : index.getMemoryUsage())
+        + this.trigramMemory.get()
+        + this.indexMemory.get();
+  }
+
+  /**
+   * setGrowthListener sets what to call after an index is built, replacing any listener set before
+   *
+   * @param listener - called on the building thread, with no lock held
+   */
+  void setGrowthListener(Runnable listener) {
+    this.growthListener = listener;
+  }
+
+  private void grew() {
+    Runnable listener = this.growthListener;
+    if (listener != null) {
+      listener.run();
+    }
+  }
+
+  /**
+   * isIndexed checks whether a column's index has been built
+   *
+   * @param col - index of the column
+   * @return true if the column's index has been built
+   */
+  public boolean isIndexed(int col) {
+    return this.columns.get(col) != null;
+  }
+
+  /**
+   * isRangeIndexed checks whether a column's range index has been built
+   *
+   * @param col - index of the column
+   * @return true if the column's range index has been built
+   */
+  public boolean isRangeIndexed(int col) {
+    return this.ranges.get(col) != null;
+  }
+}
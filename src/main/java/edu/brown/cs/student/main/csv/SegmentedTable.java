@@ -0,0 +1,238 @@
+package edu.brown.cs.student.main.csv;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntPredicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * SegmentedTable is a CSVTable made of other tables stacked one after another, each holding a
+ * consecutive range of rows. append returns a new table that shares all of this table's segments
+ * and adds one more, so rows appended to a file can be published as a new version without copying
+ * the rows already loaded. Segments are reference counted across the tables that share them, so
+ * releasing one version only releases the segments no other version uses.
+ *
+ * <p>Given a merge function, append keeps the segments after the first one (the original load)
+ * shrinking geometrically, each at least twice as large as the next, by merging the last two while
+ * they aren't; like a binary counter, that leaves at most about log2 of the appended rows of them,
+ * and copies each appended row a logarithmic number of times.
+ */
+public class SegmentedTable implements CSVTable {
+
+  /** Segment is one stacked table, shared by every SegmentedTable that contains it */
+  private static final class Segment {
+    private final CSVTable table;
+    private final AtomicInteger references = new AtomicInteger();
+
+    private Segment(CSVTable table) {
+      this.table = table;
+    }
+  }
+
+  private final List<Segment> segments;
+  // index of each segment's first row
+  private final int[] starts;
+  private final int numRows;
+  private final int numCols;
+  private final AtomicBoolean released = new AtomicBoolean(false);
+
+  private SegmentedTable(List<Segment> segments) {
+    this.segments = segments;
+    this.starts = new int[segments.size()];
+    int rows = 0;
+    int cols = 0;
+    for (int i = 0; i < segments.size(); i++) {
+      Segment segment = segments.get(i);
+      segment.references.incrementAndGet();
+      this.starts[i] = rows;
+      rows += segment.table.numRows();
+      if (segment.table.numRows() > 0) {
+        cols = segment.table.numCols();
+      }
+    }
+    this.numRows = rows;
+    this.numCols = cols;
+  }
+
+  /**
+   * Wraps a table as the first segment of a SegmentedTable. The table is released along with the
+   * last SegmentedTable that contains it, so it must not be released separately.
+   *
+   * @param table - the first segment
+   * @return a SegmentedTable with the same rows as table
+   */
+  public static SegmentedTable of(CSVTable table) {
+    return new SegmentedTable(List.of(new Segment(table)));
+  }
+
+  /**
+   * Stacks tables into one SegmentedTable, in order. The tables are released along with the last
+   * SegmentedTable that contains them, so they must not be released separately.
+   *
+   * @param tables - the segments, all with the same number of columns
+   * @return a SegmentedTable with the tables' rows one after another
+   */
+  public static SegmentedTable of(List<CSVTable> tables) {
+    List<Segment> segments = new ArrayList<>(tables.size());
+    for (CSVTable table : tables) {
+      segments.add(new Segment(table));
+    }
+    return new SegmentedTable(segments);
+  }
+
+  /**
+   * Creates a new table with tail's rows after this table's. This table is left unchanged and still
+   * has to be released on its own.
+   *
+   * @param tail - the rows to add; owned by the new table from now on
+   * @return a SegmentedTable sharing this table's segments, plus tail
+   * @throws IllegalArgumentException if tail's column count differs from this table's
+   */
+  public SegmentedTable append(CSVTable tail) throws IllegalArgumentException {
+    return this.append(tail, null);
+  }
+
+  /**
+   * Same as append(tail), merging the trailing segments with merge as needed to keep their number
+   * logarithmic in the appended rows.
+   *
+   * @param tail - the rows to add; owned by the new table from now on
+   * @param merge - copies the rows of the table it is given into one new table and releases the one
+   *     given, or null to never merge
+   * @return a SegmentedTable sharing this table's leading segments, plus the rest merged with tail
+   * @throws IllegalArgumentException if tail's column count differs from this table's
+   */
+  public SegmentedTable append(CSVTable tail, UnaryOperator<CSVTable> merge)
+      throws IllegalArgumentException {
+    if (this.numRows > 0 && tail.numRows() > 0 && tail.numCols() != this.numCols) {
+      throw new IllegalArgumentException("Invalid CSV file: mismatching row dimensions");
+    }
+    List<Segment> segments = new ArrayList<>(this.segments);
+    segments.add(new Segment(tail));
+    while (merge != null && segments.size() > 2) {
+      int last = segments.size() - 1;
+      int lastRows = segments.get(last).table.numRows();
+      if (segments.get(last - 1).table.numRows() >= 2L * lastRows) {
+        break;
+      }
+      // merging releases this temporary table, which only releases the new tail
+      SegmentedTable pair = new SegmentedTable(List.of(segments.get(last - 1), segments.get(last)));
+      segments.subList(last - 1, last + 1).clear();
+      segments.add(new Segment(merge.apply(pair)));
+    }
+    return new SegmentedTable(segments);
+  }
+
+  /**
+   * getSegmentCount returns how many tables this one is made of
+   *
+   * @return the number of segments
+   */
+  public int getSegmentCount() {
+    return this.segments.size();
+  }
+
+  private int segmentOf(int row) {
+    int index = Arrays.binarySearch(this.starts, row);
+    if (index < 0) {
+      return -index - 2;
+    }
+    // empty segments share their start with the next one
+    while (index + 1 < this.starts.length && this.starts[index + 1] == row) {
+      index++;
+    }
+    return index;
+  }
+
+  @Override
+  public int numRows() {
+    return this.numRows;
+  }
+
+  @Override
+  public int numCols() {
+    return this.numCols;
+  }
+
+  @Override
+  public String get(int row, int col) {
+    int index = this.segmentOf(row);
+    return this.segments.get(index).table.get(row - this.starts[index], col);
+  }
+
+  /**
+   * Returns a view that moves between the segments' own views.
+   *
+   * @return a RowView positioned on row 0
+   */
+  @Override
+  public RowView view() {
+    RowView[] views = new RowView[this.segments.size()];
+    return new RowView() {
+      private RowView current;
+
+      @Override
+      public RowView moveTo(int row) {
+        int index = SegmentedTable.this.segmentOf(row);
+        if (views[index] == null) {
+          views[index] = SegmentedTable.this.segments.get(index).table.view();
+        }
+        this.current = views[index].moveTo(row - SegmentedTable.this.starts[index]);
+        return this;
+      }
+
+      @Override
+      public int numCols() {
+        return SegmentedTable.this.numCols;
+      }
+
+      @Override
+      public String get(int col) {
+        return this.current.get(col);
+      }
+
+      @Override
+      public void writeCell(int col, OutputStream out) throws IOException {
+        this.current.writeCell(col, out);
+      }
+    };
+  }
+
+  @Override
+  public IntPredicate equalTo(int col, String value) {
+    IntPredicate[] tests = new IntPredicate[this.segments.size()];
+    for (int i = 0; i < tests.length; i++) {
+      tests[i] = this.segments.get(i).table.equalTo(col, value);
+    }
+    return row -> {
+      int index = this.segmentOf(row);
+      return tests[index].test(row - this.starts[index]);
+    };
+  }
+
+  @Override
+  public long getMemoryUsage() {
+    long bytes = 0;
+    for (Segment segment : this.segments) {
+      bytes += segment.table.getMemoryUsage();
+    }
+    return bytes;
+  }
+
+  /** Releases the segments that no other SegmentedTable still contains. */
+  @Override
+  public void release() {
+    if (this.released.compareAndSet(false, true)) {
+      for (Segment segment : this.segments) {
+        if (segment.references.decrementAndGet() == 0) {
+          segment.table.release();
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,164 @@
+package edu.brown.cs.student.main.csv;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * SortedDictionary is the distinct cell texts of one column in sorted order, each with the rows
+ * that have it. Values sharing a prefix are adjacent, so a prefix lookup is a binary search for the
+ * first one plus a walk over the matches, and a substring lookup checks each distinct value once
+ * rather than every row.
+ *
+ * <p>It is built from the column's ColumnIndex and shares that index's row arrays, so it only adds
+ * two references per distinct value. Values are identified by their position in the sorted order.
+ */
+public class SortedDictionary {
+
+  private static final int[] NO_IDS = new int[0];
+
+  private final String[] values;
+  private final int[][] rows;
+
+  private SortedDictionary(String[] values, int[][] rows) {
+    this.values = values;
+    this.rows = rows;
+  }
+
+  /**
+   * Builds the dictionary of a column from its hash index.
+   *
+   * @param index - the column's hash index
+   * @return the dictionary
+   */
+  public static SortedDictionary of(ColumnIndex index) {
+    Map<String, int[]> entries = index.values();
+    String[] values = entries.keySet().toArray(new String[0]);
+    Arrays.sort(values);
+    int[][] rows = new int[values.length][];
+    for (int id = 0; id < values.length; id++) {
+      rows[id] = entries.get(values[id]);
+    }
+    return new SortedDictionary(values, rows);
+  }
+
+  /**
+   * idsStartingWith returns the values that start with prefix
+   *
+   * @param prefix - the prefix to look up
+   * @return the ids of the matching values, ascending
+   */
+  public int[] idsStartingWith(String prefix) {
+    int low = 0;
+    int high = this.values.length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (this.values[mid].compareTo(prefix) < 0) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    int end = low;
+    while (end < this.values.length && this.values[end].startsWith(prefix)) {
+      end++;
+    }
+    int[] ids = new int[end - low];
+    for (int i = 0; i < ids.length; i++) {
+      ids[i] = low + i;
+    }
+    return ids;
+  }
+
+  /**
+   * idsContaining returns the values that contain text
+   *
+   * @param text - the text to look for
+   * @param trigrams - the trigram index of this dictionary, narrowing the values to check, or null
+   *     to check every value
+   * @return the ids of the matching values, ascending
+   */
+  public int[] idsContaining(String text, TrigramIndex trigrams) {
+    int[] candidates = trigrams == null ? null : trigrams.candidates(text);
+    if (candidates == null) {
+      candidates = new int[this.values.length];
+      for (int id = 0; id < candidates.length; id++) {
+        candidates[id] = id;
+      }
+    }
+    if (candidates.length == 0) {
+      return NO_IDS;
+    }
+    int[] ids = new int[candidates.length];
+    int size = 0;
+    for (int id : candidates) {
+      if (this.values[id].contains(text)) {
+        ids[size++] = id;
+      }
+    }
+    return Arrays.copyOf(ids, size);
+  }
+
+  /**
+   * rowsOf returns the rows that have any of a set of values
+   *
+   * @param ids - ids of the values
+   * @return the row indexes in ascending order
+   */
+  public int[] rowsOf(int[] ids) {
+    int total = 0;
+    for (int id : ids) {
+      total += this.rows[id].length;
+    }
+    int[] result = new int[total];
+    int size = 0;
+    for (int id : ids) {
+      System.arraycopy(this.rows[id], 0, result, size, this.rows[id].length);
+      size += this.rows[id].length;
+    }
+    // each row has one value in the column, so there are no duplicates to remove
+    if (ids.length > 1) {
+      Arrays.sort(result);
+    }
+    return result;
+  }
+
+  /**
+   * getValue returns a value by its id
+   *
+   * @param id - the value's position in sorted order
+   * @return the cell text
+   */
+  public String getValue(int id) {
+    return this.values[id];
+  }
+
+  /**
+   * getNumRows returns the number of rows that have a value
+   *
+   * @param id - the value's position in sorted order
+   * @return the number of rows with that cell text
+   */
+  public int getNumRows(int id) {
+    return this.rows[id].length;
+  }
+
+  /**
+   * getNumValues returns the number of distinct values in the column
+   *
+   * @return the number of values
+   */
+  public int getNumValues() {
+    return this.values.length;
+  }
+
+  /**
+   * getMemoryUsage estimates the heap the dictionary adds to its column's hash index, whose cell
+   * texts and row arrays it shares
+   *
+   * @return the estimated size in bytes
+   */
+  public long getMemoryUsage() {
+    return 2L
+        * (MemoryEstimates.ARRAY_HEADER + (long) MemoryEstimates.REFERENCE * this.values.length);
+  }
+}
@@ -0,0 +1,262 @@
+package edu.brown.cs.student.main.csv;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TableSnapshot saves a tokenized ByteTable to a binary file next to its CSV (name.csv.snap), so a
+ * later load can map the snapshot instead of tokenizing the CSV again. A snapshot records the size
+ * and modification time of the CSV it was made from and is ignored once either changes.
+ *
+ * <p>Layout, all little-endian: a header of magic, format version, CSV size, CSV mtime (millis),
+ * numRows, numCols and data length; then numRows * (numCols + 1) int offsets as described in
+ * ByteTokenizer; then the data bytes the offsets point into. Offsets and data are mapped as two
+ * separate buffers; reading a snapshot checks that every offset points into the data, one pass over
+ * the offsets, but never reads the data.
+ *
+ * <p>Loads write snapshots with writeLater, on a single background thread, so a load doesn't wait
+ * for a copy of the file to reach the disk.
+ */
+public final class TableSnapshot {
+
+  /** Appended to a CSV's file name to get its snapshot's */
+  public static final String SUFFIX = ".snap";
+
+  private static final int MAGIC = 0x43535653; // "CSVS"
+  private static final int VERSION = 1;
+  private static final int HEADER_SIZE = 2 * Integer.BYTES + 2 * Long.BYTES + 3 * Integer.BYTES;
+  private static final int WRITE_BUFFER_SIZE = 1 << 16;
+  // writes still waiting past this many are dropped; the next load of the file tries again
+  private static final int MAX_QUEUED_WRITES = 4;
+
+  private static final ExecutorService WRITER =
+      new ThreadPoolExecutor(
+          1,
+          1,
+          0,
+          TimeUnit.MILLISECONDS,
+          new ArrayBlockingQueue<>(MAX_QUEUED_WRITES),
+          runnable -> {
+            Thread thread = new Thread(runnable, "snapshot-writer");
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  private TableSnapshot() {}
+
+  /**
+   * pathFor returns where the snapshot of a CSV file is kept
+   *
+   * @param csv - path of the CSV file
+   * @return path of its snapshot
+   */
+  public static Path pathFor(Path csv) {
+    return csv.resolveSibling(csv.getFileName() + SUFFIX);
+  }
+
+  /**
+   * Writes table as the snapshot of csv. The snapshot is written to a temporary file first and
+   * moved into place, so a concurrent read never sees it half written.
+   *
+   * @param csv - path of the CSV file table was loaded from
+   * @param source - attributes of the CSV file, read before it was loaded
+   * @param table - the CSV's tokenized table
+   * @throws IOException if the snapshot can't be written
+   */
+  public static void write(Path csv, BasicFileAttributes source, ByteTable table)
+      throws IOException {
+    ByteBuffer data = table.getData();
+    IntBuffer offsets = table.getOffsets();
+    Path target = pathFor(csv);
+    Path temp = Files.createTempFile(target.toAbsolutePath().getParent(), ".snapshot", ".tmp");
+    try {
+      try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+        ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        buffer
+            .putInt(MAGIC)
+            .putInt(VERSION)
+            .putLong(source.size())
+            .putLong(source.lastModifiedTime().toMillis())
+            .putInt(table.numRows())
+            .putInt(table.numCols())
+            .putInt(data.limit());
+        for (int i = 0; i < offsets.limit(); i++) {
+          if (buffer.remaining() < Integer.BYTES) {
+            drain(channel, buffer);
+          }
+          buffer.putInt(offsets.get(i));
+        }
+        drain(channel, buffer);
+
+        ByteBuffer bytes = data.duplicate();
+        bytes.clear();
+        while (bytes.hasRemaining()) {
+          channel.write(bytes);
+        }
+      }
+      try {
+        Files.move(
+            temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+
+  /**
+   * Queues table to be written as the snapshot of csv on the background writer thread. A failed
+   * write, for example in a read-only directory, only means the file has no snapshot.
+   *
+   * @param csv - path of the CSV file table was loaded from
+   * @param source - attributes of the CSV file, read before it was loaded
+   * @param table - the CSV's tokenized table; it must stay readable until the write is done, as a
+   *     mapped or heap table does after release
+   */
+  public static void writeLater(Path csv, BasicFileAttributes source, ByteTable table) {
+    try {
+      WRITER.execute(
+          () -> {
+            try {
+              write(csv, source, table);
+            } catch (IOException e) {
+              // snapshots only speed up later loads; e.g. a read-only data folder just has none
+            }
+          });
+    } catch (RejectedExecutionException e) {
+      // the writer is behind; this file just gets no snapshot this time
+    }
+  }
+
+  /**
+   * flush waits until every write queued by writeLater before it has finished
+   *
+   * @throws InterruptedException if interrupted while waiting
+   */
+  public static void flush() throws InterruptedException {
+    while (true) {
+      try {
+        CompletableFuture.runAsync(() -> {}, WRITER).get();
+        return;
+      } catch (RejectedExecutionException e) {
+        // the queue is full; wait for some of it to drain
+        Thread.sleep(10);
+      } catch (ExecutionException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+  }
+
+  private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
+
+  /**
+   * Maps the snapshot of csv, if there is one made from the CSV as it currently is on disk.
+   *
+   * @param csv - path of the CSV file
+   * @param source - attributes of the CSV file as it currently is
+   * @return a ByteTable over the mapped snapshot, or null if there is no usable snapshot
+   * @throws IOException if the snapshot exists but can't be read
+   */
+  public static ByteTable read(Path csv, BasicFileAttributes source) throws IOException {
+    Path path = pathFor(csv);
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size < HEADER_SIZE) {
+        return null;
+      }
+      ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+      while (header.hasRemaining()) {
+        if (channel.read(header, header.position()) < 0) {
+          return null;
+        }
+      }
+      header.flip();
+      if (header.getInt() != MAGIC
+          || header.getInt() != VERSION
+          || header.getLong() != source.size()
+          || header.getLong() != source.lastModifiedTime().toMillis()) {
+        return null;
+      }
+      int numRows = header.getInt();
+      int numCols = header.getInt();
+      int dataLength = header.getInt();
+      long offsetsLength = (long) numRows * (numCols + 1) * Integer.BYTES;
+      if (numRows < 0
+          || numCols < 0
+          || dataLength < 0
+          || size != HEADER_SIZE + offsetsLength + dataLength
+          || offsetsLength > ByteTable.MAX_MAPPED_SIZE) {
+        return null;
+      }
+
+      MappedByteBuffer offsetBytes =
+          channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, offsetsLength);
+      IntBuffer offsets = offsetBytes.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+      if (!offsetsFit(offsets, numCols, dataLength)) {
+        return null;
+      }
+      MappedByteBuffer data =
+          channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + offsetsLength, dataLength);
+      return new ByteTable(data, offsets, numRows, numCols, null);
+    } catch (NoSuchFileException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Checks that offsets describe cells inside the data: in each record every field ends no earlier
+   * than it starts, and the last one ends within the data (see ByteTokenizer for the layout). A
+   * snapshot that was truncated or corrupted after its header was written fails this, so it is
+   * rejected when loading rather than read out of bounds by a later query.
+   *
+   * @param offsets - the snapshot's offsets, numCols + 1 per record
+   * @param numCols - the number of fields in each record
+   * @param dataLength - the number of data bytes
+   * @return true if every cell lies within the data
+   */
+  private static boolean offsetsFit(IntBuffer offsets, int numCols, int dataLength) {
+    int limit = offsets.limit();
+    for (int record = 0; record < limit; record += numCols + 1) {
+      int previous = offsets.get(record);
+      if (previous < 0) {
+        return false;
+      }
+      for (int k = record + 1; k <= record + numCols; k++) {
+        int next = offsets.get(k);
+        if (next <= previous) {
+          return false;
+        }
+        previous = next;
+      }
+      if (previous > dataLength + 1) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
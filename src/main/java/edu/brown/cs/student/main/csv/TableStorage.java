@@ -0,0 +1,15 @@
+package edu.brown.cs.student.main.csv;
+
+/** TableStorage represents the ways a loaded CSV can be held in memory */
+public enum TableStorage {
+  /** Cells stay in the memory-mapped file and are decoded on read, see ByteTable */
+  MAPPED,
+  /** Typed columns: numbers in primitive arrays, text dictionary-encoded, see ColumnarTable */
+  COLUMNAR,
+  /** Cell bytes copied into one contiguous buffer with per-row offsets, see ByteTable.pack */
+  PACKED,
+  /**
+   * Like PACKED, but cell bytes and offsets live outside the Java heap, see ByteTable.packOffHeap
+   */
+  OFF_HEAP
+}
@@ -0,0 +1,147 @@
+package edu.brown.cs.student.main.csv;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * TrigramIndex maps every three-character sequence (trigram) occurring in a column's distinct
+ * values to the values containing it. A value containing some text must contain all of the text's
+ * trigrams, so intersecting their lists gives a small set of candidates to check with
+ * String.contains instead of every value.
+ *
+ * <p>It is built over a SortedDictionary and refers to values by their ids there. Text shorter than
+ * three characters has no trigrams; those lookups check every value.
+ */
+public class TrigramIndex {
+
+  private static final int[] NO_IDS = new int[0];
+
+  /** Bytes of a boxed Long key */
+  private static final int LONG_KEY = 16;
+
+  private final Map<Long, int[]> ids;
+  private final long memoryUsage;
+
+  private TrigramIndex(Map<Long, int[]> ids, long memoryUsage) {
+    this.ids = ids;
+    this.memoryUsage = memoryUsage;
+  }
+
+  /**
+   * Builds the index of a dictionary's values.
+   *
+   * @param dictionary - the column's distinct values
+   * @return the index
+   */
+  public static TrigramIndex of(SortedDictionary dictionary) {
+    Map<Long, int[]> ids = new HashMap<>();
+    // the first element of each array is how many ids it holds, until they are trimmed below
+    for (int id = 0; id < dictionary.getNumValues(); id++) {
+      String value = dictionary.getValue(id);
+      for (int i = 0; i + 3 <= value.length(); i++) {
+        long trigram = trigram(value, i);
+        int[] postings = ids.computeIfAbsent(trigram, unused -> new int[4]);
+        int size = postings[0];
+        // a value repeating a trigram is listed once
+        if (size > 0 && postings[size] == id) {
+          continue;
+        }
+        size++;
+        if (size == postings.length) {
+          postings = Arrays.copyOf(postings, size * 2);
+          ids.put(trigram, postings);
+        }
+        postings[size] = id;
+        postings[0] = size;
+      }
+    }
+    long memoryUsage = 0;
+    for (Map.Entry<Long, int[]> entry : ids.entrySet()) {
+      int[] postings = entry.getValue();
+      entry.setValue(Arrays.copyOfRange(postings, 1, postings[0] + 1));
+      memoryUsage +=
+          MemoryEstimates.MAP_ENTRY
+              + LONG_KEY
+              + MemoryEstimates.ARRAY_HEADER
+              + 4L * entry.getValue().length;
+    }
+    return new TrigramIndex(ids, memoryUsage);
+  }
+
+  /**
+   * estimateMemoryUsage gives a lower bound on the size of the index of a dictionary without
+   * building it: every trigram occurrence takes at least one id
+   *
+   * @param dictionary - the column's distinct values
+   * @return the estimated size in bytes
+   */
+  public static long estimateMemoryUsage(SortedDictionary dictionary) {
+    long occurrences = 0;
+    for (int id = 0; id < dictionary.getNumValues(); id++) {
+      occurrences += Math.max(0, dictionary.getValue(id).length() - 2);
+    }
+    return 4 * occurrences;
+  }
+
+  private static long trigram(String text, int start) {
+    return ((long) text.charAt(start) << 32)
+        | ((long) text.charAt(start + 1) << 16)
+        | text.charAt(start + 2);
+  }
+
+  /**
+   * candidates returns the values containing all of text's trigrams, a superset of the values that
+   * contain text
+   *
+   * @param text - the text to look for
+   * @return the ids of the candidate values, ascending; null if text is too short to have trigrams
+   */
+  public int[] candidates(String text) {
+    if (text.length() < 3) {
+      return null;
+    }
+    int[][] lists = new int[text.length() - 2][];
+    for (int i = 0; i < lists.length; i++) {
+      lists[i] = this.ids.get(trigram(text, i));
+      if (lists[i] == null) {
+        return NO_IDS;
+      }
+    }
+    // intersecting from the shortest list keeps every intermediate result small
+    Arrays.sort(lists, (a, b) -> Integer.compare(a.length, b.length));
+    int[] result = lists[0];
+    for (int i = 1; i < lists.length && result.length > 0; i++) {
+      result = intersect(result, lists[i]);
+    }
+    return result;
+  }
+
+  private static int[] intersect(int[] a, int[] b) {
+    int[] result = new int[Math.min(a.length, b.length)];
+    int size = 0;
+    int i = 0;
+    int j = 0;
+    while (i < a.length && j < b.length) {
+      if (a[i] < b[j]) {
+        i++;
+      } else if (a[i] > b[j]) {
+        j++;
+      } else {
+        result[size++] = a[i];
+        i++;
+        j++;
+      }
+    }
+    return Arrays.copyOf(result, size);
+  }
+
+  /**
+   * getMemoryUsage estimates the heap the index takes
+   *
+   * @return the estimated size in bytes
+   */
+  public long getMemoryUsage() {
+    return this.memoryUsage;
+  }
+}
@@ -1,11 +1,18 @@
 package edu.brown.cs.student.main.server;
 
 import com.squareup.moshi.JsonAdapter;
+import com.squareup.moshi.JsonWriter;
 import com.squareup.moshi.Moshi;
 import com.squareup.moshi.Types;
+import edu.brown.cs.student.main.csv.CSVTable;
+import edu.brown.cs.student.main.csv.RowView;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.lang.reflect.Type;
 import java.util.HashMap;
 import java.util.Map;
+import okio.Buffer;
+import okio.BufferedSink;
 
 /** ResponseBuilder contains methods to help create API responses. */
 public class ResponseBuilder {
@@ -55,4 +62,83 @@ public class ResponseBuilder {
     }
     return adapter.toJson(responseMap);
   }
+
+  /**
+   * tableToJson creates a String representation (JSON) of fields plus one more field holding every
+   * row of table as an array of arrays. Cells are copied through a RowView straight into the
+   * output, so tables that store bytes are serialized without creating a String per cell.
+   *
+   * @param fields is a String to Object map of the other response fields
+   * @param key is the name of the field holding the rows
+   * @param table is the table whose rows are written
+   * @return String representation (JSON) of the response
+   */
+  public static String tableToJson(Map<String, Object> fields, String key, CSVTable table) {
+    Buffer buffer = new Buffer();
+    try (JsonWriter writer = JsonWriter.of(buffer)) {
+      writer.beginObject();
+      for (Map.Entry<String, Object> field : fields.entrySet()) {
+        writer.name(field.getKey());
+        writer.jsonValue(field.getValue());
+      }
+      writer.name(key);
+      try (BufferedSink sink = writer.valueSink()) {
+        JsonStringStream cells = new JsonStringStream(sink);
+        RowView view = table.view();
+        sink.writeByte('[');
+        for (int row = 0; row < table.numRows(); row++) {
+          view.moveTo(row);
+          sink.writeUtf8(row == 0 ? "[" : ",[");
+          for (int col = 0; col < view.numCols(); col++) {
+            sink.writeUtf8(col == 0 ? "\"" : ",\"");
+            view.writeCell(col, cells);
+            sink.writeByte('"');
+          }
+          sink.writeByte(']');
+        }
+        sink.writeByte(']');
+      }
+      writer.endObject();
+    } catch (IOException e) {
+      // writing to an in-memory Buffer doesn't fail
+      throw new IllegalStateException(e);
+    }
+    return buffer.readUtf8();
+  }
+
+  /** Writes UTF-8 bytes to a sink, escaped for use inside a JSON string */
+  private static class JsonStringStream extends OutputStream {
+    private final BufferedSink sink;
+
+    JsonStringStream(BufferedSink sink) {
+      this.sink = sink;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      this.write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      int run = off;
+      for (int i = off; i < off + len; i++) {
+        byte c = b[i];
+        // multi-byte UTF-8 sequences are all >= 0x80 (negative), so they pass through unchanged
+        if (c == '"' || c == '\\' || (c >= 0 && c < 0x20)) {
+          this.sink.write(b, run, i - run);
+          switch (c) {
+            case '"' -> this.sink.writeUtf8("\\\"");
+            case '\\' -> this.sink.writeUtf8("\\\\");
+            case '\n' -> this.sink.writeUtf8("\\n");
+            case '\r' -> this.sink.writeUtf8("\\r");
+            case '\t' -> this.sink.writeUtf8("\\t");
+            default -> this.sink.writeUtf8(String.format("\\u%04x", (int) c));
+          }
+          run = i + 1;
+        }
+      }
+      this.sink.write(b, run, off + len - run);
+    }
+  }
 }
@@ -3,22 +3,33 @@ package edu.brown.cs.student.main.server;
 import static spark.Spark.after;
 
 import com.google.common.cache.CacheBuilder;
+import edu.brown.cs.student.main.csv.CSVSearcher.ParallelScan;
+import edu.brown.cs.student.main.csv.DatasetWatcher;
 import edu.brown.cs.student.main.csv.ParserState;
 import edu.brown.cs.student.main.server.broadband.ACSBroadbandSource;
 import edu.brown.cs.student.main.server.broadband.BroadbandHandler;
 import edu.brown.cs.student.main.server.cache.APICache;
+import edu.brown.cs.student.main.server.csv.ListCSVHandler;
 import edu.brown.cs.student.main.server.csv.LoadCSVHandler;
+import edu.brown.cs.student.main.server.csv.LoadJobs;
+import edu.brown.cs.student.main.server.csv.LoadStatusHandler;
 import edu.brown.cs.student.main.server.csv.SearchCSVHandler;
 import edu.brown.cs.student.main.server.csv.UnloadCSVHandler;
 import edu.brown.cs.student.main.server.csv.ViewCSVHandler;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.TimeUnit;
 import spark.Spark;
 
 /**
- * Main class for initializing a server. Includes 4 endpoints: /broadband, /loadcsv, /viewcsv,
- * /searchcsv Run Server main to start and initialize server.
+ * Main class for initializing a server. Includes endpoints: /broadband, /loadcsv, /loadstatus,
+ * /unloadcsv, /listcsv, /viewcsv, /searchcsv Run Server main to start and initialize server,
+ * optionally passing the memory budget for loaded CSVs in megabytes and then the most threads one
+ * search may scan with (half the cores by default).
  */
 public class Server {
+  /** How often files loaded with watch=true are checked for appended rows */
+  private static final long WATCH_INTERVAL_MILLIS = 2000;
+
   public static void main(String[] args) {
     int port = 3232;
     Spark.port(port);
@@ -29,18 +40,33 @@ public class Server {
           response.header("Access-Control-Allow-Methods", "*");
         });
 
-    // ParserState saves a given parser to use among loadcsv, viewcsv, searchcsv endpoints
-    ParserState parser = new ParserState();
+    // ParserState keeps the loaded CSVs, by name, for the loadcsv, viewcsv, searchcsv endpoints
+    long memoryBudget = args.length > 0 ? Long.parseLong(args[0]) << 20 : ParserState.UNLIMITED;
+    ParserState parser = new ParserState(memoryBudget);
     CacheBuilder<Object, Object> cacheBuilder =
         CacheBuilder.newBuilder().expireAfterWrite(30, TimeUnit.SECONDS);
 
     // Setting up the handler for the GET /loadcsv, /viewcsv, /searchcsv, /broadband
     Spark.get(
         "broadband", new APICache(new BroadbandHandler(new ACSBroadbandSource()), cacheBuilder));
-    Spark.get("loadcsv", new LoadCSVHandler(parser));
+    // LoadJobs runs loadcsv?async=true loads in the background, reported by loadstatus
+    LoadJobs loadJobs = new LoadJobs();
+    // DatasetWatcher polls files loaded with loadcsv?watch=true for appended rows
+    DatasetWatcher watcher = new DatasetWatcher(parser);
+    watcher.start(WATCH_INTERVAL_MILLIS);
+    Spark.get("loadcsv", new LoadCSVHandler(parser, loadJobs, watcher));
+    Spark.get("loadstatus", new LoadStatusHandler(loadJobs));
     Spark.get("unloadcsv", new UnloadCSVHandler(parser));
+    Spark.get("listcsv", new ListCSVHandler(parser, watcher));
     Spark.get("viewcsv", new ViewCSVHandler(parser));
-    Spark.get("searchcsv", new SearchCSVHandler(parser));
+    // unindexed searches over large datasets are split across the common pool, a few threads each
+    int searchThreads =
+        args.length > 1
+            ? Integer.parseInt(args[1])
+            : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    ParallelScan parallelScan =
+        new ParallelScan(ForkJoinPool.commonPool(), ParallelScan.DEFAULT_MIN_ROWS, searchThreads);
+    Spark.get("searchcsv", new SearchCSVHandler(parser, parallelScan));
     Spark.init();
     Spark.awaitInitialization();
 
@@ -0,0 +1,79 @@
+package edu.brown.cs.student.main.server.csv;
+
+import edu.brown.cs.student.main.csv.DatasetWatcher;
+import edu.brown.cs.student.main.csv.ParserState;
+import edu.brown.cs.student.main.csv.ParserState.Dataset;
+import edu.brown.cs.student.main.server.ResponseBuilder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import spark.Request;
+import spark.Response;
+import spark.Route;
+
+/**
+ * ListCSVHandler Handles requests to listcsv endpoint. Takes in no params and returns the datasets
+ * loaded in ParserState with their memory use.
+ */
+public class ListCSVHandler implements Route {
+  private final ParserState parserState;
+  private final DatasetWatcher watcher;
+
+  /**
+   * ListCSVHandler constructor saves ParserState
+   *
+   * @param parserState is the parser for the server
+   */
+  public ListCSVHandler(ParserState parserState) {
+    this(parserState, null);
+  }
+
+  /**
+   * ListCSVHandler constructor saves ParserState and the DatasetWatcher whose state it reports
+   *
+   * @param parserState is the parser for the server
+   * @param watcher is the server's watcher, or null
+   */
+  public ListCSVHandler(ParserState parserState, DatasetWatcher watcher) {
+    this.parserState = parserState;
+    this.watcher = watcher;
+  }
+
+  /**
+   * handle manages request and response to endpoint
+   *
+   * @param request is the request to the endpoint
+   * @param response is the response from the endpoint
+   * @return Object response to request
+   */
+  @Override
+  public Object handle(Request request, Response response) {
+    List<Map<String, Object>> datasets = new ArrayList<>();
+    for (Map.Entry<String, Dataset> entry : this.parserState.getDatasets().entrySet()) {
+      Map<String, Object> dataset = new HashMap<>();
+      dataset.put("name", entry.getKey());
+      dataset.put("version", entry.getValue().version());
+      dataset.put("bytes", entry.getValue().memoryUsage());
+      dataset.put("indexed", entry.getValue().indexes().hasInverted());
+      if (this.watcher != null) {
+        dataset.put("watching", this.watcher.isWatching(entry.getKey()));
+        String failure = this.watcher.getFailure(entry.getKey());
+        if (failure != null) {
+          dataset.put("watchError", failure);
+        }
+      }
+      datasets.add(dataset);
+    }
+    // create response
+    Map<String, Object> responseMap = new HashMap<>();
+    responseMap.put("result", "success");
+    responseMap.put("code", 200);
+    responseMap.put("data", datasets);
+    responseMap.put("bytes", this.parserState.getMemoryUsage());
+    if (this.parserState.getMemoryBudget() != ParserState.UNLIMITED) {
+      responseMap.put("budget", this.parserState.getMemoryBudget());
+    }
+    return ResponseBuilder.mapToJson(responseMap);
+  }
+}
@@ -1,48 +1,176 @@
 package edu.brown.cs.student.main.server.csv;
 
-import edu.brown.cs.student.main.csv.CSVParser;
-import edu.brown.cs.student.main.csv.CreatorFromRow;
+import edu.brown.cs.student.main.csv.CSVLoader;
+import edu.brown.cs.student.main.csv.CSVTable;
+import edu.brown.cs.student.main.csv.DatasetWatcher;
+import edu.brown.cs.student.main.csv.LoadProgress;
 import edu.brown.cs.student.main.csv.ParserState;
+import edu.brown.cs.student.main.csv.ParserState.Publication;
+import edu.brown.cs.student.main.csv.SearchIndexes;
+import edu.brown.cs.student.main.csv.SegmentedTable;
+import edu.brown.cs.student.main.csv.TableStorage;
 import edu.brown.cs.student.main.exception.FactoryFailureException;
 import edu.brown.cs.student.main.server.ResponseBuilder;
+import edu.brown.cs.student.main.server.csv.LoadJobs.LoadJob;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 import spark.Request;
 import spark.Response;
 import spark.Route;
 
 /**
- * LoadCSVHandler Handles requests to loadcsv endpoint. Takes in params: filepath and saves parse to
- * ParserState.
+ * LoadCSVHandler Handles requests to loadcsv endpoint. Takes in params: filepath, name, storage,
+ * async, watch and index and saves parse to ParserState under name, either before responding or in
+ * the background.
  */
 public class LoadCSVHandler implements Route {
   private final ParserState parserState;
+  private final LoadJobs loadJobs;
+  private final DatasetWatcher watcher;
 
   /**
-   * LoadCSVHandler constructor saves ParserState
+   * LoadCSVHandler constructor saves ParserState, running background loads on its own LoadJobs
    *
    * @param parserState is the parser for the server
    */
   public LoadCSVHandler(ParserState parserState) {
+    this(parserState, new LoadJobs());
+  }
+
+  /**
+   * LoadCSVHandler constructor saves ParserState and LoadJobs; watch=true is refused
+   *
+   * @param parserState is the parser for the server
+   * @param loadJobs runs loads requested with async=true, shared with LoadStatusHandler
+   */
+  public LoadCSVHandler(ParserState parserState, LoadJobs loadJobs) {
+    this(parserState, loadJobs, null);
+  }
+
+  /**
+   * LoadCSVHandler constructor saves ParserState, LoadJobs and DatasetWatcher
+   *
+   * @param parserState is the parser for the server
+   * @param loadJobs runs loads requested with async=true, shared with LoadStatusHandler
+   * @param watcher picks up rows appended to files loaded with watch=true, or null to refuse them
+   */
+  public LoadCSVHandler(ParserState parserState, LoadJobs loadJobs, DatasetWatcher watcher) {
     this.parserState = parserState;
+    this.loadJobs = loadJobs;
+    this.watcher = watcher;
+  }
+
+  /**
+   * notLoadedMessage is the error message viewcsv, searchcsv and unloadcsv give when the dataset a
+   * request refers to isn't loaded
+   *
+   * @param name - the requested dataset's name, or null if the request didn't give one
+   * @return the error message
+   */
+  static String notLoadedMessage(String name) {
+    if (name == null) {
+      return "File has yet to be loaded. You must first use loadcsv.";
+    }
+    return "No dataset named '" + name + "' is loaded. You must first use loadcsv.";
+  }
+
+  /**
+   * loadFailure describes why loading a file failed, for the loadcsv and loadstatus responses
+   *
+   * @param e - the exception or error the load threw
+   * @return the response code and message
+   */
+  static StatusCode loadFailure(Throwable e) {
+    if (e instanceof FileNotFoundException || e instanceof NoSuchFileException) {
+      return new StatusCode(404, "File not found.");
+    } else if (e instanceof FactoryFailureException) {
+      return new StatusCode(400, "File has inconsistent number of entries in columns.");
+    } else if (e instanceof IOException) {
+      return new StatusCode(400, "Unable to read from file.");
+    } else if (e instanceof IllegalArgumentException) {
+      return new StatusCode(400, "Malformed CSV data.");
+    } else if (e instanceof OutOfMemoryError) {
+      return new StatusCode(500, "Not enough memory to load file.");
+    }
+    return new StatusCode(500, "Failed to load file.");
+  }
+
+  /**
+   * Loads a file and publishes it under a name, registering it with the watcher if asked to.
+   *
+   * @param name - the dataset's name
+   * @param path - the file to load
+   * @param storage - how to store it
+   * @param watch - whether to pick up rows appended to the file later
+   * @param index - whether to build an inverted index over all columns before publishing
+   * @param progress - the progress the load reports to
+   * @return the publication
+   */
+  private Publication load(
+      String name,
+      Path path,
+      TableStorage storage,
+      boolean watch,
+      boolean index,
+      LoadProgress progress)
+      throws IOException, FactoryFailureException {
+    CSVTable table = CSVLoader.load(path, storage, true, progress);
+    boolean endsWithBreak = false;
+    if (watch) {
+      table = SegmentedTable.of(table);
+      // read the file before publishing, so a dataset is never published but left unwatched
+      try {
+        endsWithBreak = DatasetWatcher.endsWithBreak(path, progress.getLoadedBytes());
+      } catch (IOException e) {
+        table.release();
+        throw e;
+      }
+    }
+    SearchIndexes indexes = this.parserState.newIndexes(table);
+    if (index) {
+      indexes.buildInverted(ForkJoinPool.commonPool());
+    }
+    Publication publication = this.parserState.put(name, table, indexes);
+    if (watch) {
+      this.watcher.watch(
+          name, path, storage, publication.version(), progress.getLoadedBytes(), endsWithBreak);
+    }
+    return publication;
   }
 
   /**
    * handle manages request and response to endpoint
    *
    * @param request is the request to the endpoint. Includes filepath parameter which must be
-   *     defined.
+   *     defined, an optional name for the dataset (the filepath by default), and an optional
+   *     storage parameter ("columnar" by default, "mapped", "packed" or "offheap"). Files ending in
+   *     .csv.gz are decompressed as they are read. With async "true", the response is sent right
+   *     away with a job id to pass to loadstatus. With watch "true", rows appended to the file
+   *     later are loaded and published as new versions. With index "true", an inverted index of
+   *     every cell is built in parallel before publishing, for searches without a column.
    * @param response is the response from the endpoint
    * @return Object response to request
    */
-  @Override 
+  @Override
   public Object handle(Request request, Response response) {
     String filepath = request.queryParams("filepath");
+    String name = request.queryParams("name");
+    String storageParam = request.queryParams("storage");
+    String asyncParam = request.queryParams("async");
+    String watchParam = request.queryParams("watch");
+    String indexParam = request.queryParams("index");
     Map<String, Object> paramMap = new HashMap<>();
     paramMap.put("filepath", filepath);
+    paramMap.put("name", name);
+    paramMap.put("storage", storageParam);
+    paramMap.put("async", asyncParam);
+    paramMap.put("watch", watchParam);
+    paramMap.put("index", indexParam);
     if (filepath == null || filepath.isEmpty()) {
       return ResponseBuilder.buildException(
           "error_bad_request", 400, "Must specify filepath in endpoint.", paramMap);
@@ -52,29 +180,84 @@ public class LoadCSVHandler implements Route {
       return ResponseBuilder.buildException(
           "error_datasource", 400, "Illegal file path. File must be in the data folder.", paramMap);
     }
-    if (!filepath.endsWith(".csv")) {
+    if (!filepath.endsWith(".csv") && !filepath.endsWith(".csv" + CSVLoader.GZIP_SUFFIX)) {
       return ResponseBuilder.buildException(
           "error_datasource",
           400,
-          "Filepath didn't lead to a CSV file (make sure file path ends in '.csv').",
+          "Filepath didn't lead to a CSV file (make sure file path ends in '.csv' or '.csv.gz').",
           paramMap);
     }
 
-    try {
-      FileReader reader = new FileReader(filepath);
-      CreatorFromRow<String[]> creator = row -> row.toArray(new String[0]);
-      this.parserState.setParser(new CSVParser<>(reader, creator));
-    } catch (FileNotFoundException e) {
-      return ResponseBuilder.buildException("error_datasource", 404, "File not found.", paramMap);
-    } catch (FactoryFailureException e) {
+    TableStorage storage;
+    if (storageParam == null || storageParam.equals("columnar")) {
+      storage = TableStorage.COLUMNAR;
+    } else if (storageParam.equals("mapped")) {
+      storage = TableStorage.MAPPED;
+    } else if (storageParam.equals("packed")) {
+      storage = TableStorage.PACKED;
+    } else if (storageParam.equals("offheap")) {
+      storage = TableStorage.OFF_HEAP;
+    } else {
       return ResponseBuilder.buildException(
-          "error_datasource", 400, "File has inconsistent number of entries in columns.", paramMap);
-    } catch (IOException e) {
+          "error_bad_request",
+          400,
+          "storage param must equal columnar, mapped, packed or offheap.",
+          paramMap);
+    }
+
+    if (asyncParam != null && !asyncParam.equals("true") && !asyncParam.equals("false")) {
       return ResponseBuilder.buildException(
-          "error_datasource", 400, "Unable to read from file.", paramMap);
-    } catch (IllegalArgumentException e) {
+          "error_bad_request", 400, "async param must equal true or false.", paramMap);
+    }
+    if (watchParam != null && !watchParam.equals("true") && !watchParam.equals("false")) {
+      return ResponseBuilder.buildException(
+          "error_bad_request", 400, "watch param must equal true or false.", paramMap);
+    }
+    if (indexParam != null && !indexParam.equals("true") && !indexParam.equals("false")) {
+      return ResponseBuilder.buildException(
+          "error_bad_request", 400, "index param must equal true or false.", paramMap);
+    }
+    boolean watch = "true".equals(watchParam);
+    boolean index = "true".equals(indexParam);
+    if (watch && this.watcher == null) {
+      return ResponseBuilder.buildException(
+          "error_bad_request", 400, "This server doesn't watch files.", paramMap);
+    }
+    if (watch && filepath.endsWith(CSVLoader.GZIP_SUFFIX)) {
+      return ResponseBuilder.buildException(
+          "error_bad_request", 400, "Compressed files can't be watched.", paramMap);
+    }
+
+    String datasetName = name == null || name.isEmpty() ? filepath : name;
+    Path path = Path.of(filepath);
+    if ("true".equals(asyncParam)) {
+      LoadProgress progress = new LoadProgress();
+      LoadJob job =
+          this.loadJobs.submit(
+              datasetName,
+              filepath,
+              progress,
+              () -> this.load(datasetName, path, storage, watch, index, progress));
+      if (job == null) {
+        return ResponseBuilder.buildException(
+            "error_bad_request", 429, "Too many loads in progress. Try again later.", paramMap);
+      }
+      Map<String, Object> responseMap = new HashMap<>();
+      responseMap.put("result", "success");
+      responseMap.put("code", 202);
+      responseMap.put("filepath", filepath);
+      responseMap.put("name", datasetName);
+      responseMap.put("job", job.id());
+      return ResponseBuilder.mapToJson(responseMap);
+    }
+
+    Publication publication;
+    try {
+      publication = this.load(datasetName, path, storage, watch, index, new LoadProgress());
+    } catch (IOException | FactoryFailureException | IllegalArgumentException e) {
+      StatusCode failure = loadFailure(e);
       return ResponseBuilder.buildException(
-          "error_datasource", 400, "Malformed CSV data.", paramMap);
+          "error_datasource", failure.code(), failure.message(), paramMap);
     }
 
     // create response
@@ -82,6 +265,12 @@ public class LoadCSVHandler implements Route {
     responseMap.put("result", "success");
     responseMap.put("code", 200);
     responseMap.put("filepath", filepath);
+    responseMap.put("name", datasetName);
+    responseMap.put("version", publication.version());
+    responseMap.put("bytes", publication.memoryUsage());
+    responseMap.put("evicted", publication.evicted());
+    responseMap.put("watching", watch);
+    responseMap.put("indexed", index);
     return ResponseBuilder.mapToJson(responseMap);
   }
 }
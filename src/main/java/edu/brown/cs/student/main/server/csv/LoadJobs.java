@@ -0,0 +1,194 @@
+package edu.brown.cs.student.main.server.csv;
+
+import edu.brown.cs.student.main.csv.LoadProgress;
+import edu.brown.cs.student.main.csv.ParserState.Publication;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LoadJobs runs loads requested with async=true on a small, bounded pool of background threads, so
+ * they never hold a request thread, and keeps each job's progress and outcome for loadstatus.
+ * Finished jobs are forgotten once they have been finished for longer than a time to live, or when
+ * more than a maximum number of them have finished since, oldest first, so a long-running server
+ * doesn't keep every load's outcome forever.
+ */
+public class LoadJobs {
+
+  /**
+   * LoadJob identifies one background load; its outcome is kept by LoadJobs once it finishes.
+   *
+   * @param id - the job's id
+   * @param name - the dataset being loaded
+   * @param filepath - the file being loaded
+   * @param progress - the load's progress
+   */
+  public record LoadJob(String id, String name, String filepath, LoadProgress progress) {}
+
+  /** Default number of loads that run at the same time */
+  public static final int DEFAULT_THREADS =
+      Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+
+  /** Default number of loads that can wait for a thread before new ones are refused */
+  public static final int DEFAULT_QUEUE = 16;
+
+  /** Default number of finished jobs kept for loadstatus */
+  public static final int DEFAULT_MAX_FINISHED = 256;
+
+  /** Default time a finished job is kept for loadstatus, in milliseconds */
+  public static final long DEFAULT_FINISHED_TTL_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+  /**
+   * Finished records when a job finished, for expiring it
+   *
+   * @param id - the job's id
+   * @param at - System.nanoTime() when it finished
+   */
+  private record Finished(String id, long at) {}
+
+  private final ThreadPoolExecutor executor;
+  private final AtomicLong nextId = new AtomicLong();
+  private final Map<String, LoadJob> jobs = new ConcurrentHashMap<>();
+  private final Map<String, Publication> published = new ConcurrentHashMap<>();
+  private final Map<String, Throwable> failures = new ConcurrentHashMap<>();
+  // finished jobs, oldest first; guarded by itself
+  private final Deque<Finished> finished = new ArrayDeque<>();
+  private final int maxFinished;
+  private final long finishedTtlNanos;
+
+  /** LoadJobs constructor, with the default pool size, queue length and retention */
+  public LoadJobs() {
+    this(DEFAULT_THREADS, DEFAULT_QUEUE);
+  }
+
+  /**
+   * LoadJobs constructor
+   *
+   * @param threads - number of loads that run at the same time
+   * @param queue - number of loads that can wait for a thread before new ones are refused
+   */
+  public LoadJobs(int threads, int queue) {
+    this(threads, queue, DEFAULT_MAX_FINISHED, DEFAULT_FINISHED_TTL_MILLIS);
+  }
+
+  /**
+   * LoadJobs constructor
+   *
+   * @param threads - number of loads that run at the same time
+   * @param queue - number of loads that can wait for a thread before new ones are refused
+   * @param maxFinished - number of finished jobs kept for loadstatus
+   * @param finishedTtlMillis - how long a finished job is kept for loadstatus
+   */
+  public LoadJobs(int threads, int queue, int maxFinished, long finishedTtlMillis) {
+    this.maxFinished = maxFinished;
+    this.finishedTtlNanos = TimeUnit.MILLISECONDS.toNanos(finishedTtlMillis);
+    this.executor =
+        new ThreadPoolExecutor(
+            threads,
+            threads,
+            0,
+            TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queue),
+            task -> {
+              Thread thread = new Thread(task, "csv-loader");
+              thread.setDaemon(true);
+              return thread;
+            });
+  }
+
+  /**
+   * submit queues a load to run in the background
+   *
+   * @param name - the dataset being loaded
+   * @param filepath - the file being loaded
+   * @param progress - the progress the load reports to
+   * @param load - loads and publishes the dataset
+   * @return the new job, or null if too many loads are already waiting
+   */
+  public LoadJob submit(
+      String name, String filepath, LoadProgress progress, Callable<Publication> load) {
+    LoadJob job =
+        new LoadJob(String.valueOf(this.nextId.incrementAndGet()), name, filepath, progress);
+    this.jobs.put(job.id(), job);
+    try {
+      this.executor.execute(
+          () -> {
+            // errors too, such as running out of memory, or the job would never finish
+            try {
+              this.published.put(job.id(), load.call());
+              progress.setStage(LoadProgress.Stage.DONE);
+            } catch (Exception | Error e) {
+              this.failures.put(job.id(), e);
+              progress.setStage(LoadProgress.Stage.FAILED);
+            } finally {
+              this.finish(job.id());
+            }
+          });
+    } catch (RejectedExecutionException e) {
+      this.jobs.remove(job.id());
+      return null;
+    }
+    return job;
+  }
+
+  private void finish(String id) {
+    synchronized (this.finished) {
+      this.finished.addLast(new Finished(id, System.nanoTime()));
+    }
+    this.expire();
+  }
+
+  /** Forgets the finished jobs past the time to live, and the oldest past maxFinished */
+  private void expire() {
+    long now = System.nanoTime();
+    synchronized (this.finished) {
+      while (!this.finished.isEmpty()
+          && (this.finished.size() > this.maxFinished
+              || now - this.finished.peekFirst().at() > this.finishedTtlNanos)) {
+        String id = this.finished.removeFirst().id();
+        this.jobs.remove(id);
+        this.published.remove(id);
+        this.failures.remove(id);
+      }
+    }
+  }
+
+  /**
+   * getJob looks up a job
+   *
+   * @param id - the job's id
+   * @return the job, or null if there is none with that id or it finished long enough ago to have
+   *     been forgotten
+   */
+  public LoadJob getJob(String id) {
+    this.expire();
+    return id == null ? null : this.jobs.get(id);
+  }
+
+  /**
+   * getPublication returns what a finished job published
+   *
+   * @param id - the job's id
+   * @return the publication, or null if the job hasn't finished successfully or was forgotten
+   */
+  public Publication getPublication(String id) {
+    return this.published.get(id);
+  }
+
+  /**
+   * getFailure returns why a job failed
+   *
+   * @param id - the job's id
+   * @return the exception or error the load threw, or null if it hasn't failed or was forgotten
+   */
+  public Throwable getFailure(String id) {
+    return this.failures.get(id);
+  }
+}
@@ -0,0 +1,86 @@
+package edu.brown.cs.student.main.server.csv;
+
+import edu.brown.cs.student.main.csv.LoadProgress;
+import edu.brown.cs.student.main.csv.ParserState.Publication;
+import edu.brown.cs.student.main.server.ResponseBuilder;
+import edu.brown.cs.student.main.server.csv.LoadJobs.LoadJob;
+import java.util.HashMap;
+import java.util.Map;
+import spark.Request;
+import spark.Response;
+import spark.Route;
+
+/**
+ * LoadStatusHandler Handles requests to loadstatus endpoint. Takes in params: job and reports the
+ * progress of that background load from LoadJobs.
+ */
+public class LoadStatusHandler implements Route {
+  private final LoadJobs loadJobs;
+
+  /**
+   * LoadStatusHandler constructor saves LoadJobs
+   *
+   * @param loadJobs runs the background loads, shared with LoadCSVHandler
+   */
+  public LoadStatusHandler(LoadJobs loadJobs) {
+    this.loadJobs = loadJobs;
+  }
+
+  /**
+   * handle manages request and response to endpoint
+   *
+   * @param request is the request to the endpoint. Includes job parameter which must be defined.
+   * @param response is the response from the endpoint
+   * @return Object response to request
+   */
+  @Override
+  public Object handle(Request request, Response response) {
+    String id = request.queryParams("job");
+    Map<String, Object> paramMap = new HashMap<>();
+    paramMap.put("job", id);
+    LoadJob job = this.loadJobs.getJob(id);
+    if (job == null) {
+      return ResponseBuilder.buildException(
+          "error_bad_request", 404, "No load job with that id.", paramMap);
+    }
+
+    LoadProgress progress = job.progress();
+    Map<String, Object> responseMap = new HashMap<>();
+    responseMap.put("result", "success");
+    responseMap.put("code", 200);
+    responseMap.put("job", id);
+    responseMap.put("name", job.name());
+    responseMap.put("filepath", job.filepath());
+    responseMap.put("stage", progress.getStage().name().toLowerCase());
+    responseMap.put("bytesRead", progress.getBytesRead());
+    responseMap.put("totalBytes", progress.getTotalBytes());
+    responseMap.put("rowsParsed", progress.getRowsParsed());
+    responseMap.put("elapsedSeconds", progress.getElapsedSeconds());
+    responseMap.put("bytesPerSecond", progress.getBytesPerSecond());
+    if (progress.getStage() == LoadProgress.Stage.PARSING && progress.getEtaSeconds() >= 0) {
+      responseMap.put("etaSeconds", progress.getEtaSeconds());
+    }
+
+    if (progress.getStage() == LoadProgress.Stage.DONE) {
+      Publication publication = this.loadJobs.getPublication(id);
+      if (publication == null) {
+        // forgotten since it was looked up
+        return ResponseBuilder.buildException(
+            "error_bad_request", 404, "No load job with that id.", paramMap);
+      }
+      responseMap.put("version", publication.version());
+      responseMap.put("bytes", publication.memoryUsage());
+      responseMap.put("evicted", publication.evicted());
+    } else if (progress.getStage() == LoadProgress.Stage.FAILED) {
+      Throwable exception = this.loadJobs.getFailure(id);
+      if (exception == null) {
+        return ResponseBuilder.buildException(
+            "error_bad_request", 404, "No load job with that id.", paramMap);
+      }
+      StatusCode failure = LoadCSVHandler.loadFailure(exception);
+      responseMap.put("errorCode", failure.code());
+      responseMap.put("error", failure.message());
+    }
+    return ResponseBuilder.mapToJson(responseMap);
+  }
+}
@@ -1,10 +1,18 @@
 package edu.brown.cs.student.main.server.csv;
 
 import edu.brown.cs.student.main.csv.CSVSearcher;
+import edu.brown.cs.student.main.csv.CSVSearcher.Candidate;
 import edu.brown.cs.student.main.csv.CSVSearcher.ColumnSpecified;
+import edu.brown.cs.student.main.csv.CSVSearcher.MatchMode;
+import edu.brown.cs.student.main.csv.CSVSearcher.ParallelScan;
+import edu.brown.cs.student.main.csv.CSVSearcher.Query;
+import edu.brown.cs.student.main.csv.Filter;
+import edu.brown.cs.student.main.csv.FilterPlan;
 import edu.brown.cs.student.main.csv.ParserState;
+import edu.brown.cs.student.main.csv.ParserState.Dataset;
 import edu.brown.cs.student.main.exception.FactoryFailureException;
 import edu.brown.cs.student.main.server.ResponseBuilder;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -14,12 +22,20 @@ import spark.Route;
 
 /**
  * SearchCSVHandler Handles requests to searchcsv endpoint. Takes in params: toSearch,
- * columnSpecifier, columnIdentifier, hasHeader and saves parse to ParserState.
+ * columnSpecifier, columnIdentifier, hasHeader and name, and searches that dataset in ParserState.
+ * An optional match param makes toSearch match cells that start with it (prefix), contain it
+ * (contains), equal it ignoring case and spacing (normalized) or come within a few typos of it
+ * (fuzzy, with an optional maxDistance) instead of equal it (exact, the default). A fuzzy response
+ * also lists the close cell texts it found, best first. Instead of toSearch and a column, a request
+ * can give a filter expression (see Filter), such as "State = RI AND Income &gt; 50000"; the
+ * response then includes the plan used to evaluate it.
  */
 public class SearchCSVHandler implements Route {
+  /** The largest maxDistance a request may ask for; past it nearly every short value matches */
+  private static final int MAX_DISTANCE = 3;
+
   private final ParserState parserState;
-  private ColumnSpecified columnSpecifier;
-  private List<String> columnHeaders;
+  private final ParallelScan parallelScan;
 
   /**
    * SearchCSVHandler constructor saves ParserState
@@ -27,11 +43,24 @@ public class SearchCSVHandler implements Route {
    * @param parserState is the parser for the server
    */
   public SearchCSVHandler(ParserState parserState) {
+    this(parserState, null);
+  }
+
+  /**
+   * SearchCSVHandler constructor saves ParserState and how to split large scans
+   *
+   * @param parserState is the parser for the server
+   * @param parallelScan splits scans of large datasets across threads, or null to scan on the
+   *     request's thread
+   */
+  public SearchCSVHandler(ParserState parserState, ParallelScan parallelScan) {
     this.parserState = parserState;
+    this.parallelScan = parallelScan;
   }
 
   /**
-   * undefinedHandling determines whether there is an issue with the inputs to SearchCSVHandler
+   * undefinedHandling determines whether there is an issue with the inputs to SearchCSVHandler. It
+   * only reads its arguments, so concurrent requests can't affect each other.
    *
    * @param toSearch - the value being searched for
    * @param columnSpecifierString - the specification for column
@@ -39,7 +68,7 @@ public class SearchCSVHandler implements Route {
    * @param headerParam - weather csv has headers
    * @return the status code depending on whether there's an issue with defined/undefined inputs
    */
-  private StatusCode undefinedHandling(
+  private static StatusCode undefinedHandling(
       String toSearch, String columnSpecifierString, String columnIdentifier, String headerParam) {
     if (toSearch == null) {
       return new StatusCode(400, "No search value provided.");
@@ -57,16 +86,13 @@ public class SearchCSVHandler implements Route {
       return new StatusCode(400, "hasHeaders must be true for columnSpecifier to be name.");
     }
     if (columnSpecifierString == null) {
-      if (columnIdentifier == null) {
-        this.columnSpecifier = ColumnSpecified.UNSPECIFIED;
-      } else {
+      if (columnIdentifier != null) {
         return new StatusCode(
             400,
             "Column identifier provided, "
                 + "but no column specifier. You must provide a column specifier ('index' or 'name')");
       }
     } else if (columnSpecifierString.equals("index")) {
-      this.columnSpecifier = ColumnSpecified.INDEX;
       if (columnIdentifier == null) {
         return new StatusCode(
             400,
@@ -75,7 +101,6 @@ public class SearchCSVHandler implements Route {
                 + "set a column identifier ");
       }
     } else if (columnSpecifierString.equals("name")) {
-      this.columnSpecifier = ColumnSpecified.NAME;
       if (columnIdentifier == null) {
         return new StatusCode(
             400,
@@ -84,7 +109,6 @@ public class SearchCSVHandler implements Route {
                 + "set a column identifier ");
       }
     } else {
-      this.columnSpecifier = ColumnSpecified.UNSPECIFIED;
       if (columnIdentifier != null) {
         return new StatusCode(
             400,
@@ -96,10 +120,99 @@ public class SearchCSVHandler implements Route {
     return new StatusCode(200, "");
   }
 
+  /**
+   * filterHandling checks the inputs of a filter request, which replaces the value and column of a
+   * search with a filter expression
+   *
+   * @param toSearch - the value being searched for, which must be absent
+   * @param columnSpecifierString - the specification for column, which must be absent
+   * @param columnIdentifier - the column being identified, which must be absent
+   * @param headerParam - weather csv has headers
+   * @param matchParam - how toSearch is matched, which must be absent
+   * @return the status code depending on whether there's an issue with the inputs
+   */
+  private static StatusCode filterHandling(
+      String toSearch,
+      String columnSpecifierString,
+      String columnIdentifier,
+      String headerParam,
+      String matchParam) {
+    if (toSearch != null
+        || columnSpecifierString != null
+        || columnIdentifier != null
+        || matchParam != null) {
+      return new StatusCode(
+          400,
+          "filter can't be combined with toSearch, columnSpecifier, columnIdentifier or match.");
+    }
+    if (headerParam == null) {
+      return new StatusCode(400, "No header value provided.");
+    }
+    if (!headerParam.equals("false") && !headerParam.equals("true")) {
+      return new StatusCode(400, "hasHeaders param must equal true or false.");
+    }
+    return new StatusCode(200, "");
+  }
+
+  /**
+   * matchMode maps the match param to how cells are matched
+   *
+   * @param matchParam - the match param, or null
+   * @return the mode, EXACT if matchParam is null, or null if it isn't a mode
+   */
+  private static MatchMode matchMode(String matchParam) {
+    if (matchParam == null) {
+      return MatchMode.EXACT;
+    }
+    return switch (matchParam) {
+      case "exact" -> MatchMode.EXACT;
+      case "prefix" -> MatchMode.PREFIX;
+      case "contains" -> MatchMode.CONTAINS;
+      case "normalized" -> MatchMode.NORMALIZED;
+      case "fuzzy" -> MatchMode.FUZZY;
+      default -> null;
+    };
+  }
+
+  /**
+   * maxDistance reads the maxDistance param of a fuzzy search
+   *
+   * @param maxDistanceParam - the maxDistance param, or null
+   * @return the distance, DEFAULT_MAX_DISTANCE if maxDistanceParam is null, or -1 if it isn't an
+   *     integer from 0 to MAX_DISTANCE
+   */
+  private static int maxDistance(String maxDistanceParam) {
+    if (maxDistanceParam == null) {
+      return CSVSearcher.DEFAULT_MAX_DISTANCE;
+    }
+    try {
+      int maxDistance = Integer.parseInt(maxDistanceParam);
+      return maxDistance >= 0 && maxDistance <= MAX_DISTANCE ? maxDistance : -1;
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  /**
+   * columnSpecified maps the columnSpecifier param to how the column identifier is read
+   *
+   * @param columnSpecifierString - the columnSpecifier param, already checked by undefinedHandling
+   * @return INDEX for "index", NAME for "name", UNSPECIFIED otherwise
+   */
+  private static ColumnSpecified columnSpecified(String columnSpecifierString) {
+    if ("index".equals(columnSpecifierString)) {
+      return ColumnSpecified.INDEX;
+    } else if ("name".equals(columnSpecifierString)) {
+      return ColumnSpecified.NAME;
+    }
+    return ColumnSpecified.UNSPECIFIED;
+  }
+
   /**
    * handle manages request and response to endpoint
    *
-   * @param request is the request to the endpoint. Includes searching params.
+   * @param request is the request to the endpoint. Includes searching params or a filter, and an
+   *     optional name of the dataset to search (the most recently loaded one by default).
    * @param response is the response from the endpoint
    * @return Object response to request
    */
@@ -110,33 +223,96 @@ public class SearchCSVHandler implements Route {
     String columnSpecifierString = request.queryParams("columnSpecifier");
     String columnIdentifier = request.queryParams("columnIdentifier");
     String headerParam = request.queryParams("hasHeaders");
+    String name = request.queryParams("name");
+    String filterParam = request.queryParams("filter");
+    String matchParam = request.queryParams("match");
+    String maxDistanceParam = request.queryParams("maxDistance");
     paramMap.put("toSearch", toSearch);
     paramMap.put("columnSpecifier", columnSpecifierString);
     paramMap.put("columnIdentifier", columnIdentifier);
     paramMap.put("hasHeaders", headerParam);
-    if (this.parserState.getParser() == null) {
-      return ResponseBuilder.buildException(
-          "error_bad_json",
-          400,
-          "File has yet to be loaded. " + "You must first use loadcsv.",
-          paramMap);
+    if (filterParam != null) {
+      paramMap.put("filter", filterParam);
     }
-    try {
+    if (matchParam != null) {
+      paramMap.put("match", matchParam);
+    }
+    if (maxDistanceParam != null) {
+      paramMap.put("maxDistance", maxDistanceParam);
+    }
+    if (name != null) {
+      paramMap.put("name", name);
+    }
+    // the dataset can't be released while it is being searched
+    try (Dataset dataset = this.parserState.acquire(name)) {
+      if (dataset == null) {
+        return ResponseBuilder.buildException(
+            "error_bad_json", 400, LoadCSVHandler.notLoadedMessage(name), paramMap);
+      }
       StatusCode status =
-          this.undefinedHandling(toSearch, columnSpecifierString, columnIdentifier, headerParam);
+          filterParam == null
+              ? undefinedHandling(toSearch, columnSpecifierString, columnIdentifier, headerParam)
+              : filterHandling(
+                  toSearch, columnSpecifierString, columnIdentifier, headerParam, matchParam);
+      MatchMode mode = matchMode(matchParam);
+      if (status.code() == 200 && mode == null) {
+        status =
+            new StatusCode(
+                400, "match param must equal exact, prefix, contains, normalized or fuzzy.");
+      }
+      int maxDistance = maxDistance(maxDistanceParam);
+      if (status.code() == 200 && maxDistanceParam != null && mode != MatchMode.FUZZY) {
+        status = new StatusCode(400, "maxDistance can only be given with match=fuzzy.");
+      } else if (status.code() == 200 && maxDistance < 0) {
+        status =
+            new StatusCode(
+                400, "maxDistance param must be an integer from 0 to " + MAX_DISTANCE + ".");
+      }
       if (status.code() != 200) {
         return ResponseBuilder.buildException(
             "error_bad_request", status.code(), status.message(), paramMap);
       }
-      boolean hasHeaders = headerParam.equals("true");
-      CSVSearcher searcher = new CSVSearcher(this.parserState.getParser(), hasHeaders);
-      if (hasHeaders) {
-        this.columnHeaders = searcher.getColumHeaders();
+      // the searcher is shared by every request on this version of the dataset; the query is ours
+      CSVSearcher searcher =
+          dataset.indexes().searcher(headerParam.equals("true"), this.parallelScan);
+      List<String[]> data;
+      try {
+        if (filterParam != null) {
+          FilterPlan plan = searcher.plan(Filter.parse(filterParam));
+          paramMap.put("plan", plan.describe());
+          data = new ArrayList<>();
+          for (int row : plan.rows()) {
+            data.add(dataset.table().getRow(row));
+          }
+        } else {
+          Query query =
+              new Query(toSearch, columnIdentifier, columnSpecified(columnSpecifierString), mode);
+          if (mode == MatchMode.FUZZY) {
+            List<Map<String, Object>> candidates = new ArrayList<>();
+            data = new ArrayList<>();
+            for (Candidate candidate : searcher.searchFuzzy(query, maxDistance)) {
+              candidates.add(
+                  Map.of(
+                      "value", candidate.value(),
+                      "distance", candidate.distance(),
+                      "rows", candidate.rows().size()));
+              data.addAll(candidate.rows());
+            }
+            paramMap.put("candidates", candidates);
+          } else {
+            data = searcher.search(query);
+          }
+        }
+      } catch (IllegalArgumentException e) {
+        if ("Column not found.".equals(e.getMessage()) && headerParam.equals("true")) {
+          paramMap.put("valid-columns", searcher.getColumHeaders());
+        }
+        throw e;
       }
       Map<String, Object> responseMap = new HashMap<>();
       responseMap.put("code", 200);
       responseMap.put("result", "success");
-      responseMap.put("data", searcher.search(toSearch, columnIdentifier, this.columnSpecifier));
+      responseMap.put("data", data);
       for (String key : paramMap.keySet()) {
         responseMap.put(key, paramMap.get(key));
       }
@@ -145,9 +321,6 @@ public class SearchCSVHandler implements Route {
       return ResponseBuilder.buildException(
           "error_datasource", 400, "File has inconsistent number of entries in columns.", paramMap);
     } catch (IllegalArgumentException e) {
-      if (e.getMessage().equals("Column not found.")) {
-        paramMap.put("valid-columns", this.columnHeaders);
-      }
       return ResponseBuilder.buildException("error_bad_request", 400, e.getMessage(), paramMap);
     }
   }
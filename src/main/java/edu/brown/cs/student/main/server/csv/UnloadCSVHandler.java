@@ -9,8 +9,8 @@ import spark.Response;
 import spark.Route;
 
 /**
- * LoadCSVHandler Handles requests to loadcsv endpoint. Takes in params: filepath and saves parse to
- * ParserState.
+ * UnloadCSVHandler Handles requests to unloadcsv endpoint. Takes in an optional name param and
+ * removes that dataset from ParserState, releasing its memory.
  */
 public class UnloadCSVHandler implements Route {
   private final ParserState parserState;
@@ -27,14 +27,20 @@ public class UnloadCSVHandler implements Route {
   /**
    * handle manages request and response to endpoint
    *
-   * @param request is the request to the endpoint. Includes filepath parameter which must be
-   *     defined.
+   * @param request is the request to the endpoint. Includes an optional name parameter; the most
+   *     recently loaded dataset is unloaded without one.
    * @param response is the response from the endpoint
    * @return Object response to request
    */
   @Override
   public Object handle(Request request, Response response) {
-    this.parserState.setParser(null);
+    String name = request.queryParams("name");
+    if (!this.parserState.remove(name) && name != null) {
+      Map<String, Object> paramMap = new HashMap<>();
+      paramMap.put("name", name);
+      return ResponseBuilder.buildException(
+          "error_bad_request", 400, LoadCSVHandler.notLoadedMessage(name), paramMap);
+    }
     // create response
     Map<String, Object> responseMap = new HashMap<>();
     responseMap.put("result", "success");
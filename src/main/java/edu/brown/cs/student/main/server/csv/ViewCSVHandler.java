@@ -1,6 +1,7 @@
 package edu.brown.cs.student.main.server.csv;
 
 import edu.brown.cs.student.main.csv.ParserState;
+import edu.brown.cs.student.main.csv.ParserState.Dataset;
 import edu.brown.cs.student.main.server.ResponseBuilder;
 import java.util.HashMap;
 import java.util.Map;
@@ -9,8 +10,8 @@ import spark.Response;
 import spark.Route;
 
 /**
- * ViewCSVHandler Handles requests to viewcsv endpoint. Takes in no params and saves parse to
- * ParserState.
+ * ViewCSVHandler Handles requests to viewcsv endpoint. Takes in an optional name param and returns
+ * that dataset from ParserState.
  */
 public class ViewCSVHandler implements Route {
   private final ParserState parserState;
@@ -27,24 +28,27 @@ public class ViewCSVHandler implements Route {
   /**
    * handle manages request and response to endpoint
    *
-   * @param request is the request to the endpoint
+   * @param request is the request to the endpoint. Includes an optional name parameter; the most
+   *     recently loaded dataset is viewed without one.
    * @param response is the response from the endpoint
    * @return Object response to request
    */
   @Override
   public Object handle(Request request, Response response) {
-    if (this.parserState.getParser() == null) {
-      return ResponseBuilder.buildException(
-          "error_bad_json",
-          400,
-          "File has yet to be loaded. " + "You must first use loadcsv.",
-          new HashMap<>());
+    String name = request.queryParams("name");
+    // the dataset can't be released while it is being written out
+    try (Dataset dataset = this.parserState.acquire(name)) {
+      if (dataset == null) {
+        Map<String, Object> paramMap = new HashMap<>();
+        paramMap.put("name", name);
+        return ResponseBuilder.buildException(
+            "error_bad_json", 400, LoadCSVHandler.notLoadedMessage(name), paramMap);
+      }
+      // create response
+      Map<String, Object> responseMap = new HashMap<>();
+      responseMap.put("code", 200);
+      responseMap.put("result", "success");
+      return ResponseBuilder.tableToJson(responseMap, "data", dataset.table());
     }
-    // create response
-    Map<String, Object> responseMap = new HashMap<>();
-    responseMap.put("code", 200);
-    responseMap.put("result", "success");
-    responseMap.put("data", this.parserState.getParser().getParsed());
-    return ResponseBuilder.mapToJson(responseMap);
   }
 }
@@ -2,16 +2,25 @@ package edu.brown.cs.student.api.csv;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import com.squareup.moshi.JsonAdapter;
 import com.squareup.moshi.Moshi;
 import com.squareup.moshi.Types;
+import edu.brown.cs.student.main.csv.LoadProgress;
 import edu.brown.cs.student.main.csv.ParserState;
+import edu.brown.cs.student.main.csv.ParserState.Publication;
 import edu.brown.cs.student.main.server.csv.LoadCSVHandler;
+import edu.brown.cs.student.main.server.csv.LoadJobs;
+import edu.brown.cs.student.main.server.csv.LoadJobs.LoadJob;
+import edu.brown.cs.student.main.server.csv.LoadStatusHandler;
 import java.io.IOException;
 import java.lang.reflect.Type;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -50,7 +59,9 @@ public class TestLoadCSVHandler {
   public void setup() {
     // Re-initialize parser, state, etc. for every test method
     ParserState parserState = new ParserState();
-    Spark.get("/loadcsv", new LoadCSVHandler(parserState)); // no need to mock
+    LoadJobs loadJobs = new LoadJobs();
+    Spark.get("/loadcsv", new LoadCSVHandler(parserState, loadJobs)); // no need to mock
+    Spark.get("/loadstatus", new LoadStatusHandler(loadJobs));
     Spark.awaitInitialization(); // don't continue until the server is listening
 
     Moshi moshi = new Moshi.Builder().build();
@@ -61,6 +72,7 @@ public class TestLoadCSVHandler {
   public void tearDown() {
     // Gracefully stop Spark listening on both endpoints
     Spark.unmap("/loadcsv");
+    Spark.unmap("/loadstatus");
     Spark.awaitStop(); // don't proceed until the server is stopped
   }
 
@@ -322,6 +334,50 @@ public class TestLoadCSVHandler {
     }
   }
 
+  @Test
+  public void testLoadStorageModes() throws IOException {
+    String filepath = "data/census/income_by_race.csv";
+    for (String storage : new String[] {"columnar", "mapped", "packed", "offheap"}) {
+      HttpURLConnection loadConnection =
+          this.tryRequest("loadcsv?filepath=" + filepath + "&storage=" + storage);
+      assertEquals(200, loadConnection.getResponseCode()); // successful *connection*
+      try (Buffer b = new Buffer().readFrom(loadConnection.getInputStream())) {
+        Map<String, Object> responseBody = this.adapter.fromJson(b);
+        assertNotNull(responseBody);
+        this.showDetailsIfError(responseBody);
+        assertEquals("success", responseBody.get("result"));
+
+        loadConnection.disconnect();
+      }
+    }
+
+    HttpURLConnection loadConnection =
+        this.tryRequest("loadcsv?filepath=" + filepath + "&storage=floppy");
+    assertEquals(200, loadConnection.getResponseCode()); // successful *connection*
+    try (Buffer b = new Buffer().readFrom(loadConnection.getInputStream())) {
+      Map<String, Object> responseBody = this.adapter.fromJson(b);
+      assertNotNull(responseBody);
+      assertEquals("error_bad_request", responseBody.get("result"));
+      assertEquals("floppy", responseBody.get("storage"));
+
+      loadConnection.disconnect();
+    }
+  }
+
+  @Test
+  public void testLoadCompressedCSV() throws IOException {
+    Map<String, Object> plain =
+        this.getJson("loadcsv?filepath=data/census/income_by_race.csv&name=plain");
+    Map<String, Object> compressed =
+        this.getJson("loadcsv?filepath=data/census/income_by_race.csv.gz&name=compressed");
+    this.showDetailsIfError(compressed);
+    assertEquals("success", compressed.get("result"));
+    assertEquals(plain.get("bytes"), compressed.get("bytes"));
+
+    Map<String, Object> notCSV = this.getJson("loadcsv?filepath=data/menu.json.gz");
+    assertEquals("error_datasource", notCSV.get("result"));
+  }
+
   /**
    * Helper to make working with a large test suite easier: if an error, print more info.
    *
@@ -332,4 +388,136 @@ public class TestLoadCSVHandler {
       System.out.println(body);
     }
   }
+
+  /**
+   * Helper to send a request and read its JSON response
+   *
+   * @param apiCall the call string, including endpoint
+   * @return the parsed response body
+   * @throws IOException if the connection fails for some reason
+   */
+  private Map<String, Object> getJson(String apiCall) throws IOException {
+    HttpURLConnection connection = this.tryRequest(apiCall);
+    assertEquals(200, connection.getResponseCode()); // successful *connection*
+    try (Buffer b = new Buffer().readFrom(connection.getInputStream())) {
+      Map<String, Object> responseBody = this.adapter.fromJson(b);
+      assertNotNull(responseBody);
+      return responseBody;
+    } finally {
+      connection.disconnect();
+    }
+  }
+
+  /**
+   * Helper to poll loadstatus until a job finishes
+   *
+   * @param job the job id
+   * @return the final loadstatus response
+   * @throws IOException if the connection fails for some reason
+   * @throws InterruptedException if interrupted while waiting
+   */
+  private Map<String, Object> awaitJob(String job) throws IOException, InterruptedException {
+    for (int i = 0; i < 200; i++) {
+      Map<String, Object> status = this.getJson("loadstatus?job=" + job);
+      if (status.get("stage").equals("done") || status.get("stage").equals("failed")) {
+        return status;
+      }
+      Thread.sleep(50);
+    }
+    throw new AssertionError("load job " + job + " did not finish");
+  }
+
+  @Test
+  public void testLoadAsync() throws IOException, InterruptedException {
+    String filepath = "data/census/income_by_race.csv";
+    Map<String, Object> responseBody = this.getJson("loadcsv?filepath=" + filepath + "&async=true");
+    this.showDetailsIfError(responseBody);
+    assertEquals("success", responseBody.get("result"));
+    assertEquals(202.0, responseBody.get("code"));
+    assertNotNull(responseBody.get("job"));
+
+    Map<String, Object> status = this.awaitJob((String) responseBody.get("job"));
+    assertEquals("done", status.get("stage"));
+    assertEquals(filepath, status.get("name"));
+    assertEquals(status.get("totalBytes"), status.get("bytesRead"));
+    assertEquals(324.0, status.get("rowsParsed"));
+    assertNotNull(status.get("version"));
+  }
+
+  @Test
+  public void testLoadAsyncFailure() throws IOException, InterruptedException {
+    Map<String, Object> responseBody =
+        this.getJson("loadcsv?filepath=data/census/missing.csv&async=true");
+    assertEquals("success", responseBody.get("result"));
+
+    Map<String, Object> status = this.awaitJob((String) responseBody.get("job"));
+    assertEquals("failed", status.get("stage"));
+    assertEquals(404.0, status.get("errorCode"));
+    assertEquals("File not found.", status.get("error"));
+
+    responseBody = this.getJson("loadstatus?job=nope");
+    assertEquals("error_bad_request", responseBody.get("result"));
+    responseBody = this.getJson("loadcsv?filepath=data/census/missing.csv&async=maybe");
+    assertEquals("error_bad_request", responseBody.get("result"));
+  }
+
+  @Test
+  public void testFinishedJobsExpire() throws InterruptedException {
+    // at most two finished jobs are kept
+    LoadJobs loadJobs = new LoadJobs(1, 4, 2, 60_000);
+    List<LoadJob> jobs = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      jobs.add(
+          loadJobs.submit(
+              "name",
+              "filepath",
+              new LoadProgress(),
+              () -> {
+                throw new IOException("failed");
+              }));
+    }
+    for (int i = 0; i < 200 && loadJobs.getJob(jobs.get(0).id()) != null; i++) {
+      Thread.sleep(10);
+    }
+    assertNull(loadJobs.getJob(jobs.get(0).id()));
+    assertNull(loadJobs.getFailure(jobs.get(0).id()));
+    assertNotNull(loadJobs.getJob(jobs.get(2).id()));
+    assertNotNull(loadJobs.getFailure(jobs.get(2).id()));
+
+    // and none for longer than no time at all
+    loadJobs = new LoadJobs(1, 4, 2, 0);
+    LoadJob job = loadJobs.submit("name", "filepath", new LoadProgress(), () -> null);
+    for (int i = 0; i < 200 && loadJobs.getJob(job.id()) != null; i++) {
+      Thread.sleep(10);
+    }
+    assertNull(loadJobs.getJob(job.id()));
+  }
+
+  @Test
+  public void testJobFailsOnError() throws InterruptedException {
+    LoadJobs loadJobs = new LoadJobs(1, 4);
+    LoadProgress progress = new LoadProgress();
+    LoadJob job =
+        loadJobs.submit(
+            "name",
+            "filepath",
+            progress,
+            () -> {
+              throw new OutOfMemoryError("Java heap space");
+            });
+    for (int i = 0; i < 200 && progress.getStage() != LoadProgress.Stage.FAILED; i++) {
+      Thread.sleep(10);
+    }
+    assertEquals(LoadProgress.Stage.FAILED, progress.getStage());
+    assertTrue(loadJobs.getFailure(job.id()) instanceof OutOfMemoryError);
+
+    // the loader thread survives it
+    LoadJob next =
+        loadJobs.submit(
+            "name", "filepath", new LoadProgress(), () -> new Publication(1, 0, List.of()));
+    for (int i = 0; i < 200 && next.progress().getStage() != LoadProgress.Stage.DONE; i++) {
+      Thread.sleep(10);
+    }
+    assertEquals(LoadProgress.Stage.DONE, next.progress().getStage());
+  }
 }
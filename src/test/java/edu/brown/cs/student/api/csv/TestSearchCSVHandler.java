@@ -13,10 +13,15 @@ import java.io.IOException;
 import java.lang.reflect.Type;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import okio.Buffer;
@@ -705,6 +710,201 @@ public class TestSearchCSVHandler {
     }
   }
 
+  @Test
+  public void testSearchInvertedIndex() throws IOException {
+    String filepath = "data/census/dol_ri_earnings_disparity.csv";
+    HttpURLConnection plainLoad = this.tryRequest("loadcsv?filepath=" + filepath + "&name=plain");
+    assertEquals(200, plainLoad.getResponseCode());
+    HttpURLConnection indexedLoad =
+        this.tryRequest("loadcsv?filepath=" + filepath + "&name=indexed&index=true");
+    assertEquals(200, indexedLoad.getResponseCode());
+
+    try (Buffer b = new Buffer().readFrom(indexedLoad.getInputStream())) {
+      Map<String, Object> responseBody = this.adapter.fromJson(b);
+      assertNotNull(responseBody);
+      assertEquals(true, responseBody.get("indexed"));
+    }
+    for (String toSearch : new String[] {"RI", "%20$0.73%20", "White", "missing"}) {
+      String params = "toSearch=" + toSearch + "&hasHeaders=true&name=";
+      HttpURLConnection plain = this.tryRequest("searchcsv?" + params + "plain");
+      HttpURLConnection indexed = this.tryRequest("searchcsv?" + params + "indexed");
+      try (Buffer p = new Buffer().readFrom(plain.getInputStream());
+          Buffer i = new Buffer().readFrom(indexed.getInputStream())) {
+        Map<String, Object> plainBody = this.adapter.fromJson(p);
+        Map<String, Object> indexedBody = this.adapter.fromJson(i);
+        assertNotNull(plainBody);
+        assertNotNull(indexedBody);
+        assertEquals("success", indexedBody.get("result"));
+        assertEquals(plainBody.get("data"), indexedBody.get("data"));
+      }
+      plain.disconnect();
+      indexed.disconnect();
+    }
+    plainLoad.disconnect();
+    indexedLoad.disconnect();
+  }
+
+  /**
+   * Helper to send a search and read its JSON response
+   *
+   * @param params the query string after searchcsv?
+   * @return the response body
+   * @throws IOException if the request fails
+   */
+  private Map<String, Object> search(String params) throws IOException {
+    HttpURLConnection connection = this.tryRequest("searchcsv?" + params);
+    try (Buffer b = new Buffer().readFrom(connection.getInputStream())) {
+      return this.adapter.fromJson(b);
+    } finally {
+      connection.disconnect();
+    }
+  }
+
+  @Test
+  public void testConcurrentSearchesDontInterfere() throws Exception {
+    this.tryRequest("loadcsv?filepath=data/census/dol_ri_earnings_disparity.csv&name=earnings")
+        .getResponseCode();
+    this.tryRequest("loadcsv?filepath=data/stars/ten-star.csv&name=stars").getResponseCode();
+    // searches that differ in every parameter the handler used to keep between requests
+    List<String> queries =
+        List.of(
+            "name=earnings&hasHeaders=true&toSearch=RI&columnSpecifier=name&columnIdentifier=State",
+            "name=earnings&hasHeaders=true&toSearch=White",
+            "name=earnings&hasHeaders=false&toSearch=State&columnSpecifier=index&columnIdentifier=0",
+            "name=earnings&hasHeaders=true&toSearch=RI&columnSpecifier=name&columnIdentifier=Nope",
+            "name=stars&hasHeaders=true&toSearch=Sol&columnSpecifier=name&columnIdentifier=ProperName",
+            "name=stars&hasHeaders=false&toSearch=0",
+            "name=stars&hasHeaders=true&toSearch=0&columnSpecifier=index&columnIdentifier=4",
+            "name=stars&hasHeaders=true&toSearch=0&columnSpecifier=index&columnIdentifier=9");
+    List<Map<String, Object>> expected = new ArrayList<>();
+    for (String query : queries) {
+      expected.add(this.search(query));
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    List<Future<Void>> futures = new ArrayList<>();
+    for (int t = 0; t < 8; t++) {
+      int offset = t;
+      futures.add(
+          executor.submit(
+              () -> {
+                for (int i = 0; i < 40; i++) {
+                  int q = (i * 3 + offset) % queries.size();
+                  assertEquals(expected.get(q), this.search(queries.get(q)), queries.get(q));
+                }
+                return null;
+              }));
+    }
+    for (Future<Void> future : futures) {
+      future.get();
+    }
+    executor.shutdown();
+  }
+
+  @Test
+  public void testSearchFilter() throws IOException {
+    this.tryRequest("loadcsv?filepath=data/stars/ten-star.csv").getResponseCode();
+    String filter = URLEncoder.encode("ProperName = '' AND X > 40", StandardCharsets.UTF_8);
+
+    Map<String, Object> responseBody = this.search("hasHeaders=true&filter=" + filter);
+    assertNotNull(responseBody);
+    this.showDetailsIfError(responseBody);
+    assertEquals("success", responseBody.get("result"));
+    List<String> starIds = new ArrayList<>();
+    for (Object row : (List<?>) responseBody.get("data")) {
+      starIds.add((String) ((List<?>) row).get(0));
+    }
+    assertEquals(List.of("1", "2", "3"), starIds);
+    assertEquals("ProperName = '' AND X > 40", responseBody.get("filter"));
+    // three stars have X > 40, fewer than the four without a name, so the range goes first
+    assertEquals(
+        "AND('X' > 40 [range index: 3 rows], 'ProperName' = '' [index: 4 rows])",
+        responseBody.get("plan"));
+
+    // a filter replaces toSearch and the column params, and must parse
+    responseBody = this.search("hasHeaders=true&toSearch=Sol&filter=" + filter);
+    assertEquals("error_bad_request", responseBody.get("result"));
+    responseBody = this.search("hasHeaders=true&filter=" + URLEncoder.encode("X >", "UTF-8"));
+    assertEquals("error_bad_request", responseBody.get("result"));
+    assertEquals(
+        "Invalid filter: expected a value at position 3.", responseBody.get("description"));
+    responseBody = this.search("hasHeaders=true&filter=" + URLEncoder.encode("W = 1", "UTF-8"));
+    assertEquals("Column not found.", responseBody.get("description"));
+    assertEquals(List.of("StarID", "ProperName", "X", "Y", "Z"), responseBody.get("valid-columns"));
+  }
+
+  @Test
+  public void testSearchPrefixAndContains() throws IOException {
+    this.tryRequest("loadcsv?filepath=data/stars/ten-star.csv").getResponseCode();
+
+    Map<String, Object> responseBody =
+        this.search(
+            "hasHeaders=true&toSearch=Rigel&columnSpecifier=name&columnIdentifier=ProperName"
+                + "&match=prefix");
+    assertNotNull(responseBody);
+    this.showDetailsIfError(responseBody);
+    assertEquals("success", responseBody.get("result"));
+    assertEquals("prefix", responseBody.get("match"));
+    assertEquals(2, ((List<?>) responseBody.get("data")).size());
+
+    responseBody = this.search("hasHeaders=true&toSearch=Centauri&match=contains");
+    assertEquals(1, ((List<?>) responseBody.get("data")).size());
+    responseBody = this.search("hasHeaders=true&toSearch=Centauri&match=exact");
+    assertEquals(0, ((List<?>) responseBody.get("data")).size());
+
+    responseBody = this.search("hasHeaders=true&toSearch=Sol&match=regex");
+    assertEquals("error_bad_request", responseBody.get("result"));
+    assertEquals(
+        "match param must equal exact, prefix, contains, normalized or fuzzy.",
+        responseBody.get("description"));
+  }
+
+  @Test
+  public void testSearchNormalized() throws IOException {
+    this.tryRequest("loadcsv?filepath=data/census/dol_ri_earnings_disparity.csv").getResponseCode();
+    String params = "hasHeaders=true&columnSpecifier=name&columnIdentifier=Data%20Type&toSearch=";
+
+    Map<String, Object> responseBody = this.search(params + "%20hispanic/LATINO&match=normalized");
+    assertNotNull(responseBody);
+    this.showDetailsIfError(responseBody);
+    assertEquals("success", responseBody.get("result"));
+    assertEquals(1, ((List<?>) responseBody.get("data")).size());
+    responseBody = this.search(params + "%20hispanic/LATINO");
+    assertEquals(0, ((List<?>) responseBody.get("data")).size());
+  }
+
+  @Test
+  public void testSearchFuzzy() throws IOException {
+    this.tryRequest("loadcsv?filepath=data/stars/ten-star.csv").getResponseCode();
+    String params =
+        "hasHeaders=true&columnSpecifier=name&columnIdentifier=ProperName&match=fuzzy&toSearch=";
+
+    Map<String, Object> responseBody = this.search(params + "rigel%20kentaurus%20c");
+    assertNotNull(responseBody);
+    this.showDetailsIfError(responseBody);
+    assertEquals("success", responseBody.get("result"));
+    assertEquals(2, ((List<?>) responseBody.get("data")).size());
+    assertEquals(
+        List.of(
+            Map.of("value", "rigel kentaurus a", "distance", 1.0, "rows", 1.0),
+            Map.of("value", "rigel kentaurus b", "distance", 1.0, "rows", 1.0)),
+        responseBody.get("candidates"));
+
+    // an accent is one substitution away
+    responseBody = this.search(params + "S%C3%B3l");
+    assertEquals(List.of(List.of("0", "Sol", "0", "0", "0")), responseBody.get("data"));
+    responseBody = this.search(params + "S%C3%B3l&maxDistance=0");
+    assertEquals(0, ((List<?>) responseBody.get("data")).size());
+
+    responseBody = this.search(params + "Sol&maxDistance=4");
+    assertEquals("error_bad_request", responseBody.get("result"));
+    assertEquals(
+        "maxDistance param must be an integer from 0 to 3.", responseBody.get("description"));
+    responseBody = this.search("hasHeaders=true&toSearch=Sol&match=prefix&maxDistance=1");
+    assertEquals(
+        "maxDistance can only be given with match=fuzzy.", responseBody.get("description"));
+  }
+
   /**
    * Helper to make working with a large test suite easier: if an error, print more info.
    *
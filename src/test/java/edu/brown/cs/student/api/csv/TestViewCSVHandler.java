@@ -131,6 +131,81 @@ public class TestViewCSVHandler {
     viewConnection.disconnect();
   }
 
+  @Test
+  public void testViewStorageModesMatch() throws IOException {
+    String filepath = "data/rhode_island_income.csv";
+    Object expected = null;
+    for (String storage : new String[] {"columnar", "mapped", "packed", "offheap"}) {
+      HttpURLConnection loadConnection =
+          this.tryRequest("loadcsv?filepath=" + filepath + "&storage=" + storage);
+      assertEquals(200, loadConnection.getResponseCode()); // successful *connection*
+      HttpURLConnection viewConnection = this.tryRequest("viewcsv");
+      assertEquals(200, viewConnection.getResponseCode()); // successful *connection*
+      try (Buffer b = new Buffer().readFrom(viewConnection.getInputStream())) {
+        Map<String, Object> responseBody = this.adapter.fromJson(b);
+        assertNotNull(responseBody);
+        assertEquals("success", responseBody.get("result"));
+        if (expected == null) {
+          expected = responseBody.get("data");
+          // quoted cells keep their quotes
+          assertEquals(
+              Arrays.asList("Barrington", "\"130,455.00\"", "\"154,441.00\"", "\"69,917.00\""),
+              ((List<?>) expected).get(2));
+        }
+        assertEquals(expected, responseBody.get("data"));
+      }
+      loadConnection.disconnect();
+      viewConnection.disconnect();
+    }
+  }
+
+  @Test
+  public void testViewNamedDatasets() throws IOException {
+    HttpURLConnection loadConnection =
+        this.tryRequest("loadcsv?filepath=data/stars/ten-star.csv&name=stars");
+    assertEquals(200, loadConnection.getResponseCode()); // successful *connection*
+    loadConnection.disconnect();
+    loadConnection = this.tryRequest("loadcsv?filepath=data/rhode_island_income.csv");
+    assertEquals(200, loadConnection.getResponseCode()); // successful *connection*
+    loadConnection.disconnect();
+
+    HttpURLConnection viewConnection = this.tryRequest("viewcsv?name=stars");
+    try (Buffer b = new Buffer().readFrom(viewConnection.getInputStream())) {
+      Map<String, Object> responseBody = this.adapter.fromJson(b);
+      assertNotNull(responseBody);
+      assertEquals("success", responseBody.get("result"));
+      assertEquals(11, ((List<?>) responseBody.get("data")).size());
+    }
+    viewConnection.disconnect();
+
+    // without a name, the most recently loaded dataset, named by its filepath
+    for (String query : new String[] {"viewcsv", "viewcsv?name=data/rhode_island_income.csv"}) {
+      viewConnection = this.tryRequest(query);
+      try (Buffer b = new Buffer().readFrom(viewConnection.getInputStream())) {
+        Map<String, Object> responseBody = this.adapter.fromJson(b);
+        assertNotNull(responseBody);
+        assertEquals("success", responseBody.get("result"));
+        assertEquals(
+            Arrays.asList(
+                "City/Town",
+                "Median Household Income ",
+                "Median Family Income",
+                "Per Capita Income"),
+            ((List<?>) responseBody.get("data")).get(0));
+      }
+      viewConnection.disconnect();
+    }
+
+    viewConnection = this.tryRequest("viewcsv?name=planets");
+    try (Buffer b = new Buffer().readFrom(viewConnection.getInputStream())) {
+      Map<String, Object> responseBody = this.adapter.fromJson(b);
+      assertNotNull(responseBody);
+      assertEquals("error_bad_json", responseBody.get("result"));
+      assertEquals("planets", responseBody.get("name"));
+    }
+    viewConnection.disconnect();
+  }
+
   @Test
   public void testViewExtraParam() throws IOException {
     String filepath = "data/stars/ten-star.csv";
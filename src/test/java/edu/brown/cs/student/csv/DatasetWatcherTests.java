@@ -0,0 +1,230 @@
+package edu.brown.cs.student.csv;
+
+import edu.brown.cs.student.main.csv.CSVLoader;
+import edu.brown.cs.student.main.csv.CSVTable;
+import edu.brown.cs.student.main.csv.DatasetWatcher;
+import edu.brown.cs.student.main.csv.LoadProgress;
+import edu.brown.cs.student.main.csv.ParserState;
+import edu.brown.cs.student.main.csv.ParserState.Dataset;
+import edu.brown.cs.student.main.csv.ParserState.Publication;
+import edu.brown.cs.student.main.csv.RowTable;
+import edu.brown.cs.student.main.csv.SegmentedTable;
+import edu.brown.cs.student.main.csv.TableStorage;
+import edu.brown.cs.student.main.exception.FactoryFailureException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.testng.Assert;
+
+public class DatasetWatcherTests {
+
+  /**
+   * Loads a file, publishes it and starts watching it
+   *
+   * @param state - the catalog
+   * @param watcher - the watcher
+   * @param file - the file to load
+   * @param storage - how to store it
+   */
+  private void loadWatched(
+      ParserState state, DatasetWatcher watcher, Path file, TableStorage storage)
+      throws IOException, FactoryFailureException {
+    LoadProgress progress = new LoadProgress();
+    CSVTable table = CSVLoader.load(file, storage, false, progress);
+    Publication publication = state.put("data", SegmentedTable.of(table));
+    Assert.assertEquals(progress.getLoadedBytes(), Files.size(file));
+    long loadedBytes = progress.getLoadedBytes();
+    watcher.watch(
+        "data",
+        file,
+        storage,
+        publication.version(),
+        loadedBytes,
+        DatasetWatcher.endsWithBreak(file, loadedBytes));
+  }
+
+  private void append(Path file, String text) throws IOException {
+    Files.writeString(file, text, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+  }
+
+  @Test
+  public void testSegmentedTableAppend() {
+    SegmentedTable first =
+        SegmentedTable.of(new RowTable(List.of(new String[] {"a", "1"}, new String[] {"b", "2"})));
+    SegmentedTable second =
+        first.append(new RowTable(List.of(new String[] {"c", "3"}, new String[] {"d", "4"})));
+
+    Assert.assertEquals(first.numRows(), 2);
+    Assert.assertEquals(second.numRows(), 4);
+    Assert.assertEquals(second.getSegmentCount(), 2);
+    Assert.assertEquals(second.get(1, 0), "b");
+    Assert.assertEquals(second.get(2, 0), "c");
+    Assert.assertEquals(second.view().moveTo(3).get(1), "4");
+    Assert.assertTrue(second.equalTo(0, "c").test(2));
+    Assert.assertFalse(second.equalTo(0, "c").test(0));
+    Assert.assertThrows(
+        IllegalArgumentException.class,
+        () -> second.append(new RowTable(List.<String[]>of(new String[] {"e"}))));
+  }
+
+  @Test
+  public void testSegmentedTableMergesAppends() {
+    SegmentedTable table =
+        SegmentedTable.of(new RowTable(Collections.singletonList(new String[] {"0"})));
+    List<SegmentedTable> versions = new ArrayList<>();
+    for (int i = 1; i <= 100; i++) {
+      versions.add(table);
+      table =
+          table.append(
+              new RowTable(Collections.singletonList(new String[] {String.valueOf(i)})),
+              merged -> CSVLoader.convert(merged, TableStorage.PACKED));
+    }
+    Assert.assertEquals(table.numRows(), 101);
+    // the first segment, then at most one per bit of the 100 appended rows
+    Assert.assertTrue(table.getSegmentCount() <= 8, "segments: " + table.getSegmentCount());
+    for (int row = 0; row <= 100; row++) {
+      Assert.assertEquals(table.get(row, 0), String.valueOf(row));
+    }
+    // earlier versions still read their own rows after later ones merged past them
+    Assert.assertEquals(versions.get(50).numRows(), 51);
+    Assert.assertEquals(versions.get(50).get(50, 0), "50");
+  }
+
+  @Test
+  public void testAppendedRowsPublished(@TempDir Path dir)
+      throws IOException, FactoryFailureException {
+    Path file = dir.resolve("data.csv");
+    Files.writeString(file, "name,count\nA,1\n");
+    ParserState state = new ParserState();
+    DatasetWatcher watcher = new DatasetWatcher(state);
+    this.loadWatched(state, watcher, file, TableStorage.COLUMNAR);
+    long version = state.getVersion("data");
+
+    // nothing changed
+    watcher.pollAll();
+    Assert.assertEquals(state.getVersion("data"), version);
+
+    this.append(file, "B,2\r\nC,3\n");
+    watcher.pollAll();
+    Assert.assertTrue(state.getVersion("data") > version);
+    try (Dataset dataset = state.acquire("data")) {
+      CSVTable table = dataset.table();
+      Assert.assertEquals(table.numRows(), 4);
+      Assert.assertEquals(table.get(2, 0), "B");
+      Assert.assertEquals(table.get(3, 1), "3");
+      Assert.assertEquals(((SegmentedTable) table).getSegmentCount(), 2);
+    }
+    Assert.assertTrue(watcher.isWatching("data"));
+  }
+
+  @Test
+  public void testPartialRecordWaits(@TempDir Path dir)
+      throws IOException, FactoryFailureException {
+    Path file = dir.resolve("data.csv");
+    Files.writeString(file, "name,count\nA,1\n");
+    ParserState state = new ParserState();
+    DatasetWatcher watcher = new DatasetWatcher(state);
+    this.loadWatched(state, watcher, file, TableStorage.MAPPED);
+    long version = state.getVersion("data");
+
+    this.append(file, "B,");
+    watcher.pollAll();
+    Assert.assertEquals(state.getVersion("data"), version);
+
+    this.append(file, "2\nC,");
+    watcher.pollAll();
+    try (Dataset dataset = state.acquire("data")) {
+      Assert.assertEquals(dataset.table().numRows(), 3);
+      Assert.assertEquals(dataset.table().get(2, 1), "2");
+    }
+
+    this.append(file, "3\n");
+    watcher.pollAll();
+    try (Dataset dataset = state.acquire("data")) {
+      Assert.assertEquals(dataset.table().numRows(), 4);
+      Assert.assertEquals(dataset.table().get(3, 0), "C");
+    }
+  }
+
+  @Test
+  public void testUnterminatedLastRecord(@TempDir Path dir)
+      throws IOException, FactoryFailureException {
+    Path file = dir.resolve("data.csv");
+    Files.writeString(file, "name,count\nA,1");
+    ParserState state = new ParserState();
+    DatasetWatcher watcher = new DatasetWatcher(state);
+    this.loadWatched(state, watcher, file, TableStorage.PACKED);
+
+    // the last record was complete after all
+    this.append(file, "\nB,2\n");
+    watcher.pollAll();
+    try (Dataset dataset = state.acquire("data")) {
+      Assert.assertEquals(dataset.table().numRows(), 3);
+      Assert.assertEquals(dataset.table().get(1, 1), "1");
+      Assert.assertEquals(dataset.table().get(2, 0), "B");
+    }
+
+    // the file was rewritten shorter, so it is loaded again
+    Files.writeString(file, "name,count\nZ,9\n");
+    watcher.pollAll();
+    try (Dataset dataset = state.acquire("data")) {
+      Assert.assertEquals(dataset.table().numRows(), 2);
+      Assert.assertEquals(dataset.table().get(1, 0), "Z");
+    }
+
+    this.append(file, "Y,8\n");
+    watcher.pollAll();
+    try (Dataset dataset = state.acquire("data")) {
+      Assert.assertEquals(dataset.table().numRows(), 3);
+      Assert.assertEquals(dataset.table().get(2, 1), "8");
+    }
+    Assert.assertTrue(watcher.isWatching("data"));
+  }
+
+  @Test
+  public void testMismatchedRowsStopWatching(@TempDir Path dir)
+      throws IOException, FactoryFailureException {
+    Path file = dir.resolve("data.csv");
+    Files.writeString(file, "name,count\nA,1\n");
+    ParserState state = new ParserState();
+    DatasetWatcher watcher = new DatasetWatcher(state);
+    this.loadWatched(state, watcher, file, TableStorage.OFF_HEAP);
+    long version = state.getVersion("data");
+
+    this.append(file, "B,2,extra\n");
+    watcher.pollAll();
+    Assert.assertEquals(state.getVersion("data"), version);
+    Assert.assertFalse(watcher.isWatching("data"));
+    Assert.assertNotNull(watcher.getFailure("data"));
+    try (Dataset dataset = state.acquire("data")) {
+      Assert.assertEquals(dataset.table().numRows(), 2);
+      Assert.assertEquals(dataset.table().get(1, 0), "A");
+    }
+  }
+
+  @Test
+  public void testReplacedDatasetNotWatched(@TempDir Path dir)
+      throws IOException, FactoryFailureException {
+    Path file = dir.resolve("data.csv");
+    Files.writeString(file, "name,count\nA,1\n");
+    ParserState state = new ParserState();
+    DatasetWatcher watcher = new DatasetWatcher(state);
+    this.loadWatched(state, watcher, file, TableStorage.COLUMNAR);
+
+    state.put("data", new RowTable(List.<String[]>of(new String[] {"other"})));
+    this.append(file, "B,2\n");
+    watcher.pollAll();
+    Assert.assertFalse(watcher.isWatching("data"));
+    Assert.assertNull(watcher.getFailure("data"));
+    try (Dataset dataset = state.acquire("data")) {
+      Assert.assertEquals(dataset.table().get(0, 0), "other");
+    }
+  }
+}
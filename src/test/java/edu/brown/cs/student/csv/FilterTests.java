@@ -0,0 +1,281 @@
+package edu.brown.cs.student.csv;
+
+import edu.brown.cs.student.main.csv.CSVParser;
+import edu.brown.cs.student.main.csv.CSVSearcher;
+import edu.brown.cs.student.main.csv.CSVTable;
+import edu.brown.cs.student.main.csv.ColumnarTable;
+import edu.brown.cs.student.main.csv.CreatorFromRow;
+import edu.brown.cs.student.main.csv.Filter;
+import edu.brown.cs.student.main.csv.Filter.Operator;
+import edu.brown.cs.student.main.csv.FilterPlan;
+import edu.brown.cs.student.main.csv.RangeIndex;
+import edu.brown.cs.student.main.csv.RowTable;
+import edu.brown.cs.student.main.csv.SearchIndexes;
+import edu.brown.cs.student.main.exception.FactoryFailureException;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Predicate;
+import org.junit.jupiter.api.Test;
+import org.testng.Assert;
+
+public class FilterTests {
+
+  private final CreatorFromRow<String[]> creator = row -> row.toArray(new String[0]);
+
+  private static Filter eq(String column, String value) {
+    return new Filter.Comparison(column, Operator.EQUAL, value);
+  }
+
+  @Test
+  public void testParsePrecedence() {
+    // NOT binds tighter than AND, which binds tighter than OR
+    Assert.assertEquals(
+        Filter.parse("a = 1 OR b = 2 AND NOT c = 3"),
+        new Filter.Or(
+            List.of(
+                eq("a", "1"),
+                new Filter.And(List.of(eq("b", "2"), new Filter.Not(eq("c", "3")))))));
+    Assert.assertEquals(
+        Filter.parse("(a = 1 or b = 2) and c != 3"),
+        new Filter.And(
+            List.of(
+                new Filter.Or(List.of(eq("a", "1"), eq("b", "2"))),
+                new Filter.Comparison("c", Operator.NOT_EQUAL, "3"))));
+    Assert.assertEquals(
+        Filter.parse("x>=1.5 AND y<-2"),
+        new Filter.And(
+            List.of(
+                new Filter.Comparison("x", Operator.GREATER_OR_EQUAL, "1.5"),
+                new Filter.Comparison("y", Operator.LESS, "-2"))));
+  }
+
+  @Test
+  public void testParseQuotesAndIn() {
+    Assert.assertEquals(
+        Filter.parse("'Data Type' IN ('White', 'it''s', AND2)"),
+        new Filter.In("Data Type", List.of("White", "it's", "AND2")));
+    // quoted keywords are plain text
+    Assert.assertEquals(Filter.parse("'and' = 'OR'"), eq("and", "OR"));
+    Assert.assertEquals(Filter.parse("a = ''"), eq("a", ""));
+  }
+
+  @Test
+  public void testParseErrors() {
+    String[][] cases = {
+      {"", "expected a column at position 0"},
+      {"a", "expected =, !=, <, <=, >, >=, IN or BETWEEN at position 1"},
+      {"a BETWEEN 1 2", "expected AND in BETWEEN at position 12"},
+      {"a BETWEEN 1 AND x", "'BETWEEN' needs a number at position 16"},
+      {"a = 'b", "unterminated quote at position 4"},
+      {"a < b", "'<' needs a number at position 4"},
+      {"(a = b", "expected ')' at position 6"},
+      {"a = b c = d", "expected AND, OR or the end of the filter at position 6"},
+      {"a IN (b c)", "expected ',' or ')' at position 8"},
+      {"a = AND", "expected a value at position 4"},
+    };
+    for (String[] test : cases) {
+      IllegalArgumentException e =
+          Assert.expectThrows(IllegalArgumentException.class, () -> Filter.parse(test[0]));
+      Assert.assertEquals(e.getMessage(), "Invalid filter: " + test[1] + ".");
+    }
+  }
+
+  @Test
+  public void testParseDepthLimit() {
+    Assert.assertEquals(Filter.parse("(".repeat(64) + "a = 1" + ")".repeat(64)), eq("a", "1"));
+    Assert.assertNotNull(
+        Filter.parse("NOT ".repeat(32) + "(".repeat(32) + "a = 1" + ")".repeat(32)));
+    // groups side by side don't add up
+    Assert.assertNotNull(Filter.parse("(a = 1) AND ".repeat(100) + "(NOT a = 1)"));
+    // deep enough to overflow the stack without the limit
+    for (String filter :
+        new String[] {
+          "(".repeat(2000) + "a = 1" + ")".repeat(2000), "NOT ".repeat(8000) + "a = 1"
+        }) {
+      IllegalArgumentException e =
+          Assert.expectThrows(IllegalArgumentException.class, () -> Filter.parse(filter));
+      Assert.assertEquals(e.getMessage(), "Filter nested too deeply.");
+    }
+  }
+
+  @Test
+  public void testFilterCensus() throws IOException, FactoryFailureException {
+    CSVParser<String[]> parser =
+        new CSVParser<>(new FileReader("data/census/dol_ri_earnings_disparity.csv"), this.creator);
+    CSVTable table = new RowTable(parser.getParsed());
+    CSVSearcher searcher = new CSVSearcher(table, true, new SearchIndexes(table));
+
+    List<String[]> rows = searcher.filter(Filter.parse("State = RI AND 3 > 20000"));
+    Assert.assertEquals(rows.size(), 3);
+    Assert.assertEquals(rows.get(0)[1], "White");
+    Assert.assertEquals(rows.get(1)[1], "Black");
+    Assert.assertEquals(rows.get(2)[1], "Hispanic/Latino");
+    Assert.assertEquals(
+        searcher.filter(Filter.parse("'Data Type' IN (Black, 'Asian-Pacific Islander')")).size(),
+        2);
+    // dollar amounts and thousands separators are read as numbers, percentages aren't
+    Assert.assertEquals(searcher.filter(Filter.parse("'Earnings Disparity' >= 1")).size(), 2);
+    Assert.assertEquals(
+        searcher.filter(Filter.parse("'Average Weekly Earnings' BETWEEN 700 AND 1060")).size(), 3);
+    Assert.assertTrue(searcher.filter(Filter.parse("'Employed Percent' > 0")).isEmpty());
+    // the header row never matches
+    Assert.assertTrue(searcher.filter(Filter.parse("State = State")).isEmpty());
+    IllegalArgumentException e =
+        Assert.expectThrows(
+            IllegalArgumentException.class, () -> searcher.filter(Filter.parse("Country = US")));
+    Assert.assertEquals(e.getMessage(), "Column not found.");
+  }
+
+  @Test
+  public void testPlanOrdersBySelectivity() {
+    List<String[]> rows = new ArrayList<>();
+    rows.add(new String[] {"id", "group", "n"});
+    for (int i = 0; i < 1000; i++) {
+      rows.add(new String[] {"r" + i, "g" + (i % 4), Integer.toString(i)});
+    }
+    CSVTable table = new RowTable(rows);
+    CSVSearcher searcher = new CSVSearcher(table, true, new SearchIndexes(table));
+
+    // the single-row equality is evaluated first, then the group and range are only tested on it
+    FilterPlan plan = searcher.plan(Filter.parse("group = g1 AND n < 500 AND id = r5"));
+    Assert.assertEquals(
+        plan.describe(),
+        "AND('id' = 'r5' [index: 1 rows], 'group' = 'g1' [index: 250 rows], "
+            + "'n' < 500 [range index: 500 rows])");
+    Assert.assertEquals(plan.rows(), new int[] {6});
+    // evaluating an AND leaves the index it read from intact
+    Assert.assertEquals(
+        searcher.plan(Filter.parse("group = g1 AND n > 990")).rows(), new int[] {994, 998});
+    int[] group = searcher.plan(Filter.parse("group = g1")).rows();
+    Assert.assertEquals(group.length, 250);
+    Assert.assertEquals(Arrays.copyOf(group, 3), new int[] {2, 6, 10});
+    // indexed branches are unioned, a branch that needs a scan makes the OR one scan
+    Assert.assertTrue(searcher.plan(Filter.parse("id = r1 OR n > 5")).describe().startsWith("OR("));
+    Assert.assertTrue(
+        new CSVSearcher(table, true)
+            .plan(Filter.parse("id = r1 OR n > 5"))
+            .describe()
+            .startsWith("OR[scan]("));
+  }
+
+  @Test
+  public void testFilterMatchesBruteForce() {
+    List<String[]> rows = new ArrayList<>();
+    rows.add(new String[] {"a", "b", "c"});
+    for (int i = 0; i < 2000; i++) {
+      rows.add(
+          new String[] {
+            "a" + (i % 5), Integer.toString(i % 37), i % 11 == 0 ? "" : Double.toString(i * 0.5)
+          });
+    }
+    RowTable table = new RowTable(rows);
+    String[] filters = {
+      "a = a1 AND b < 10",
+      "a IN (a1, a3) OR NOT c >= 300",
+      "NOT (a != a2 AND b >= 20) OR c = ''",
+      "(b = 3 OR b = 4) AND (a = a0 OR a = a4)",
+      "NOT a IN (a0, a1, a2) AND 2 <= 100.5",
+      "b BETWEEN 5 AND 9 OR c BETWEEN 10 AND 10.5",
+      "NOT c > 12 AND b > 30",
+    };
+    List<Predicate<String[]>> expected =
+        List.of(
+            r -> r[0].equals("a1") && Integer.parseInt(r[1]) < 10,
+            r ->
+                r[0].equals("a1")
+                    || r[0].equals("a3")
+                    || r[2].isEmpty()
+                    || Double.parseDouble(r[2]) < 300,
+            r -> r[0].equals("a2") || Integer.parseInt(r[1]) < 20 || r[2].isEmpty(),
+            r -> (r[1].equals("3") || r[1].equals("4")) && (r[0].equals("a0") || r[0].equals("a4")),
+            r ->
+                !r[0].equals("a0")
+                    && !r[0].equals("a1")
+                    && !r[0].equals("a2")
+                    && !r[2].isEmpty()
+                    && Double.parseDouble(r[2]) <= 100.5,
+            r ->
+                (Integer.parseInt(r[1]) >= 5 && Integer.parseInt(r[1]) <= 9)
+                    || (!r[2].isEmpty()
+                        && Double.parseDouble(r[2]) >= 10
+                        && Double.parseDouble(r[2]) <= 10.5),
+            r -> (r[2].isEmpty() || Double.parseDouble(r[2]) <= 12) && Integer.parseInt(r[1]) > 30);
+
+    // scanning, indexed, and reading numbers from a columnar table all agree with brute force
+    ColumnarTable columnar = ColumnarTable.of(table);
+    List<CSVSearcher> searchers =
+        List.of(
+            new CSVSearcher(table, true),
+            new CSVSearcher(table, true, new SearchIndexes(table)),
+            new CSVSearcher(columnar, true, new SearchIndexes(columnar)));
+    for (int f = 0; f < filters.length; f++) {
+      List<Integer> matching = new ArrayList<>();
+      for (int row = 1; row < rows.size(); row++) {
+        if (expected.get(f).test(rows.get(row))) {
+          matching.add(row);
+        }
+      }
+      int[] expectedRows = matching.stream().mapToInt(Integer::intValue).toArray();
+      for (CSVSearcher searcher : searchers) {
+        Assert.assertEquals(
+            searcher.plan(Filter.parse(filters[f])).rows(), expectedRows, filters[f]);
+      }
+    }
+  }
+
+  @Test
+  public void testRangeIndex() {
+    CSVTable table =
+        new RowTable(
+            List.of(
+                new String[] {"5"},
+                new String[] {"3"},
+                new String[] {"x"},
+                new String[] {"-1.5"},
+                new String[] {"5"},
+                new String[] {"\"1,000\""},
+                new String[] {""},
+                new String[] {"3"}));
+    RangeIndex index = RangeIndex.of(table, 0);
+    double infinity = Double.POSITIVE_INFINITY;
+
+    Assert.assertEquals(index.getNumRows(), 6);
+    Assert.assertEquals(index.rowsBetween(3, true, 5, true), new int[] {0, 1, 4, 7});
+    Assert.assertEquals(index.rowsBetween(3, false, 5, false), new int[0]);
+    Assert.assertEquals(index.rowsBetween(-infinity, true, 3, false), new int[] {3});
+    Assert.assertEquals(index.rowsBetween(5, false, infinity, true), new int[] {5});
+    Assert.assertEquals(index.count(-infinity, true, infinity, true), 6);
+    Assert.assertEquals(index.count(3, true, 3, true), 2);
+    Assert.assertEquals(index.count(6, true, 2, true), 0);
+  }
+
+  @Test
+  public void testRangeIndexBuiltOnFirstRangeFilter() throws IOException, FactoryFailureException {
+    CSVParser<String[]> parser =
+        new CSVParser<>(new FileReader("data/rhode_island_income.csv"), this.creator);
+    CSVTable table = new RowTable(parser.getParsed());
+    SearchIndexes indexes = new SearchIndexes(table);
+    CSVSearcher searcher = new CSVSearcher(table, true, indexes);
+
+    Assert.assertFalse(indexes.isRangeIndexed(1));
+    String filter = "1 BETWEEN 50000 AND 80000";
+    List<String[]> rows = searcher.filter(Filter.parse(filter));
+    Assert.assertTrue(indexes.isRangeIndexed(1));
+    this.assertSameRows(rows, new CSVSearcher(table, true).filter(Filter.parse(filter)));
+    Assert.assertFalse(rows.isEmpty());
+    for (String[] row : rows) {
+      double income = Double.parseDouble(row[1].replace("\"", "").replace(",", ""));
+      Assert.assertTrue(income >= 50000 && income <= 80000, row[0]);
+    }
+  }
+
+  private void assertSameRows(List<String[]> actual, List<String[]> expected) {
+    Assert.assertEquals(actual.size(), expected.size());
+    for (int i = 0; i < actual.size(); i++) {
+      Assert.assertEquals(actual.get(i), expected.get(i));
+    }
+  }
+}
@@ -0,0 +1,195 @@
+package edu.brown.cs.student.csv;
+
+import edu.brown.cs.student.main.csv.ByteScanner;
+import edu.brown.cs.student.main.csv.ByteTable;
+import edu.brown.cs.student.main.csv.CSVLoader;
+import edu.brown.cs.student.main.csv.CSVParser;
+import edu.brown.cs.student.main.csv.CSVStream;
+import edu.brown.cs.student.main.csv.CreatorFromRow;
+import edu.brown.cs.student.main.csv.RowVisitor;
+import edu.brown.cs.student.main.csv.TableSnapshot;
+import edu.brown.cs.student.main.csv.TableStorage;
+import edu.brown.cs.student.main.exception.FactoryFailureException;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Rough throughput comparison (rows/sec) between CSVParser, the regex row splitting it used to do,
+ * ByteTable's mapped loading on one thread and on the common ForkJoinPool, and mapping a
+ * TableSnapshot of the same file. Also compares how fast ByteScanner finds structural bytes a word
+ * at a time against one byte at a time (MB/sec). Not a JUnit test; run main directly, optionally
+ * passing how many times to replicate the census file (default 2000; about 1 GB at 250000).
+ */
+public final class ParseBenchmark {
+
+  private static final String SOURCE = "data/census/income_by_race.csv";
+  private static final int ROUNDS = 5;
+
+  // the regex CSVParser used before the tokenizer (cs0320 class livecode)
+  private static final Pattern RGX = Pattern.compile(",(?=([^\"]*\"[^\"]*\")*(?![^\"]*\"))");
+
+  private static final CreatorFromRow<String[]> CREATOR = row -> row.toArray(new String[0]);
+
+  private ParseBenchmark() {}
+
+  /**
+   * Parses input the way CSVParser did before the tokenizer.
+   *
+   * @param input - CSV text
+   * @return number of rows parsed
+   */
+  private static int regexParse(String input) throws IOException, FactoryFailureException {
+    List<String[]> rows = new ArrayList<>();
+    BufferedReader bufferedReader = new BufferedReader(new StringReader(input));
+    String line;
+    while ((line = bufferedReader.readLine()) != null) {
+      if (!line.isEmpty()) {
+        line += ".";
+      }
+      String[] values = RGX.split(line);
+      if (!line.isEmpty()) {
+        int cut = values.length - 1;
+        values[cut] = values[cut].substring(0, values[cut].length() - 1);
+      }
+      rows.add(CREATOR.create(List.of(values)));
+    }
+    return rows.size();
+  }
+
+  private static int tokenizerParse(String input) throws IOException, FactoryFailureException {
+    return new CSVParser<>(new StringReader(input), CREATOR).getParsed().size();
+  }
+
+  private static int visitorParse(String input) throws IOException, FactoryFailureException {
+    CSVStream<String[]> stream = new CSVStream<>(new StringReader(input));
+    RowVisitor visitor = (fields, numFields) -> {};
+    while (stream.visitNext(visitor)) {}
+    return stream.getRowCount();
+  }
+
+  private interface Scan {
+    int next(ByteBuffer buffer, int from, int to, boolean quoted);
+  }
+
+  /**
+   * Walks every structural byte of buffer the way ByteTokenizer does.
+   *
+   * @return number of structural bytes found, so the scan can't be optimized away
+   */
+  private static int scanAll(Scan scan, ByteBuffer buffer) {
+    int found = 0;
+    boolean quoted = false;
+    int to = buffer.limit();
+    for (int pos = scan.next(buffer, 0, to, false);
+        pos < to;
+        pos = scan.next(buffer, pos + 1, to, quoted)) {
+      if (buffer.get(pos) == '"') {
+        quoted = !quoted;
+      }
+      found++;
+    }
+    return found;
+  }
+
+  private static void reportScan(String name, Scan scan, ByteBuffer buffer) {
+    double best = 0;
+    int found = 0;
+    for (int i = 0; i < ROUNDS; i++) {
+      long start = System.nanoTime();
+      found = scanAll(scan, buffer);
+      double seconds = (System.nanoTime() - start) / 1e9;
+      best = Math.max(best, buffer.limit() / seconds / 1e6);
+    }
+    System.out.printf("%-10s %,14.0f MB/sec (%,d structural bytes)%n", name, best, found);
+  }
+
+  /** Same as reportScan, with the batches ByteTokenizer uses */
+  private static void reportIndex(ByteBuffer buffer) {
+    ByteScanner scanner = new ByteScanner();
+    double best = 0;
+    int found = 0;
+    for (int i = 0; i < ROUNDS; i++) {
+      long start = System.nanoTime();
+      found = 0;
+      for (int pos = 0; pos < buffer.limit(); pos = scanner.getEnd()) {
+        found += scanner.index(buffer, pos, buffer.limit());
+      }
+      double seconds = (System.nanoTime() - start) / 1e9;
+      best = Math.max(best, buffer.limit() / seconds / 1e6);
+    }
+    System.out.printf("%-10s %,14.0f MB/sec (%,d structural bytes)%n", "swar index", best, found);
+  }
+
+  private interface Run {
+    int parse(String input) throws IOException, FactoryFailureException;
+  }
+
+  private static void report(String name, Run run, String input)
+      throws IOException, FactoryFailureException {
+    double best = 0;
+    for (int i = 0; i < ROUNDS; i++) {
+      long start = System.nanoTime();
+      int rows = run.parse(input);
+      double seconds = (System.nanoTime() - start) / 1e9;
+      best = Math.max(best, rows / seconds);
+    }
+    System.out.printf("%-10s %,14.0f rows/sec%n", name, best);
+  }
+
+  public static void main(String[] args) throws IOException, FactoryFailureException {
+    int copies = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+    List<String> lines = Files.readAllLines(Path.of(SOURCE));
+    StringBuilder input = new StringBuilder();
+    for (int i = 0; i < copies; i++) {
+      for (int j = 1; j < lines.size(); j++) {
+        input.append(lines.get(j)).append('\n');
+      }
+    }
+    String csv = input.toString();
+    System.out.printf("%s x%d (%,d chars)%n", SOURCE, copies, csv.length());
+    report("regex", ParseBenchmark::regexParse, csv);
+    report("tokenizer", ParseBenchmark::tokenizerParse, csv);
+    report("visitor", ParseBenchmark::visitorParse, csv);
+
+    byte[] bytes = csv.getBytes(StandardCharsets.UTF_8);
+    ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length).put(bytes).flip();
+    reportScan("scalar", ByteScanner::nextScalar, direct);
+    reportScan("swar next", ByteScanner::next, direct);
+    reportIndex(direct);
+
+    Path file = Files.createTempFile("parse-benchmark", ".csv");
+    Path compressed = Path.of(file + CSVLoader.GZIP_SUFFIX);
+    try {
+      Files.writeString(file, csv);
+      report("mapped", unused -> ByteTable.map(file, null).numRows(), csv);
+      report("parallel", unused -> ByteTable.map(file, ForkJoinPool.commonPool()).numRows(), csv);
+
+      BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+      TableSnapshot.write(file, attributes, ByteTable.map(file, null));
+      report("snapshot", unused -> TableSnapshot.read(file, attributes).numRows(), csv);
+
+      try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(compressed))) {
+        out.write(csv.getBytes(StandardCharsets.UTF_8));
+      }
+      System.out.printf(
+          "gzip: %,d of %,d bytes read from disk%n", Files.size(compressed), Files.size(file));
+      report("gzip", unused -> CSVLoader.load(compressed, TableStorage.MAPPED).numRows(), csv);
+    } finally {
+      Files.deleteIfExists(compressed);
+      Files.deleteIfExists(TableSnapshot.pathFor(file));
+      Files.delete(file);
+    }
+  }
+}
@@ -1,14 +1,43 @@
 package edu.brown.cs.student.csv;
 
+import edu.brown.cs.student.main.csv.ByteScanner;
+import edu.brown.cs.student.main.csv.ByteTable;
+import edu.brown.cs.student.main.csv.CSVLoader;
 import edu.brown.cs.student.main.csv.CSVParser;
+import edu.brown.cs.student.main.csv.CSVStream;
+import edu.brown.cs.student.main.csv.CSVTable;
+import edu.brown.cs.student.main.csv.CSVTokenizer;
+import edu.brown.cs.student.main.csv.ColumnType;
+import edu.brown.cs.student.main.csv.ColumnarTable;
 import edu.brown.cs.student.main.csv.CreatorFromRow;
+import edu.brown.cs.student.main.csv.DirectMemory;
+import edu.brown.cs.student.main.csv.LoadProgress;
+import edu.brown.cs.student.main.csv.RowTable;
+import edu.brown.cs.student.main.csv.RowView;
+import edu.brown.cs.student.main.csv.RowVisitor;
+import edu.brown.cs.student.main.csv.SegmentedTable;
+import edu.brown.cs.student.main.csv.TableSnapshot;
+import edu.brown.cs.student.main.csv.TableStorage;
 import edu.brown.cs.student.main.exception.FactoryFailureException;
+import java.io.ByteArrayOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntPredicate;
+import java.util.zip.GZIPOutputStream;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.testng.Assert;
 
 public class ParseTests {
@@ -224,6 +253,59 @@ public class ParseTests {
     this.assertEqualsCSV(actualOutput, expectedOutput);
   }
 
+  @Test
+  public void testParseEscapedQuote() throws IOException, FactoryFailureException {
+    String input = "a,\"say \"\"hi, there\"\"\",b";
+    StringReader reader = new StringReader(input);
+    CSVParser<String[]> parser = new CSVParser<>(reader, this.creator);
+
+    List<String[]> actualOutput = parser.getParsed();
+
+    List<String[]> expectedOutput = new ArrayList<>();
+    String[] line = {"a", "\"say \"\"hi, there\"\"\"", "b"};
+    expectedOutput.add(line);
+
+    this.assertEqualsCSV(actualOutput, expectedOutput);
+  }
+
+  @Test
+  public void testParseQuotedNewline() throws IOException, FactoryFailureException {
+    String input = "a,\"line one\nline two\"\nb,c";
+    StringReader reader = new StringReader(input);
+    CSVParser<String[]> parser = new CSVParser<>(reader, this.creator);
+
+    List<String[]> actualOutput = parser.getParsed();
+
+    List<String[]> expectedOutput = new ArrayList<>();
+    String[] line1 = {"a", "\"line one\nline two\""};
+    String[] line2 = {"b", "c"};
+    expectedOutput.add(line1);
+    expectedOutput.add(line2);
+
+    this.assertEqualsCSV(actualOutput, expectedOutput);
+  }
+
+  @Test
+  public void testParseCRLF() throws IOException, FactoryFailureException {
+    String input = "a,b\r\nc,d\r\n\r\ne,f\rg,h\r\n";
+    StringReader reader = new StringReader(input);
+
+    Assert.expectThrows(
+        IllegalArgumentException.class, () -> new CSVParser<>(reader, this.creator));
+
+    input = "a,b\r\nc,d\re,f\r\n";
+    CSVParser<String[]> parser = new CSVParser<>(new StringReader(input), this.creator);
+
+    List<String[]> actualOutput = parser.getParsed();
+
+    List<String[]> expectedOutput = new ArrayList<>();
+    expectedOutput.add(new String[] {"a", "b"});
+    expectedOutput.add(new String[] {"c", "d"});
+    expectedOutput.add(new String[] {"e", "f"});
+
+    this.assertEqualsCSV(actualOutput, expectedOutput);
+  }
+
   @Test
   public void testParseEmptyCommas() throws IOException, FactoryFailureException {
     String input = "Caesar, Julius,,";
@@ -359,4 +441,442 @@ public class ParseTests {
     Assert.expectThrows(
         FactoryFailureException.class, () -> new CSVParser<>(reader, this.creator3));
   }
+
+  @Test
+  public void testStreamRowsOneAtATime() throws IOException, FactoryFailureException {
+    String input = "a,b\nc,d\ne,f";
+    CSVStream<String[]> stream = new CSVStream<>(new StringReader(input), this.creator);
+
+    Assert.assertEquals(stream.next(), new String[] {"a", "b"});
+    Assert.assertEquals(stream.getRowCount(), 1);
+    Assert.assertEquals(stream.next(), new String[] {"c", "d"});
+    Assert.assertEquals(stream.next(), new String[] {"e", "f"});
+    Assert.assertNull(stream.next());
+    Assert.assertEquals(stream.getRowCount(), 3);
+  }
+
+  @Test
+  public void testStreamInvalidRowAfterValidRows() throws IOException, FactoryFailureException {
+    String input = "a,b\nc,d\ne";
+    CSVStream<String[]> stream = new CSVStream<>(new StringReader(input), this.creator);
+
+    Assert.assertEquals(stream.next(), new String[] {"a", "b"});
+    Assert.assertEquals(stream.next(), new String[] {"c", "d"});
+    Assert.expectThrows(IllegalArgumentException.class, stream::next);
+  }
+
+  @Test
+  public void testStreamVisitsFieldViews() throws IOException, FactoryFailureException {
+    String input = "a,1\nb,22\r\n\"c,d\",333";
+    CSVStream<String[]> stream = new CSVStream<>(new StringReader(input));
+    long[] sum = {0};
+    List<String> firsts = new ArrayList<>();
+    RowVisitor visitor =
+        (fields, numFields) -> {
+          Assert.assertEquals(numFields, 2);
+          sum[0] += Integer.parseInt(fields[1], 0, fields[1].length(), 10);
+          firsts.add(fields[0].toString());
+        };
+
+    while (stream.visitNext(visitor)) {}
+    Assert.assertEquals(sum[0], 356);
+    Assert.assertEquals(firsts, List.of("a", "b", "\"c,d\""));
+    Assert.assertEquals(stream.getRowCount(), 3);
+
+    CSVStream<String[]> invalid = new CSVStream<>(new StringReader("a,b\nc"));
+    Assert.assertTrue(invalid.visitNext((fields, numFields) -> {}));
+    Assert.expectThrows(
+        IllegalArgumentException.class, () -> invalid.visitNext((fields, numFields) -> {}));
+  }
+
+  @Test
+  public void testTokenizerRecordsLongerThanBuffer() throws IOException {
+    // records straddle buffer fills, and one field is longer than the whole buffer
+    StringBuilder input = new StringBuilder();
+    List<String[]> expected = new ArrayList<>();
+    for (int i = 0; i < 20000; i++) {
+      String[] row = {"row" + i, "\"quoted, " + i + "\"", i == 7000 ? "x".repeat(200000) : ""};
+      expected.add(row);
+      input.append(String.join(",", row)).append(i % 2 == 0 ? "\n" : "\r\n");
+    }
+
+    CSVTokenizer strings = new CSVTokenizer(new StringReader(input.toString()));
+    CSVTokenizer views = new CSVTokenizer(new StringReader(input.toString()));
+    for (String[] row : expected) {
+      Assert.assertEquals(strings.next(), row);
+      Assert.assertEquals(views.advance(), 3);
+      CharSequence[] fields = views.getFields();
+      for (int col = 0; col < 3; col++) {
+        Assert.assertEquals(fields[col].toString(), row[col]);
+        Assert.assertEquals(fields[col].length(), row[col].length());
+      }
+    }
+    Assert.assertNull(strings.next());
+    Assert.assertEquals(views.advance(), -1);
+  }
+
+  @Test
+  public void testMappedTableMatchesParser() throws IOException, FactoryFailureException {
+    String[] files = {"data/stars/ten-star.csv", "data/census/income_by_race.csv"};
+    for (String file : files) {
+      CSVParser<String[]> parser = new CSVParser<>(new FileReader(file), this.creator);
+      CSVTable table = ByteTable.map(Path.of(file));
+
+      Assert.assertEquals(table.numCols(), parser.getParsed().get(0).length);
+      this.assertEqualsCSV(table.getRows(), parser.getParsed());
+    }
+  }
+
+  @Test
+  public void testMappedTableEqualTo() throws IOException {
+    CSVTable table = ByteTable.map(Path.of("data/census/income_by_race.csv"));
+    IntPredicate isKent = table.equalTo(6, "\"Kent County, RI\"");
+
+    Assert.assertFalse(isKent.test(1));
+    Assert.assertTrue(isKent.test(2));
+  }
+
+  @Test
+  public void testMappedTableMalformed() {
+    Assert.expectThrows(
+        IllegalArgumentException.class,
+        () -> ByteTable.map(Path.of("data/malformed/malformed_signs.csv")));
+  }
+
+  @Test
+  public void testParallelTokenizeMatchesSequential() {
+    StringBuilder input = new StringBuilder("id,name,note\r\n");
+    for (int i = 0; i < 500; i++) {
+      input.append(i).append(",\"last, first\",\"multi\nline \"\"quoted\"\"\"\r\n");
+      input.append(i).append(",plain,\r\n");
+    }
+    ByteBuffer data = ByteBuffer.wrap(input.toString().getBytes(StandardCharsets.UTF_8));
+    ForkJoinPool pool = new ForkJoinPool(4);
+
+    CSVTable sequential = ByteTable.tokenize(data, null, 64);
+    for (int chunkSize : new int[] {7, 64, 1000}) {
+      CSVTable parallel = ByteTable.tokenize(data, pool, chunkSize);
+      Assert.assertEquals(parallel.numRows(), 1001);
+      this.assertEqualsCSV(parallel.getRows(), sequential.getRows());
+    }
+    pool.shutdown();
+  }
+
+  @Test
+  public void testParallelTokenizeInvalid() {
+    StringBuilder input = new StringBuilder();
+    for (int i = 0; i < 500; i++) {
+      input.append("a,b\n");
+    }
+    input.append("a,b,c\n");
+    ByteBuffer data = ByteBuffer.wrap(input.toString().getBytes(StandardCharsets.UTF_8));
+    ForkJoinPool pool = new ForkJoinPool(4);
+
+    Assert.expectThrows(IllegalArgumentException.class, () -> ByteTable.tokenize(data, pool, 100));
+    pool.shutdown();
+  }
+
+  @Test
+  public void testScannerMatchesScalar() {
+    // structural bytes at every alignment, non-ASCII bytes (high bit set) and a ragged tail
+    String input = "ab,\"c\"\"d\",é\r\nlonger field text,x\n\"q,\nq\"\u00ff,,\r12345";
+    byte[] bytes = input.getBytes(StandardCharsets.UTF_8);
+    for (ByteOrder order : new ByteOrder[] {ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN}) {
+      ByteBuffer data = ByteBuffer.wrap(bytes).order(order);
+      for (int from = 0; from <= bytes.length; from++) {
+        for (boolean quoted : new boolean[] {false, true}) {
+          Assert.assertEquals(
+              ByteScanner.next(data, from, bytes.length, quoted),
+              ByteScanner.nextScalar(data, from, bytes.length, quoted));
+        }
+        int quotes = 0;
+        for (int i = from; i < bytes.length; i++) {
+          quotes += bytes[i] == '"' ? 1 : 0;
+        }
+        Assert.assertEquals(ByteScanner.countQuotes(data, from, bytes.length), quotes);
+
+        ByteScanner scanner = new ByteScanner();
+        int count = scanner.index(data, from, bytes.length);
+        Assert.assertEquals(scanner.getEnd(), bytes.length);
+        int expected = ByteScanner.nextScalar(data, from, bytes.length, false);
+        for (int i = 0; i < count; i++) {
+          Assert.assertEquals(scanner.getPositions()[i], expected);
+          expected = ByteScanner.nextScalar(data, expected + 1, bytes.length, false);
+        }
+        Assert.assertEquals(expected, bytes.length);
+      }
+    }
+  }
+
+  @Test
+  public void testTokenizeLongFields() {
+    String field = "x".repeat(37);
+    String input = field + ",\"" + field + ",\n" + field + "\"\n" + field + "," + field;
+    ByteBuffer data = ByteBuffer.wrap(input.getBytes(StandardCharsets.UTF_8));
+
+    CSVTable table = ByteTable.tokenize(data, null, 64);
+    Assert.assertEquals(table.numRows(), 2);
+    Assert.assertEquals(table.getRow(0)[1], "\"" + field + ",\n" + field + "\"");
+    Assert.assertEquals(table.getRow(1)[1], field);
+  }
+
+  @Test
+  public void testColumnarTableMatchesSource() throws IOException {
+    CSVTable source = ByteTable.map(Path.of("data/census/income_by_race.csv"));
+    ColumnarTable table = ColumnarTable.of(source);
+
+    Assert.assertEquals(table.numRows(), source.numRows());
+    this.assertEqualsCSV(table.getRows(), source.getRows());
+    // "Race" column only has the header plus ten distinct values
+    Assert.assertEquals(table.getDictionarySize(1), 11);
+  }
+
+  @Test
+  public void testColumnarTableEqualTo() throws IOException {
+    ColumnarTable table = ColumnarTable.of(ByteTable.map(Path.of("data/stars/ten-star.csv")));
+
+    Assert.assertEquals(table.codeOf(1, "Pluto"), ColumnarTable.NOT_FOUND);
+    Assert.assertFalse(table.equalTo(1, "Pluto").test(1));
+    Assert.assertTrue(table.equalTo(1, "Sol").test(1));
+    Assert.assertTrue(table.equalTo(1, "").test(2));
+    Assert.assertFalse(table.equalTo(1, "").test(1));
+  }
+
+  @Test
+  public void testColumnarTableInfersTypes() throws IOException {
+    CSVTable source = ByteTable.map(Path.of("data/census/income_by_race.csv"));
+    ColumnarTable table = ColumnarTable.of(source);
+
+    Assert.assertEquals(table.getColumnType(0), ColumnType.LONG);
+    Assert.assertEquals(table.getColumnType(1), ColumnType.STRING);
+    Assert.assertEquals(table.getColumnType(4), ColumnType.LONG);
+    Assert.assertEquals(table.getColumnType(6), ColumnType.STRING);
+    // the header is kept as text, numbers are read without parsing
+    Assert.assertFalse(table.isNumber(0, 4));
+    Assert.assertEquals(table.get(0, 4), "Household Income by Race");
+    Assert.assertTrue(table.isNumber(1, 4));
+    Assert.assertEquals(table.getLong(1, 4), 85413);
+    Assert.assertTrue(table.equalTo(4, "85413").test(1));
+    Assert.assertTrue(table.equalTo(4, "Household Income by Race").test(0));
+    Assert.assertThrows(IllegalArgumentException.class, () -> table.codeOf(4, "85413"));
+
+    ColumnarTable shares =
+        ColumnarTable.of(ByteTable.map(Path.of("data/census/postsecondary_education.csv")));
+    Assert.assertEquals(shares.getColumnType(7), ColumnType.DOUBLE);
+    Assert.assertEquals(shares.getDouble(1, 7), 0.069233258);
+    Assert.assertEquals(shares.get(3, 7), "0.00097056");
+  }
+
+  @Test
+  public void testColumnarTableKeepsNumericText() {
+    List<String[]> rows = new ArrayList<>();
+    rows.add(new String[] {"id", "value"});
+    String[] values = {"0", "-3", "2.5", "", "007", "1.50", "-0.0", "0.0", "1.0E10", "12"};
+    for (int i = 0; i < values.length; i++) {
+      rows.add(new String[] {String.valueOf(i), values[i]});
+    }
+    // enough plain numbers that the few cells kept as text don't cause a fallback
+    for (int i = values.length; i < 300; i++) {
+      rows.add(new String[] {String.valueOf(i), "0.00" + i});
+    }
+    RowTable source = new RowTable(rows);
+    ColumnarTable table = ColumnarTable.of(source);
+
+    Assert.assertEquals(table.getColumnType(0), ColumnType.LONG);
+    Assert.assertEquals(table.getColumnType(1), ColumnType.DOUBLE);
+    this.assertEqualsCSV(table.getRows(), source.getRows());
+    for (String value : values) {
+      for (int row = 0; row < source.numRows(); row++) {
+        Assert.assertEquals(
+            table.equalTo(1, value).test(row), source.get(row, 1).equals(value), value);
+      }
+    }
+    Assert.assertFalse(table.isNumber(4, 1));
+    Assert.assertFalse(table.isNumber(5, 1));
+    Assert.assertTrue(table.isNumber(6, 1));
+    Assert.assertEquals(table.getDouble(6, 1), 1.5);
+    Assert.assertEquals(table.get(6, 1), "1.50");
+    Assert.assertEquals(table.getDouble(3, 1), 2.5);
+    Assert.assertEquals(table.getLong(10, 1), 12);
+  }
+
+  @Test
+  public void testColumnarTableFallsBackAfterSample() {
+    // every 4th row from row 2 is text, which the sample (rows 1, 5, 9, ...) never sees
+    List<String[]> rows = new ArrayList<>();
+    for (int i = 0; i < 5000; i++) {
+      rows.add(new String[] {i % 4 == 2 ? "n/a " + i : String.valueOf(i)});
+    }
+    RowTable source = new RowTable(rows);
+    ColumnarTable table = ColumnarTable.of(source);
+
+    Assert.assertEquals(table.getColumnType(0), ColumnType.STRING);
+    this.assertEqualsCSV(table.getRows(), source.getRows());
+  }
+
+  @Test
+  public void testPackedTableMatchesSource() throws IOException, FactoryFailureException {
+    String input = "name,note\nJosé,\"a, \"\"b\"\"\"\n,\n東京,x";
+    CSVTable source =
+        new RowTable(new CSVParser<>(new StringReader(input), this.creator).getParsed());
+    CSVTable packed = ByteTable.pack(source);
+
+    Assert.assertEquals(packed.numRows(), 4);
+    this.assertEqualsCSV(packed.getRows(), source.getRows());
+    Assert.assertTrue(packed.equalTo(0, "東京").test(3));
+    Assert.assertTrue(packed.equalTo(1, "").test(2));
+  }
+
+  @Test
+  public void testOffHeapTableMatchesSourceAndFrees() throws IOException {
+    long before = DirectMemory.getAllocated();
+    CSVTable source = ByteTable.map(Path.of("data/stars/ten-star.csv"));
+    CSVTable offHeap = ByteTable.packOffHeap(source);
+
+    Assert.assertTrue(DirectMemory.getAllocated() > before);
+    this.assertEqualsCSV(offHeap.getRows(), source.getRows());
+    Assert.assertTrue(offHeap.equalTo(1, "Proxima Centauri").test(6));
+    Assert.assertFalse(offHeap.equalTo(1, "Proxima Centauri").test(1));
+
+    offHeap.release();
+    offHeap.release();
+    source.release();
+    Assert.assertEquals(DirectMemory.getAllocated(), before);
+  }
+
+  @Test
+  public void testSnapshotReloadsUntilFileChanges(@TempDir Path dir)
+      throws IOException, FactoryFailureException, InterruptedException {
+    Path csv = dir.resolve("planets.csv");
+    Files.writeString(csv, "name,moons\nEarth,1\n\"Mars, red\",2\n");
+    CSVTable loaded = CSVLoader.load(csv, TableStorage.MAPPED);
+    TableSnapshot.flush();
+    Assert.assertTrue(Files.exists(TableSnapshot.pathFor(csv)));
+
+    BasicFileAttributes attributes = Files.readAttributes(csv, BasicFileAttributes.class);
+    ByteTable snapshot = TableSnapshot.read(csv, attributes);
+    Assert.assertNotNull(snapshot);
+    this.assertEqualsCSV(snapshot.getRows(), loaded.getRows());
+    Assert.assertTrue(snapshot.equalTo(0, "\"Mars, red\"").test(2));
+    snapshot.release();
+    loaded.release();
+
+    Files.writeString(csv, "name,moons\nJupiter,95\n");
+    attributes = Files.readAttributes(csv, BasicFileAttributes.class);
+    Assert.assertNull(TableSnapshot.read(csv, attributes));
+    CSVTable reloaded = CSVLoader.load(csv, TableStorage.COLUMNAR);
+    Assert.assertEquals(reloaded.numRows(), 2);
+    Assert.assertEquals(reloaded.get(1, 0), "Jupiter");
+  }
+
+  @Test
+  public void testCorruptSnapshotIsRejected(@TempDir Path dir)
+      throws IOException, FactoryFailureException, InterruptedException {
+    Path csv = dir.resolve("planets.csv");
+    Files.writeString(csv, "name,moons\nEarth,1\n\"Mars, red\",2\n");
+    CSVLoader.load(csv, TableStorage.MAPPED).release();
+    TableSnapshot.flush();
+    BasicFileAttributes attributes = Files.readAttributes(csv, BasicFileAttributes.class);
+    Assert.assertNotNull(TableSnapshot.read(csv, attributes));
+
+    // an offset past the data, with the header and file size left intact
+    Path snapshot = TableSnapshot.pathFor(csv);
+    byte[] bytes = Files.readAllBytes(snapshot);
+    ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).putInt(32 + Integer.BYTES, 1 << 20);
+    Files.write(snapshot, bytes);
+    Assert.assertNull(TableSnapshot.read(csv, attributes));
+
+    // the load parses the CSV again instead
+    CSVTable reloaded = CSVLoader.load(csv, TableStorage.MAPPED);
+    Assert.assertEquals(reloaded.numRows(), 3);
+    Assert.assertEquals(reloaded.get(2, 0), "\"Mars, red\"");
+  }
+
+  /**
+   * Writes text to a file as one gzip member per part
+   *
+   * @param file - the file to write
+   * @param parts - the text of each member
+   */
+  private void writeGzip(Path file, String... parts) throws IOException {
+    try (OutputStream out = Files.newOutputStream(file)) {
+      for (String part : parts) {
+        GZIPOutputStream gzip = new GZIPOutputStream(out);
+        gzip.write(part.getBytes(StandardCharsets.UTF_8));
+        gzip.finish();
+      }
+    }
+  }
+
+  @Test
+  public void testLoadCompressed(@TempDir Path dir) throws IOException, FactoryFailureException {
+    Path plain = Path.of("data/stars/ten-star.csv");
+    Path compressed = dir.resolve("ten-star.csv.gz");
+    this.writeGzip(compressed, Files.readString(plain));
+    CSVTable expected = CSVLoader.load(plain, TableStorage.COLUMNAR, false);
+
+    for (TableStorage storage : TableStorage.values()) {
+      LoadProgress progress = new LoadProgress();
+      CSVTable loaded = CSVLoader.load(compressed, storage, true, progress);
+      this.assertEqualsCSV(loaded.getRows(), expected.getRows());
+      Assert.assertEquals(progress.getBytesRead(), Files.size(compressed));
+      Assert.assertEquals(progress.getRowsParsed(), expected.numRows());
+      loaded.release();
+    }
+    // the decompressed bytes are never written to disk
+    Assert.assertFalse(Files.exists(TableSnapshot.pathFor(compressed)));
+  }
+
+  @Test
+  public void testLoadCompressedMembers(@TempDir Path dir)
+      throws IOException, FactoryFailureException {
+    // every member is decompressed, not just the one the trailer describes
+    Path compressed = dir.resolve("planets.csv.gz");
+    this.writeGzip(compressed, "name,moons\nEarth,1\n\"Mars, red\",2\n", "Jupiter,95\n");
+    CSVTable loaded = CSVLoader.load(compressed, TableStorage.MAPPED);
+    Assert.assertEquals(loaded.numRows(), 4);
+    Assert.assertEquals(loaded.get(2, 0), "\"Mars, red\"");
+    Assert.assertEquals(loaded.get(3, 1), "95");
+
+    Path truncated = dir.resolve("truncated.csv.gz");
+    byte[] bytes = Files.readAllBytes(compressed);
+    Files.write(truncated, Arrays.copyOf(bytes, bytes.length - 10));
+    Assert.assertThrows(IOException.class, () -> CSVLoader.load(truncated, TableStorage.COLUMNAR));
+  }
+
+  @Test
+  public void testLoadCompressedInChunks(@TempDir Path dir)
+      throws IOException, FactoryFailureException {
+    // more than one 16 MB chunk of cell text
+    StringBuilder text = new StringBuilder("id,name,note\n");
+    int numRows = 400_000;
+    for (int i = 1; i < numRows; i++) {
+      text.append(i).append(",name").append(i).append(",a note about row number ").append(i);
+      text.append('\n');
+    }
+    Path compressed = dir.resolve("rows.csv.gz");
+    this.writeGzip(compressed, text.toString());
+
+    for (TableStorage storage : new TableStorage[] {TableStorage.COLUMNAR, TableStorage.MAPPED}) {
+      CSVTable loaded = CSVLoader.load(compressed, storage);
+      Assert.assertTrue(loaded instanceof SegmentedTable);
+      Assert.assertEquals(loaded.numRows(), numRows);
+      Assert.assertEquals(loaded.get(0, 2), "note");
+      Assert.assertEquals(loaded.get(numRows - 1, 1), "name" + (numRows - 1));
+      Assert.assertTrue(loaded.equalTo(0, "250000").test(250000));
+      loaded.release();
+    }
+  }
+
+  @Test
+  public void testRowViewWritesCellBytes() throws IOException {
+    CSVTable table = ByteTable.pack(ByteTable.map(Path.of("data/stars/ten-star.csv")));
+    RowView view = table.view().moveTo(6);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    view.writeCell(1, out);
+
+    Assert.assertEquals(out.toString(StandardCharsets.UTF_8), "Proxima Centauri");
+    Assert.assertEquals(view.get(1), "Proxima Centauri");
+    Assert.assertEquals(view.moveTo(1).get(1), "Sol");
+  }
 }
@@ -0,0 +1,261 @@
+package edu.brown.cs.student.csv;
+
+import edu.brown.cs.student.main.csv.ByteTable;
+import edu.brown.cs.student.main.csv.CSVTable;
+import edu.brown.cs.student.main.csv.DirectMemory;
+import edu.brown.cs.student.main.csv.ParserState;
+import edu.brown.cs.student.main.csv.ParserState.Dataset;
+import edu.brown.cs.student.main.csv.RowTable;
+import edu.brown.cs.student.main.csv.SearchIndexes;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.testng.Assert;
+
+public class ParserStateTests {
+
+  /**
+   * Builds a table with one column and the given number of rows
+   *
+   * @param rows - the number of rows
+   * @return a RowTable
+   */
+  private CSVTable table(int rows) {
+    List<String[]> cells = new ArrayList<>();
+    for (int i = 0; i < rows; i++) {
+      cells.add(new String[] {"cell" + i});
+    }
+    return new RowTable(cells);
+  }
+
+  /**
+   * Looks up a dataset's table, only for heap tables that stay readable after being released
+   *
+   * @param state - the catalog
+   * @param name - the dataset's name, or null for the most recently loaded
+   * @return the table, or null if not loaded
+   */
+  private CSVTable get(ParserState state, String name) {
+    try (Dataset dataset = state.acquire(name)) {
+      return dataset == null ? null : dataset.table();
+    }
+  }
+
+  @Test
+  public void testDatasetsByName() {
+    ParserState state = new ParserState();
+    CSVTable first = this.table(1);
+    CSVTable second = this.table(2);
+    state.put("first", first);
+    state.put("second", second);
+
+    Assert.assertSame(this.get(state, "first"), first);
+    Assert.assertSame(this.get(state, "second"), second);
+    Assert.assertSame(this.get(state, null), second);
+    Assert.assertNull(this.get(state, "third"));
+    Assert.assertEquals(state.getMemoryUsage(), first.getMemoryUsage() + second.getMemoryUsage());
+
+    Assert.assertTrue(state.remove(null));
+    Assert.assertNull(this.get(state, null));
+    Assert.assertSame(this.get(state, "first"), first);
+    Assert.assertFalse(state.remove("second"));
+    Assert.assertEquals(state.getMemoryUsage(), first.getMemoryUsage());
+  }
+
+  @Test
+  public void testVersionsIncrease() {
+    ParserState state = new ParserState();
+    long first = state.put("a", this.table(1)).version();
+    long second = state.put("b", this.table(1)).version();
+    long third = state.put("a", this.table(1)).version();
+
+    Assert.assertTrue(first < second && second < third);
+    try (Dataset dataset = state.acquire("a")) {
+      Assert.assertEquals(dataset.version(), third);
+    }
+  }
+
+  @Test
+  public void testEvictsLeastRecentlyUsed() {
+    long size = this.table(100).getMemoryUsage();
+    ParserState state = new ParserState(size * 2);
+    state.put("a", this.table(100));
+    state.put("b", this.table(100));
+    this.get(state, "a");
+
+    Assert.assertEquals(state.put("c", this.table(100)).evicted(), List.of("b"));
+    Assert.assertEquals(new ArrayList<>(state.getDatasets().keySet()), List.of("a", "c"));
+    Assert.assertTrue(state.getMemoryUsage() <= state.getMemoryBudget());
+
+    // a dataset over the budget on its own still loads, evicting everything else
+    Assert.assertEquals(state.put("big", this.table(1000)).evicted(), List.of("a", "c"));
+    Assert.assertEquals(new ArrayList<>(state.getDatasets().keySet()), List.of("big"));
+  }
+
+  @Test
+  public void testIndexBuildsAreCharged() {
+    long size = this.table(100).getMemoryUsage();
+    ParserState state = new ParserState(size * 2);
+    state.put("a", this.table(100));
+    state.put("b", this.table(100));
+    Assert.assertEquals(state.getMemoryUsage(), size * 2);
+
+    // building an index over b puts the catalog over the budget, so a, used less recently, goes
+    long indexSize;
+    try (Dataset dataset = state.acquire("b")) {
+      indexSize = dataset.indexes().column(0).getMemoryUsage();
+      Assert.assertTrue(indexSize > 0);
+      Assert.assertEquals(dataset.memoryUsage(), size + indexSize);
+    }
+    Assert.assertEquals(new ArrayList<>(state.getDatasets().keySet()), List.of("b"));
+    Assert.assertEquals(state.getMemoryUsage(), size + indexSize);
+  }
+
+  @Test
+  public void testTrigramBudgetFollowsMemoryBudget() {
+    Assert.assertEquals(new ParserState().getTrigramBudget(), SearchIndexes.DEFAULT_TRIGRAM_BUDGET);
+    ParserState state = new ParserState(1L << 20);
+    Assert.assertEquals(state.getTrigramBudget(), 1L << 17);
+
+    CSVTable table = this.table(100);
+    state.put("cells", table);
+    try (Dataset dataset = state.acquire("cells")) {
+      SearchIndexes indexes = dataset.indexes();
+      long before = state.getMemoryUsage();
+      long trigrams = indexes.trigrams(0).getMemoryUsage();
+      long others = indexes.dictionary(0).getMemoryUsage() + indexes.column(0).getMemoryUsage();
+      Assert.assertEquals(state.getMemoryUsage(), before + others + trigrams);
+    }
+  }
+
+  @Test
+  public void testReplacingReleasesOffHeapMemory() throws IOException {
+    long before = DirectMemory.getAllocated();
+    ParserState state = new ParserState();
+    CSVTable source = ByteTable.map(Path.of("data/stars/ten-star.csv"));
+    state.put("stars", ByteTable.packOffHeap(source));
+    state.put("stars", ByteTable.packOffHeap(source));
+    Assert.assertEquals(state.getDatasets().size(), 1);
+
+    state.remove("stars");
+    source.release();
+    Assert.assertEquals(DirectMemory.getAllocated(), before);
+    Assert.assertEquals(state.getMemoryUsage(), 0);
+  }
+
+  @Test
+  public void testUnloadWaitsForReaders() throws IOException {
+    long before = DirectMemory.getAllocated();
+    ParserState state = new ParserState();
+    CSVTable source = ByteTable.map(Path.of("data/stars/ten-star.csv"));
+    state.put("stars", ByteTable.packOffHeap(source));
+    source.release();
+
+    try (Dataset dataset = state.acquire("stars")) {
+      Assert.assertTrue(state.remove("stars"));
+      Assert.assertNull(state.acquire("stars"));
+      // still readable, and not yet freed, while this reader holds it
+      Assert.assertEquals(dataset.table().get(6, 1), "Proxima Centauri");
+      Assert.assertTrue(DirectMemory.getAllocated() > before);
+    }
+    Assert.assertEquals(DirectMemory.getAllocated(), before);
+  }
+
+  @Test
+  public void testConcurrentReadsDuringLoads() throws Exception {
+    long before = DirectMemory.getAllocated();
+    ParserState state = new ParserState();
+    CSVTable source = ByteTable.map(Path.of("data/stars/ten-star.csv"));
+    AtomicBoolean done = new AtomicBoolean(false);
+    AtomicInteger reads = new AtomicInteger();
+    List<Throwable> failures = new CopyOnWriteArrayList<>();
+
+    List<Thread> readers = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      Thread reader =
+          new Thread(
+              () -> {
+                while (!done.get()) {
+                  try (Dataset dataset = state.acquire("stars")) {
+                    if (dataset != null) {
+                      Assert.assertEquals(dataset.table().get(6, 1), "Proxima Centauri");
+                      reads.incrementAndGet();
+                    }
+                  } catch (Throwable t) {
+                    failures.add(t);
+                  }
+                }
+              });
+      reader.start();
+      readers.add(reader);
+    }
+    for (int i = 0; i < 500; i++) {
+      state.put("stars", ByteTable.packOffHeap(source));
+      if (i % 3 == 0) {
+        state.remove("stars");
+      }
+    }
+    done.set(true);
+    for (Thread reader : readers) {
+      reader.join();
+    }
+    state.remove("stars");
+    source.release();
+
+    Assert.assertTrue(failures.isEmpty(), failures.toString());
+    Assert.assertTrue(reads.get() > 0);
+    Assert.assertEquals(DirectMemory.getAllocated(), before);
+  }
+
+  @Test
+  public void testIndexesBelongToVersion() {
+    ParserState state = new ParserState();
+    state.put("cells", this.table(3));
+    SearchIndexes first;
+    try (Dataset dataset = state.acquire("cells")) {
+      first = dataset.indexes();
+      Assert.assertEquals(first.column(0).rowsEqualTo("cell1"), new int[] {1});
+      Assert.assertSame(dataset.indexes().column(0), first.column(0));
+    }
+
+    state.put("cells", this.table(5));
+    try (Dataset dataset = state.acquire("cells")) {
+      Assert.assertNotSame(dataset.indexes(), first);
+      Assert.assertFalse(dataset.indexes().isIndexed(0));
+      Assert.assertEquals(dataset.indexes().column(0).rowsEqualTo("cell4"), new int[] {4});
+    }
+  }
+
+  @Test
+  public void testReplaceKeepsInvertedIndex() {
+    ParserState state = new ParserState();
+    CSVTable table = this.table(3);
+    SearchIndexes indexes = new SearchIndexes(table);
+    indexes.buildInverted(ForkJoinPool.commonPool());
+    long version = state.put("cells", table, indexes).version();
+    Assert.assertEquals(
+        state.getMemoryUsage(), table.getMemoryUsage() + indexes.inverted().getMemoryUsage());
+
+    CSVTable replacement = this.table(4);
+    state.replace("cells", version, replacement);
+    Assert.assertEquals(state.getMemoryUsage(), replacement.getMemoryUsage());
+    try (Dataset dataset = state.acquire("cells")) {
+      Assert.assertTrue(dataset.indexes().hasInverted());
+      Assert.assertEquals(dataset.indexes().inverted().rowsEqualTo("cell3"), new int[] {3});
+      // built after the version was published, and charged to it then
+      Assert.assertEquals(
+          state.getMemoryUsage(),
+          replacement.getMemoryUsage() + dataset.indexes().inverted().getMemoryUsage());
+    }
+    state.put("cells", this.table(2));
+    try (Dataset dataset = state.acquire("cells")) {
+      Assert.assertFalse(dataset.indexes().hasInverted());
+    }
+  }
+}
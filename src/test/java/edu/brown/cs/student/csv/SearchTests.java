@@ -1,15 +1,30 @@
 package edu.brown.cs.student.csv;
 
+import edu.brown.cs.student.main.csv.BKTree;
 import edu.brown.cs.student.main.csv.CSVParser;
 import edu.brown.cs.student.main.csv.CSVSearcher;
+import edu.brown.cs.student.main.csv.CSVSearcher.Candidate;
 import edu.brown.cs.student.main.csv.CSVSearcher.ColumnSpecified;
+import edu.brown.cs.student.main.csv.CSVSearcher.MatchMode;
+import edu.brown.cs.student.main.csv.CSVSearcher.Query;
+import edu.brown.cs.student.main.csv.CSVStream;
+import edu.brown.cs.student.main.csv.CSVTable;
 import edu.brown.cs.student.main.csv.CreatorFromRow;
+import edu.brown.cs.student.main.csv.InvertedIndex;
+import edu.brown.cs.student.main.csv.NormalizedIndex;
+import edu.brown.cs.student.main.csv.RowTable;
+import edu.brown.cs.student.main.csv.SearchIndexes;
+import edu.brown.cs.student.main.csv.SortedDictionary;
 import edu.brown.cs.student.main.exception.FactoryFailureException;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 import org.junit.jupiter.api.Test;
 import org.testng.Assert;
 
@@ -371,4 +386,366 @@ public class SearchTests {
 
     this.assertEqualsCSV(actualOutput, expectedOutput);
   }
+
+  @Test
+  public void testSearchStreamMatchesSearch() throws IOException, FactoryFailureException {
+    String filename = "data/census/dol_ri_earnings_disparity.csv";
+    String value = "RI";
+    String column = "State";
+
+    CSVParser<String[]> parser = new CSVParser<>(new FileReader(filename), this.creator);
+    List<String[]> expectedOutput =
+        new CSVSearcher(parser, true).search(value, column, ColumnSpecified.NAME);
+
+    List<String[]> actualOutput = new ArrayList<>();
+    try (CSVStream<String[]> stream = new CSVStream<>(new FileReader(filename), this.creator)) {
+      int count =
+          CSVSearcher.search(stream, true, value, column, ColumnSpecified.NAME, actualOutput::add);
+      Assert.assertEquals(count, expectedOutput.size());
+    }
+
+    this.assertEqualsCSV(actualOutput, expectedOutput);
+  }
+
+  @Test
+  public void testSearchStreamColumnNotFound() {
+    String data = "A,B\na,b";
+    CSVStream<String[]> stream = new CSVStream<>(new StringReader(data), this.creator);
+
+    Assert.expectThrows(
+        IllegalArgumentException.class,
+        () -> CSVSearcher.search(stream, true, "a", "C", ColumnSpecified.NAME, row -> {}));
+  }
+
+  @Test
+  public void testSearchIndexedMatchesScan() throws IOException, FactoryFailureException {
+    CSVParser<String[]> parser =
+        new CSVParser<>(new FileReader("data/census/dol_ri_earnings_disparity.csv"), this.creator);
+    CSVTable table = new RowTable(parser.getParsed());
+    SearchIndexes indexes = new SearchIndexes(table);
+    CSVSearcher scan = new CSVSearcher(table, true);
+    CSVSearcher indexed = new CSVSearcher(table, true, indexes);
+
+    Assert.assertFalse(indexes.isIndexed(0));
+    this.assertEqualsCSV(
+        indexed.search("RI", "State", ColumnSpecified.NAME),
+        scan.search("RI", "State", ColumnSpecified.NAME));
+    Assert.assertTrue(indexes.isIndexed(0));
+    this.assertEqualsCSV(
+        indexed.search("RI", "0", ColumnSpecified.INDEX),
+        scan.search("RI", "0", ColumnSpecified.INDEX));
+    // the header row is indexed but never returned
+    Assert.assertTrue(indexed.search("State", "State", ColumnSpecified.NAME).isEmpty());
+    Assert.assertTrue(indexed.search("hi", "1", ColumnSpecified.INDEX).isEmpty());
+  }
+
+  @Test
+  public void testSearchIndexedDuplicateColumns() throws FactoryFailureException {
+    CSVTable table =
+        new RowTable(
+            List.of(
+                new String[] {"A", "B", "A"},
+                new String[] {"x", "y", "z"},
+                new String[] {"z", "x", "x"},
+                new String[] {"y", "z", "z"}));
+    CSVSearcher searcher = new CSVSearcher(table, true, new SearchIndexes(table));
+
+    this.assertEqualsCSV(
+        searcher.search("z", "A", ColumnSpecified.NAME),
+        List.of(table.getRow(1), table.getRow(2), table.getRow(3)));
+    this.assertEqualsCSV(
+        searcher.search("x", "A", ColumnSpecified.NAME), List.of(table.getRow(1), table.getRow(2)));
+  }
+
+  @Test
+  public void testSearchInvertedMatchesScan() throws IOException, FactoryFailureException {
+    CSVParser<String[]> parser =
+        new CSVParser<>(new FileReader("data/census/dol_ri_earnings_disparity.csv"), this.creator);
+    CSVTable table = new RowTable(parser.getParsed());
+    SearchIndexes indexes = new SearchIndexes(table);
+    indexes.buildInverted(ForkJoinPool.commonPool());
+    CSVSearcher scan = new CSVSearcher(table, true);
+    CSVSearcher indexed = new CSVSearcher(table, true, indexes);
+
+    for (String value : new String[] {"RI", "White", " $0.73 ", "State", "hi"}) {
+      this.assertEqualsCSV(
+          indexed.search(value, null, ColumnSpecified.UNSPECIFIED),
+          scan.search(value, null, ColumnSpecified.UNSPECIFIED));
+    }
+  }
+
+  @Test
+  public void testInvertedIndexAcrossChunks() {
+    // enough rows for several parallel chunks, with values repeated within and across rows
+    List<String[]> rows = new ArrayList<>();
+    for (int i = 0; i < 100_000; i++) {
+      rows.add(new String[] {"v" + (i % 7), "v" + (i % 5), "row" + i});
+    }
+    InvertedIndex index = InvertedIndex.of(new RowTable(rows), new ForkJoinPool(4));
+
+    Assert.assertEquals(index.cellsEqualTo("row70000"), new int[] {70000, 2});
+    Assert.assertEquals(index.cellsEqualTo("v0").length / 2, 100_000 / 7 + 1 + 100_000 / 5);
+    int[] rowsWithV3 = index.rowsEqualTo("v3");
+    int expected = 0;
+    for (int i = 0; i < rows.size(); i++) {
+      if (i % 7 == 3 || i % 5 == 3) {
+        Assert.assertEquals(rowsWithV3[expected++], i);
+      }
+    }
+    Assert.assertEquals(rowsWithV3.length, expected);
+    Assert.assertEquals(index.rowsEqualTo("v9").length, 0);
+  }
+
+  @Test
+  public void testSearchParallelScanMatchesSequential() throws FactoryFailureException {
+    List<String[]> rows = new ArrayList<>();
+    rows.add(new String[] {"A", "B"});
+    for (int i = 0; i < 10_000; i++) {
+      rows.add(new String[] {"a" + (i % 13), "b" + (i % 7)});
+    }
+    CSVTable table = new RowTable(rows);
+    CSVSearcher sequential = new CSVSearcher(table, true);
+    ForkJoinPool pool = new ForkJoinPool(4);
+    // more tasks than the pool has threads, and a span that doesn't divide the rows evenly
+    for (int maxTasks : new int[] {2, 3, 7}) {
+      CSVSearcher parallel =
+          new CSVSearcher(table, true, null, new CSVSearcher.ParallelScan(pool, 100, maxTasks));
+      this.assertEqualsCSV(
+          parallel.search("a3", null, ColumnSpecified.UNSPECIFIED),
+          sequential.search("a3", null, ColumnSpecified.UNSPECIFIED));
+      this.assertEqualsCSV(
+          parallel.search("b6", "B", ColumnSpecified.NAME),
+          sequential.search("b6", "B", ColumnSpecified.NAME));
+      Assert.assertTrue(parallel.search("A", null, ColumnSpecified.UNSPECIFIED).isEmpty());
+    }
+    pool.shutdown();
+  }
+
+  @Test
+  public void testSearchersCachedPerHeaderSetting() throws FactoryFailureException {
+    CSVTable table = new RowTable(List.of(new String[] {"A", "B"}, new String[] {"a", "b"}));
+    SearchIndexes indexes = new SearchIndexes(table);
+    CSVSearcher withHeader = indexes.searcher(true, null);
+
+    Assert.assertSame(indexes.searcher(true, null), withHeader);
+    Assert.assertNotSame(indexes.searcher(false, null), withHeader);
+    Assert.assertEquals(withHeader.search(new Query("a", "A", ColumnSpecified.NAME)).size(), 1);
+    Assert.assertEquals(
+        indexes.searcher(false, null).search(new Query("A", "0", ColumnSpecified.INDEX)).size(), 1);
+    Assert.expectThrows(
+        IllegalArgumentException.class,
+        () -> new SearchIndexes(new RowTable(List.of())).searcher(true, null));
+  }
+
+  @Test
+  public void testSearchPrefixAndContainsMatchScan() throws IOException, FactoryFailureException {
+    CSVParser<String[]> parser =
+        new CSVParser<>(new FileReader("data/census/income_by_race.csv"), this.creator);
+    CSVTable table = new RowTable(parser.getParsed());
+    CSVSearcher scan = new CSVSearcher(table, true);
+    CSVSearcher indexed = new CSVSearcher(table, true, new SearchIndexes(table));
+    // no trigram index fits, so substrings are checked against every distinct value
+    CSVSearcher unbudgeted = new CSVSearcher(table, true, new SearchIndexes(table, 0));
+
+    for (MatchMode mode : new MatchMode[] {MatchMode.PREFIX, MatchMode.CONTAINS}) {
+      for (String value : new String[] {"\"K", "\"Kent", "County", "RI", "Ra", "", "zzz"}) {
+        for (Query query :
+            new Query[] {
+              new Query(value, "Geography", ColumnSpecified.NAME, mode),
+              new Query(value, "1", ColumnSpecified.INDEX, mode),
+              new Query(value, null, ColumnSpecified.UNSPECIFIED, mode)
+            }) {
+          List<String[]> expected = scan.search(query);
+          this.assertEqualsCSV(indexed.search(query), expected);
+          this.assertEqualsCSV(unbudgeted.search(query), expected);
+        }
+      }
+    }
+    // the header row is never returned
+    Assert.assertTrue(
+        indexed
+            .search(new Query("Geo", "Geography", ColumnSpecified.NAME, MatchMode.PREFIX))
+            .isEmpty());
+  }
+
+  @Test
+  public void testSortedDictionaryAndTrigramBudget() {
+    List<String[]> rows = new ArrayList<>();
+    for (String value : new String[] {"banana", "band", "ban", "apple", "bandana", "ban", "b"}) {
+      rows.add(new String[] {value, value + value});
+    }
+    CSVTable table = new RowTable(rows);
+    SearchIndexes indexes = new SearchIndexes(table, 1000);
+    SortedDictionary dictionary = indexes.dictionary(0);
+
+    Assert.assertEquals(dictionary.getNumValues(), 6);
+    Assert.assertEquals(dictionary.getValue(0), "apple");
+    Assert.assertEquals(
+        dictionary.rowsOf(dictionary.idsStartingWith("ban")), new int[] {0, 1, 2, 4, 5});
+    Assert.assertEquals(dictionary.rowsOf(dictionary.idsStartingWith("c")), new int[0]);
+    Assert.assertEquals(
+        dictionary.rowsOf(dictionary.idsContaining("ana", indexes.trigrams(0))), new int[] {0, 4});
+    Assert.assertEquals(
+        dictionary.rowsOf(dictionary.idsContaining("nd", indexes.trigrams(0))), new int[] {1, 4});
+    // the first column's index took most of the budget, so the second goes without
+    Assert.assertNotNull(indexes.trigrams(0));
+    Assert.assertNull(indexes.trigrams(1));
+    Assert.assertTrue(indexes.trigrams(0).getMemoryUsage() <= 1000);
+    Assert.assertEquals(
+        indexes.dictionary(1).rowsOf(indexes.dictionary(1).idsContaining("naba", null)),
+        new int[] {0, 4});
+  }
+
+  @Test
+  public void testNormalize() {
+    Assert.assertEquals(NormalizedIndex.normalize("providence county"), "providence county");
+    Assert.assertEquals(NormalizedIndex.normalize("  Providence \t County\n"), "providence county");
+    Assert.assertEquals(NormalizedIndex.normalize("\uFF32\uFF29"), "ri"); // full-width RI
+    Assert.assertEquals(NormalizedIndex.normalize("Cafe\u0301"), "caf\u00e9"); // combining accent
+    Assert.assertEquals(NormalizedIndex.normalize("\u00a0a\u00a0 b"), "a b"); // no-break spaces
+    Assert.assertEquals(NormalizedIndex.normalize(" "), "");
+  }
+
+  @Test
+  public void testSearchNormalizedMatchesScan() throws FactoryFailureException {
+    CSVTable table =
+        new RowTable(
+            List.of(
+                new String[] {"Name", "State"},
+                new String[] {"Providence County", "RI"},
+                new String[] {"providence  county ", "ri"},
+                new String[] {"PROVIDENCE COUNTY", "\uFF32\uFF29"},
+                new String[] {"Kent County", "RI"},
+                new String[] {"Providence", "MA"}));
+    SearchIndexes indexes = new SearchIndexes(table);
+    CSVSearcher scan = new CSVSearcher(table, true);
+    CSVSearcher indexed = new CSVSearcher(table, true, indexes);
+
+    for (Query query :
+        new Query[] {
+          new Query(" providence COUNTY", "Name", ColumnSpecified.NAME, MatchMode.NORMALIZED),
+          new Query("ri", "1", ColumnSpecified.INDEX, MatchMode.NORMALIZED),
+          new Query("Ri", null, ColumnSpecified.UNSPECIFIED, MatchMode.NORMALIZED),
+          new Query("name", null, ColumnSpecified.UNSPECIFIED, MatchMode.NORMALIZED),
+          new Query("providence", "Name", ColumnSpecified.NAME, MatchMode.NORMALIZED)
+        }) {
+      this.assertEqualsCSV(indexed.search(query), scan.search(query));
+    }
+    Assert.assertEquals(
+        indexed
+            .search(
+                new Query("providence county", "Name", ColumnSpecified.NAME, MatchMode.NORMALIZED))
+            .size(),
+        3);
+    Assert.assertEquals(indexes.normalized(1).rowsMatching("RI"), new int[] {1, 2, 3, 4});
+    // the three spellings of RI share one key; the header and MA have their own
+    Assert.assertEquals(indexes.normalized(1).getNumValues(), 3);
+  }
+
+  /** Levenshtein distance by the full dynamic programming table, to check BKTree against */
+  private static int levenshtein(String a, String b) {
+    int[][] d = new int[a.length() + 1][b.length() + 1];
+    for (int i = 0; i <= a.length(); i++) {
+      for (int j = 0; j <= b.length(); j++) {
+        if (i == 0 || j == 0) {
+          d[i][j] = i + j;
+        } else {
+          int substitute = d[i - 1][j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1);
+          d[i][j] = Math.min(substitute, Math.min(d[i - 1][j], d[i][j - 1]) + 1);
+        }
+      }
+    }
+    return d[a.length()][b.length()];
+  }
+
+  @Test
+  public void testBKTreeMatchesBruteForce() {
+    Random random = new Random(25);
+    Set<String> values = new HashSet<>();
+    while (values.size() < 2000) {
+      StringBuilder value = new StringBuilder();
+      int length = random.nextInt(9);
+      for (int i = 0; i < length; i++) {
+        value.append((char) ('a' + random.nextInt(4)));
+      }
+      values.add(value.toString());
+    }
+    BKTree tree = BKTree.of(values);
+    Assert.assertEquals(tree.getNumValues(), values.size());
+
+    for (String query : new String[] {"", "a", "abcd", "dddddddd", "abcabcabca", "xyz"}) {
+      for (int maxDistance = 0; maxDistance <= 3; maxDistance++) {
+        Set<BKTree.Match> expected = new HashSet<>();
+        for (String value : values) {
+          int distance = levenshtein(query, value);
+          if (distance <= maxDistance) {
+            expected.add(new BKTree.Match(value, distance));
+          }
+        }
+        List<BKTree.Match> found = tree.search(query, maxDistance);
+        Assert.assertEquals(found.size(), expected.size());
+        Assert.assertEquals(new HashSet<>(found), expected);
+      }
+    }
+    Assert.assertEquals(BKTree.of(List.of()).search("a", 3).size(), 0);
+  }
+
+  @Test
+  public void testSearchFuzzyMatchesScan() throws FactoryFailureException {
+    CSVTable table =
+        new RowTable(
+            List.of(
+                new String[] {"Name", "Alias"},
+                new String[] {"Providence", "Prov"},
+                new String[] {"Providense", "PVD"},
+                new String[] {"providence ", "Providence"},
+                new String[] {"Provincetown", "P-town"},
+                new String[] {"Prividense", "Providence"},
+                new String[] {"Newport", "Name"}));
+    CSVSearcher scan = new CSVSearcher(table, true);
+    CSVSearcher indexed = new CSVSearcher(table, true, new SearchIndexes(table));
+
+    for (Query query :
+        new Query[] {
+          new Query("Providence", null, ColumnSpecified.UNSPECIFIED, MatchMode.FUZZY),
+          new Query("PROVIDENSE", "Name", ColumnSpecified.NAME, MatchMode.FUZZY),
+          new Query("nam", "1", ColumnSpecified.INDEX, MatchMode.FUZZY),
+          new Query("newprot", null, ColumnSpecified.UNSPECIFIED, MatchMode.FUZZY)
+        }) {
+      this.assertEqualsCSV(indexed.search(query), scan.search(query));
+      for (int maxDistance = 0; maxDistance <= 3; maxDistance++) {
+        List<Candidate> expected = scan.searchFuzzy(query, maxDistance);
+        List<Candidate> found = indexed.searchFuzzy(query, maxDistance);
+        Assert.assertEquals(found.size(), expected.size());
+        for (int i = 0; i < found.size(); i++) {
+          Assert.assertEquals(found.get(i).value(), expected.get(i).value());
+          Assert.assertEquals(found.get(i).distance(), expected.get(i).distance());
+          this.assertEqualsCSV(found.get(i).rows(), expected.get(i).rows());
+        }
+      }
+    }
+
+    // closest first, then the text more rows have; each row is listed once, under its best match
+    List<Candidate> candidates =
+        indexed.searchFuzzy(
+            new Query("Providence", null, ColumnSpecified.UNSPECIFIED, MatchMode.FUZZY), 2);
+    Assert.assertEquals(candidates.size(), 2);
+    Assert.assertEquals(candidates.get(0).value(), "providence");
+    Assert.assertEquals(candidates.get(0).distance(), 0);
+    Assert.assertEquals(candidates.get(0).rows().size(), 3);
+    Assert.assertEquals(candidates.get(1).value(), "providense");
+    Assert.assertEquals(candidates.get(1).distance(), 1);
+    Assert.assertEquals(candidates.get(1).rows().size(), 1);
+    // the header isn't data, even though "name" is close to "nam"
+    Assert.assertEquals(
+        indexed
+            .searchFuzzy(new Query("nam", "Name", ColumnSpecified.NAME, MatchMode.FUZZY), 1)
+            .size(),
+        0);
+    Assert.assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            indexed.searchFuzzy(
+                new Query("x", null, ColumnSpecified.UNSPECIFIED, MatchMode.FUZZY), -1));
+  }
 }
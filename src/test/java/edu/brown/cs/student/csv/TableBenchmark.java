@@ -0,0 +1,238 @@
+package edu.brown.cs.student.csv;
+
+import edu.brown.cs.student.main.csv.ByteTable;
+import edu.brown.cs.student.main.csv.CSVParser;
+import edu.brown.cs.student.main.csv.CSVSearcher;
+import edu.brown.cs.student.main.csv.CSVSearcher.ColumnSpecified;
+import edu.brown.cs.student.main.csv.CSVSearcher.MatchMode;
+import edu.brown.cs.student.main.csv.CSVSearcher.Query;
+import edu.brown.cs.student.main.csv.CSVTable;
+import edu.brown.cs.student.main.csv.ColumnarTable;
+import edu.brown.cs.student.main.csv.DirectMemory;
+import edu.brown.cs.student.main.csv.Filter;
+import edu.brown.cs.student.main.csv.RowTable;
+import edu.brown.cs.student.main.csv.SearchIndexes;
+import edu.brown.cs.student.main.exception.FactoryFailureException;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+/**
+ * Rough heap and search comparison between the ways a loaded CSV can be stored, scanning and
+ * through the column hash, range and fuzzy indexes. Not a JUnit test; run main directly, optionally
+ * passing how many times to replicate the census file (default 1000). Heap numbers are approximate
+ * (used heap after a GC).
+ */
+public final class TableBenchmark {
+
+  private static final String SOURCE = "data/census/income_by_race.csv";
+  private static final int ROUNDS = 5;
+
+  private TableBenchmark() {}
+
+  private static long usedHeap() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  private static void report(String name, Supplier<CSVTable> build, long baseline)
+      throws FactoryFailureException {
+    CSVTable table = build.get();
+    long heap = usedHeap() - baseline;
+
+    CSVSearcher searcher = new CSVSearcher(table, true);
+    double best = Double.MAX_VALUE;
+    int matches = 0;
+    for (int i = 0; i < ROUNDS; i++) {
+      long start = System.nanoTime();
+      matches = searcher.search("\"Kent County, RI\"", "Geography", ColumnSpecified.NAME).size();
+      best = Math.min(best, (System.nanoTime() - start) / 1e6);
+    }
+    System.out.printf(
+        "%-10s %,8d KB heap   search %8.2f ms (%d matches)%n", name, heap / 1024, best, matches);
+
+    CSVSearcher indexed = new CSVSearcher(table, true, new SearchIndexes(table));
+    long start = System.nanoTime();
+    indexed.search("\"Kent County, RI\"", "Geography", ColumnSpecified.NAME);
+    double first = (System.nanoTime() - start) / 1e6;
+    best = Double.MAX_VALUE;
+    for (int i = 0; i < ROUNDS; i++) {
+      start = System.nanoTime();
+      matches = indexed.search("\"Kent County, RI\"", "Geography", ColumnSpecified.NAME).size();
+      best = Math.min(best, (System.nanoTime() - start) / 1e6);
+    }
+    System.out.printf(
+        "%-10s indexed search %8.2f ms, first (building the index) %8.2f ms%n", "", best, first);
+
+    // searches without a column: every cell compared, or one inverted index lookup
+    String value = "\"Kent County, RI\"";
+    double scanAll = time(() -> searcher.search(value, null, ColumnSpecified.UNSPECIFIED));
+    SearchIndexes indexes = new SearchIndexes(table);
+    start = System.nanoTime();
+    indexes.buildInverted(ForkJoinPool.commonPool());
+    double invertedBuild = (System.nanoTime() - start) / 1e6;
+    CSVSearcher inverted = new CSVSearcher(table, true, indexes);
+    double lookup = time(() -> inverted.search(value, null, ColumnSpecified.UNSPECIFIED));
+    CSVSearcher parallel =
+        new CSVSearcher(
+            table,
+            true,
+            null,
+            new CSVSearcher.ParallelScan(
+                ForkJoinPool.commonPool(),
+                CSVSearcher.ParallelScan.DEFAULT_MIN_ROWS,
+                Runtime.getRuntime().availableProcessors()));
+    double scanParallel = time(() -> parallel.search(value, null, ColumnSpecified.UNSPECIFIED));
+    System.out.printf("%-10s any column: parallel scan %8.2f ms%n", "", scanParallel);
+    System.out.printf(
+        "%-10s any column: scan %8.2f ms, inverted %8.2f ms (built in %.0f ms, %,d KB)%n",
+        "", scanAll, lookup, invertedBuild, indexes.getMemoryUsage() / 1024);
+
+    // a numeric range: every cell parsed and compared, or two binary searches in the range index
+    Filter range = Filter.parse("'Household Income by Race' BETWEEN 50000 AND 60000");
+    double rangeScan = time(() -> searcher.filter(range));
+    start = System.nanoTime();
+    matches = indexed.filter(range).size();
+    double rangeFirst = (System.nanoTime() - start) / 1e6;
+    double rangeIndexed = time(() -> indexed.filter(range));
+    System.out.printf(
+        "%-10s range: scan %8.2f ms, range index %8.2f ms, first (building it) %8.2f ms (%d"
+            + " matches)%n",
+        "", rangeScan, rangeIndexed, rangeFirst, matches);
+
+    // type-ahead: cells starting with or containing what was typed so far
+    Query prefix = new Query("\"Prov", "Geography", ColumnSpecified.NAME, MatchMode.PREFIX);
+    Query contains = new Query("idence", "Geography", ColumnSpecified.NAME, MatchMode.CONTAINS);
+    double prefixScan = time(() -> searcher.search(prefix));
+    double containsScan = time(() -> searcher.search(contains));
+    indexed.search(contains);
+    double prefixIndexed = time(() -> indexed.search(prefix));
+    double containsIndexed = time(() -> indexed.search(contains));
+    System.out.printf(
+        "%-10s prefix: scan %8.2f ms, dictionary %8.2f ms; contains: scan %8.2f ms, trigrams"
+            + " %8.2f ms (%d matches)%n",
+        "",
+        prefixScan,
+        prefixIndexed,
+        containsScan,
+        containsIndexed,
+        indexed.search(contains).size());
+
+    // normalized: every cell normalized while scanning, or once when the index is built
+    Query normalized =
+        new Query("\"KENT  county, ri\" ", "Geography", ColumnSpecified.NAME, MatchMode.NORMALIZED);
+    double normalizedScan = time(() -> searcher.search(normalized));
+    start = System.nanoTime();
+    indexed.search(normalized);
+    double normalizedFirst = (System.nanoTime() - start) / 1e6;
+    double normalizedIndexed = time(() -> indexed.search(normalized));
+    System.out.printf(
+        "%-10s normalized: scan %8.2f ms, index %8.2f ms, first (building it) %8.2f ms (%d"
+            + " matches)%n",
+        "", normalizedScan, normalizedIndexed, normalizedFirst, indexed.search(normalized).size());
+  }
+
+  /**
+   * Times fuzzy search over a column of distinct made-up names, where a scan computes an edit
+   * distance per cell and the BK-tree only visits the branches that can hold a match
+   *
+   * @param numValues - how many distinct names the column holds
+   */
+  private static void reportFuzzy(int numValues) throws FactoryFailureException {
+    Random random = new Random(25);
+    Set<String> names = new HashSet<>();
+    List<String[]> rows = new ArrayList<>();
+    rows.add(new String[] {"Name"});
+    while (names.size() < numValues) {
+      StringBuilder name = new StringBuilder();
+      int length = 6 + random.nextInt(8);
+      for (int i = 0; i < length; i++) {
+        name.append((char) ('a' + random.nextInt(26)));
+      }
+      if (names.add(name.toString())) {
+        rows.add(new String[] {name.toString()});
+      }
+    }
+    CSVTable table = new RowTable(rows);
+    // a name with one letter changed
+    String target = rows.get(numValues / 2)[0];
+    Query fuzzy =
+        new Query(
+            target.substring(0, 2) + "z" + target.substring(3),
+            "Name",
+            ColumnSpecified.NAME,
+            MatchMode.FUZZY);
+    CSVSearcher searcher = new CSVSearcher(table, true);
+    CSVSearcher indexed = new CSVSearcher(table, true, new SearchIndexes(table));
+    double scan = time(() -> searcher.search(fuzzy));
+    long start = System.nanoTime();
+    indexed.search(fuzzy);
+    double first = (System.nanoTime() - start) / 1e6;
+    double tree = time(() -> indexed.search(fuzzy));
+    System.out.printf(
+        "fuzzy x%,d names: scan %8.2f ms, BK-tree %8.2f ms, first (building it) %8.2f ms (%d"
+            + " matches)%n",
+        numValues, scan, tree, first, indexed.search(fuzzy).size());
+  }
+
+  private interface Search {
+    List<String[]> run() throws FactoryFailureException;
+  }
+
+  /**
+   * Times a search
+   *
+   * @return the best time in ms over ROUNDS runs
+   */
+  private static double time(Search search) throws FactoryFailureException {
+    double best = Double.MAX_VALUE;
+    for (int i = 0; i < ROUNDS; i++) {
+      long start = System.nanoTime();
+      search.run();
+      best = Math.min(best, (System.nanoTime() - start) / 1e6);
+    }
+    return best;
+  }
+
+  public static void main(String[] args) throws IOException, FactoryFailureException {
+    int copies = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+    List<String> lines = Files.readAllLines(Path.of(SOURCE));
+    StringBuilder input = new StringBuilder(lines.get(0)).append('\n');
+    for (int i = 0; i < copies; i++) {
+      for (int j = 1; j < lines.size(); j++) {
+        input.append(lines.get(j)).append('\n');
+      }
+    }
+    String csv = input.toString();
+    System.out.printf("%s x%d%n", SOURCE, copies);
+
+    Supplier<CSVTable> rows =
+        () -> {
+          try {
+            return new RowTable(
+                new CSVParser<>(new StringReader(csv), row -> row.toArray(new String[0]))
+                    .getParsed());
+          } catch (IOException | FactoryFailureException e) {
+            throw new IllegalStateException(e);
+          }
+        };
+    long baseline = usedHeap();
+    report("rows", rows, baseline);
+    report("columnar", () -> ColumnarTable.of(rows.get()), baseline);
+    report("packed", () -> ByteTable.pack(rows.get()), baseline);
+    report("offheap", () -> ByteTable.packOffHeap(rows.get()), baseline);
+    System.out.printf("offheap   %,8d KB direct%n", DirectMemory.getAllocated() / 1024);
+    reportFuzzy(300_000);
+  }
+}